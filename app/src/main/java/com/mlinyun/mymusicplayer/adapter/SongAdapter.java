@@ -1,8 +1,8 @@
 package com.mlinyun.mymusicplayer.adapter;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Color;
+import android.net.Uri;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -13,6 +13,8 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
@@ -22,22 +24,64 @@ import com.mlinyun.mymusicplayer.R;
 import com.mlinyun.mymusicplayer.model.Song;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * 歌曲列表适配器
- * 用于在RecyclerView中显示歌曲条目
+ * 用于在RecyclerView中显示歌曲条目。
+ * 新列表在后台线程与旧列表按歌曲ID比较，只通知实际插入、移除、移动和内容变化的条目；
+ * 启用稳定ID，内容变化通过负载只更新变化的部分，搜索输入和队列变化不会重绑所有可见条目
  */
 public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder> {
 
-    // 歌曲列表
-    private List<Song> songs;
+    // 局部更新负载：标题、艺术家或时长变化
+    private static final int PAYLOAD_TEXT = 1;
+    // 局部更新负载：专辑封面变化
+    private static final int PAYLOAD_ALBUM_ART = 1 << 1;
+    // 局部更新负载：当前播放状态(指示图标、高亮背景和标题颜色)变化
+    private static final int PAYLOAD_PLAYING_STATE = 1 << 2;
+
+    /**
+     * 按歌曲ID判断是否为同一条目，内容比较显示用到的字段
+     */
+    private static final DiffUtil.ItemCallback<Song> DIFF_CALLBACK = new DiffUtil.ItemCallback<Song>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Song oldItem, @NonNull Song newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Song oldItem, @NonNull Song newItem) {
+            return changedParts(oldItem, newItem) == 0
+                    && oldItem.isSearchResult() == newItem.isSearchResult();
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull Song oldItem, @NonNull Song newItem) {
+            int parts = changedParts(oldItem, newItem);
+            // 仅搜索标记变化时没有负载，按完整绑定处理
+            return parts != 0 ? parts : null;
+        }
+    };
+
+    // 在后台线程计算差异的列表
+    private final AsyncListDiffer<Song> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+
+    // 最近一次提交的列表，差异计算完成前可能比显示中的列表新
+    private List<Song> latestSongs = new ArrayList<>();
+
+    // 歌曲ID到稳定条目ID的映射
+    private final Map<String, Long> stableIds = new HashMap<>();
 
     // 上下文
     private final Context context;
 
-    // 当前播放索引
-    private int currentPlayingPosition = -1;
+    // 当前播放歌曲的ID，按ID而不是位置记录，列表变化后高亮仍跟随歌曲
+    private String currentPlayingId;
 
     // 点击监听器
     private final OnSongClickListener clickListener;
@@ -51,7 +95,7 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
     public SongAdapter(Context context, OnSongClickListener clickListener) {
         this.context = context;
         this.clickListener = clickListener;
-        this.songs = new ArrayList<>();
+        setHasStableIds(true);
     }
 
     /**
@@ -61,40 +105,89 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
     @Override
     public SongViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context).inflate(R.layout.item_song, parent, false);
-        return new SongViewHolder(view);
+        SongViewHolder holder = new SongViewHolder(view);
+
+        // 点击时再取位置和歌曲，条目被移动而未重绑时也不会用到过期的位置
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (clickListener != null && position != RecyclerView.NO_POSITION) {
+                clickListener.onSongClick(position, getSongAt(position));
+            }
+        });
+
+        // 设置长按监听器
+        holder.itemView.setOnLongClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (clickListener != null && position != RecyclerView.NO_POSITION) {
+                clickListener.onSongLongClick(position, getSongAt(position));
+                return true;
+            }
+            return false;
+        });
+        return holder;
     }
 
     /**
      * 绑定ViewHolder数据
      */
     @Override
-    public void onBindViewHolder(@NonNull SongViewHolder holder, @SuppressLint("RecyclerView") int position) {
-        Song song = songs.get(position);
+    public void onBindViewHolder(@NonNull SongViewHolder holder, int position) {
+        Song song = getSongAt(position);
 
         // 设置歌曲信息
+        bindText(holder, song);
+
+        // 加载专辑封面
+        bindAlbumArt(holder, song);
+
+        // 设置当前播放歌曲的高亮效果
+        bindPlayingState(holder, song);
+    }
+
+    /**
+     * 按负载局部绑定，只更新变化的部分
+     */
+    @Override
+    public void onBindViewHolder(@NonNull SongViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int parts = 0;
+        for (Object payload : payloads) {
+            if (payload instanceof Integer) {
+                parts |= (Integer) payload;
+            }
+        }
+        Song song = getSongAt(position);
+        if ((parts & PAYLOAD_TEXT) != 0) {
+            bindText(holder, song);
+        }
+        if ((parts & PAYLOAD_ALBUM_ART) != 0) {
+            bindAlbumArt(holder, song);
+        }
+        if ((parts & PAYLOAD_PLAYING_STATE) != 0) {
+            bindPlayingState(holder, song);
+        }
+    }
+
+    private void bindText(SongViewHolder holder, Song song) {
         holder.titleTextView.setText(song.getTitle());
         holder.artistTextView.setText(song.getArtist());
         holder.durationTextView.setText(formatDuration(song.getDuration()));
+    }
 
-        // 检查是否为搜索结果并且已经在播放列表中
-        boolean inPlaylist = false;
-        if (song.isSearchResult()) {
-            // 检查此搜索结果是否已在播放列表中
-            for (Song existingSong : songs) {
-                if (!existingSong.isSearchResult() && existingSong.getId().equals(song.getId())) {
-                    inPlaylist = true;
-                    break;
-                }
-            }
-        }          // 根据是否为搜索结果设置UI状态
-        if (song.isSearchResult()) {
-            // 不再使用不同背景颜色区分搜索结果
-            holder.itemView.setBackgroundColor(Color.TRANSPARENT);
-        } else {
-            // 非搜索结果项使用透明背景
-            holder.itemView.setBackgroundColor(Color.TRANSPARENT);
-        }// 加载专辑封面
-        if (song.getAlbumArtUri() != null) {
+    private void bindAlbumArt(SongViewHolder holder, Song song) {
+        Uri albumArtUri = song.getAlbumArtUri();
+        // 条目已显示同一首歌曲的同一张封面时不再重新加载
+        if (Objects.equals(holder.boundSongId, song.getId()) && Objects.equals(holder.boundAlbumArtUri, albumArtUri)
+                && holder.albumImageView.getDrawable() != null) {
+            return;
+        }
+        holder.boundSongId = song.getId();
+        holder.boundAlbumArtUri = albumArtUri;
+
+        if (albumArtUri != null) {
             // 根据URI类型使用不同的加载方式
             RequestOptions options = new RequestOptions()
                     .circleCropTransform()
@@ -103,7 +196,7 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
             if (song.isLocalAlbumArt()) {
                 // 本地文件使用file:///路径加载
                 Glide.with(context)
-                        .load(song.getAlbumArtUri())
+                        .load(albumArtUri)
                         .apply(options)
                         .diskCacheStrategy(DiskCacheStrategy.NONE) // 本地文件不缓存
                         .skipMemoryCache(false) // 但可以使用内存缓存
@@ -112,7 +205,7 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
                             public boolean onLoadFailed(@Nullable com.bumptech.glide.load.engine.GlideException e, Object model,
                                                         com.bumptech.glide.request.target.Target<android.graphics.drawable.Drawable> target,
                                                         boolean isFirstResource) {
-                                Log.e("SongAdapter", "本地专辑封面加载失败: " + e.getMessage());
+                                Log.e("SongAdapter", "本地专辑封面加载失败: " + (e != null ? e.getMessage() : null));
                                 // 加载失败时，显示默认封面
                                 holder.albumImageView.setImageResource(R.drawable.default_album);
                                 return true;
@@ -130,46 +223,46 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
             } else {
                 // 系统媒体库的封面通过content://加载
                 Glide.with(context)
-                        .load(song.getAlbumArtUri())
+                        .load(albumArtUri)
                         .apply(options)
                         .into(holder.albumImageView);
             }
         } else {
+            Glide.with(context).clear(holder.albumImageView);
             holder.albumImageView.setImageResource(R.drawable.default_album);
         }
-        // 设置当前播放歌曲的高亮效果 - 优先级高于搜索结果
-        if (position == currentPlayingPosition) {
+    }
+
+    private void bindPlayingState(SongViewHolder holder, Song song) {
+        if (song.getId() != null && song.getId().equals(currentPlayingId)) {
             // 设置当前播放歌曲的背景
             holder.itemView.setBackgroundColor(ContextCompat.getColor(context, R.color.colorHighlight));
             holder.nowPlayingIndicator.setVisibility(View.VISIBLE);
             holder.titleTextView.setTextColor(ContextCompat.getColor(context, R.color.colorAccent));
         } else {
-            // 非当前播放歌曲的背景
-            if (!song.isSearchResult()) {
-                holder.itemView.setBackgroundColor(Color.TRANSPARENT);
-            }
+            // 非当前播放歌曲的背景，搜索结果与普通条目一样使用透明背景
+            holder.itemView.setBackgroundColor(Color.TRANSPARENT);
             holder.nowPlayingIndicator.setVisibility(View.GONE);
             holder.titleTextView.setTextColor(ContextCompat.getColor(context, R.color.colorText));
         }
+    }
 
-        // 设置点击监听器
-        holder.itemView.setOnClickListener(v -> {
-            if (clickListener != null) {
-                clickListener.onSongClick(position, song);
-            }
-        });
-
-        // 设置长按监听器
-        holder.itemView.setOnLongClickListener(v -> {
-            if (clickListener != null) {
-                clickListener.onSongLongClick(position, song);
-                return true;
-            }
-            return false;
-        });        // 将inPlaylist设为final变量，以便在lambda表达式中使用
-        final boolean finalInPlaylist = inPlaylist;
-
-        // 更多选项按钮已移除，不再需要相关代码
+    /**
+     * 比较两首歌曲显示内容的差异
+     *
+     * @return 变化部分的负载标志，没有变化时为0
+     */
+    private static int changedParts(Song oldItem, Song newItem) {
+        int parts = 0;
+        if (!Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                || !Objects.equals(oldItem.getArtist(), newItem.getArtist())
+                || oldItem.getDuration() != newItem.getDuration()) {
+            parts |= PAYLOAD_TEXT;
+        }
+        if (!Objects.equals(oldItem.getAlbumArtUri(), newItem.getAlbumArtUri())) {
+            parts |= PAYLOAD_ALBUM_ART;
+        }
+        return parts;
     }
 
     /**
@@ -177,34 +270,64 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
      */
     @Override
     public int getItemCount() {
-        return songs.size();
+        return differ.getCurrentList().size();
     }
 
     /**
-     * 更新歌曲列表
+     * 稳定条目ID，同一首歌曲在适配器的生命周期内始终对应同一个ID
+     */
+    @Override
+    public long getItemId(int position) {
+        String songId = getSongAt(position).getId();
+        Long id = stableIds.get(songId);
+        if (id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(songId, id);
+        }
+        return id;
+    }
+
+    /**
+     * 更新歌曲列表，差异在后台线程计算完成后再应用到列表
      *
      * @param newSongs 新的歌曲列表
      */
     public void updateSongs(List<Song> newSongs) {
-        this.songs = new ArrayList<>(newSongs);
-        notifyDataSetChanged();
+        // 复制一份，调用方之后修改原列表不会影响正在进行的差异计算
+        latestSongs = new ArrayList<>(newSongs);
+        differ.submitList(latestSongs);
     }
 
     /**
      * 设置当前播放位置
      *
-     * @param position 当前播放位置
+     * @param position 当前播放位置，对应最近一次提交的列表
      */
     public void setCurrentPlayingPosition(int position) {
-        int oldPosition = currentPlayingPosition;
-        currentPlayingPosition = position;
+        Song song = position >= 0 && position < latestSongs.size() ? latestSongs.get(position) : null;
+        setCurrentPlayingSong(song != null ? song.getId() : null);
+    }
 
-        // 更新两个位置的视图
+    /**
+     * 按歌曲ID设置当前播放歌曲，不依赖列表是否已完成更新
+     *
+     * @param songId 当前播放歌曲的ID，null表示没有
+     */
+    public void setCurrentPlayingSong(String songId) {
+        if (Objects.equals(songId, currentPlayingId)) {
+            return;
+        }
+
+        int oldPosition = positionOf(currentPlayingId);
+        currentPlayingId = songId;
+
+        // 只带播放状态负载更新两个位置的视图，不重设文字、不重新加载封面
         if (oldPosition >= 0) {
-            notifyItemChanged(oldPosition);
+            notifyItemChanged(oldPosition, PAYLOAD_PLAYING_STATE);
         }
-        if (position >= 0) {
-            notifyItemChanged(position);
+        int newPosition = positionOf(songId);
+        if (newPosition >= 0) {
+            notifyItemChanged(newPosition, PAYLOAD_PLAYING_STATE);
         }
     }
 
@@ -214,7 +337,7 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
      * @return 当前播放位置
      */
     public int getCurrentPlayingPosition() {
-        return currentPlayingPosition;
+        return positionOf(currentPlayingId);
     }
 
     /**
@@ -223,8 +346,9 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
      * @param song 要添加的歌曲
      */
     public void addSong(Song song) {
-        songs.add(song);
-        notifyItemInserted(songs.size() - 1);
+        List<Song> newSongs = new ArrayList<>(latestSongs);
+        newSongs.add(song);
+        updateSongs(newSongs);
     }
 
     /**
@@ -233,21 +357,30 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
      * @param position 要移除的位置
      */
     public void removeSong(int position) {
-        if (position < 0 || position >= songs.size()) {
+        if (position < 0 || position >= latestSongs.size()) {
             return;
         }
+        List<Song> newSongs = new ArrayList<>(latestSongs);
+        newSongs.remove(position);
+        updateSongs(newSongs);
+    }
 
-        songs.remove(position);
-        notifyItemRemoved(position);
-
-        // 如果移除的是当前播放的歌曲，重置当前播放位置
-        if (position == currentPlayingPosition) {
-            currentPlayingPosition = -1;
+    /**
+     * 查找歌曲在显示中的列表里的位置
+     *
+     * @return 位置，不存在时返回-1
+     */
+    private int positionOf(String songId) {
+        if (songId == null) {
+            return -1;
         }
-        // 如果移除位置在当前播放位置之前，需要调整当前播放位置
-        else if (position < currentPlayingPosition) {
-            currentPlayingPosition--;
+        List<Song> current = differ.getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            if (songId.equals(current.get(i).getId())) {
+                return i;
+            }
         }
+        return -1;
     }
 
     /**
@@ -269,8 +402,9 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
      * @return 歌曲对象
      */
     public Song getSongAt(int position) {
-        if (position >= 0 && position < songs.size()) {
-            return songs.get(position);
+        List<Song> current = differ.getCurrentList();
+        if (position >= 0 && position < current.size()) {
+            return current.get(position);
         }
         return null;
     }
@@ -284,6 +418,10 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewHolder
         TextView titleTextView;
         TextView artistTextView;
         TextView durationTextView;
+
+        // 已绑定的歌曲和封面，用于跳过重复的封面加载
+        String boundSongId;
+        Uri boundAlbumArtUri;
         // 已移除添加到播放队列按钮和更多选项按钮
 
         public SongViewHolder(@NonNull View itemView) {
@@ -26,6 +26,9 @@ public class Song {
     // 歌曲文件路径
     private String path;
 
+    // 媒体库扫描时记录的文件大小(字节)，0表示未知
+    private long size;
+
     // 专辑封面图片Uri
     private Uri albumArtUri;
 
@@ -109,6 +112,14 @@ public class Song {
         this.path = path;
     }
 
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
     public Uri getAlbumArtUri() {
         return albumArtUri;
     }
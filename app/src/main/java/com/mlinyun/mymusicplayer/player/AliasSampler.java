@@ -0,0 +1,247 @@
+package com.mlinyun.mymusicplayer.player;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 按权重抽样的别名表(Walker别名法，Vose构建)
+ * 元素按固定大小分块：每块一张别名表，另有一张按块总权重构建的顶层别名表。
+ * 抽样依次查顶层表和块内表，为O(1)；单个权重变化只需重建所在块和顶层表，
+ * 5万首歌曲时每次更新只涉及几百个元素，不必整表重建。
+ * 元素只能在末尾追加和移除，调用方用与末尾交换的方式删除中间的元素
+ */
+public class AliasSampler {
+
+    // 每块的元素数
+    private static final int BUCKET_SIZE = 256;
+
+    private double[] weights = new double[0];
+    private int size = 0;
+
+    // 块内别名表，别名保存为全局索引
+    private double[] probability = new double[0];
+    private int[] alias = new int[0];
+
+    // 顶层别名表
+    private int bucketCount = 0;
+    private double[] bucketWeights = new double[0];
+    private double[] bucketProbability = new double[0];
+    private int[] bucketAlias = new int[0];
+
+    // 待重建的块
+    private boolean[] dirtyBuckets = new boolean[0];
+    private boolean hasDirtyBuckets = false;
+
+    // 构建时的临时数组
+    private double[] scaled = new double[0];
+    private int[] small = new int[0];
+    private int[] large = new int[0];
+
+    /**
+     * 以一组权重整体构建
+     *
+     * @param newWeights 权重，负数按0处理
+     * @param count      元素个数
+     */
+    public void build(double[] newWeights, int count) {
+        size = count;
+        weights = Arrays.copyOf(newWeights, count);
+        probability = new double[count];
+        alias = new int[count];
+        bucketCount = (count + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        bucketWeights = new double[bucketCount];
+        bucketProbability = new double[bucketCount];
+        bucketAlias = new int[bucketCount];
+        dirtyBuckets = new boolean[bucketCount];
+        int scratch = Math.max(BUCKET_SIZE, bucketCount);
+        scaled = new double[scratch];
+        small = new int[scratch];
+        large = new int[scratch];
+
+        for (int b = 0; b < bucketCount; b++) {
+            rebuildBucket(b);
+        }
+        buildTable(bucketWeights, 0, bucketCount, bucketProbability, bucketAlias);
+        hasDirtyBuckets = false;
+    }
+
+    /**
+     * 更新单个元素的权重，所在块在下一次抽样前重建
+     */
+    public void update(int index, double weight) {
+        if (index < 0 || index >= size) {
+            return;
+        }
+        weights[index] = Math.max(0, weight);
+        dirtyBuckets[index / BUCKET_SIZE] = true;
+        hasDirtyBuckets = true;
+    }
+
+    /**
+     * 在末尾追加一个元素，所在块在下一次抽样前重建
+     */
+    public void append(double weight) {
+        ensureCapacity(size + 1);
+        weights[size] = Math.max(0, weight);
+        int bucket = size / BUCKET_SIZE;
+        size++;
+        if (bucket == bucketCount) {
+            bucketCount++;
+        }
+        dirtyBuckets[bucket] = true;
+        hasDirtyBuckets = true;
+    }
+
+    /**
+     * 移除末尾的元素，块变空时从顶层表中去掉
+     */
+    public void removeLast() {
+        if (size == 0) {
+            return;
+        }
+        size--;
+        weights[size] = 0;
+        int bucket = size / BUCKET_SIZE;
+        if (size % BUCKET_SIZE == 0) {
+            bucketCount--;
+            dirtyBuckets[bucket] = false;
+        } else {
+            dirtyBuckets[bucket] = true;
+        }
+        hasDirtyBuckets = true;
+    }
+
+    /**
+     * 元素当前的权重
+     */
+    public double weightAt(int index) {
+        return weights[index];
+    }
+
+    /**
+     * 按权重抽取一个元素
+     *
+     * @return 元素索引，没有元素或总权重为0时返回-1
+     */
+    public int sample(Random random) {
+        flush();
+        if (bucketCount == 0) {
+            return -1;
+        }
+        int bucket = pick(bucketProbability, bucketAlias, 0, bucketCount, random);
+        if (bucketWeights[bucket] <= 0) {
+            return -1;
+        }
+        int offset = bucket * BUCKET_SIZE;
+        return pick(probability, alias, offset, Math.min(BUCKET_SIZE, size - offset), random);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 保证可以容纳count个元素，容量不足时按倍数扩展
+     */
+    private void ensureCapacity(int count) {
+        if (count > weights.length) {
+            int capacity = Math.max(BUCKET_SIZE, Math.max(count, weights.length * 2));
+            weights = Arrays.copyOf(weights, capacity);
+            probability = Arrays.copyOf(probability, capacity);
+            alias = Arrays.copyOf(alias, capacity);
+        }
+        int buckets = (count + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        if (buckets > bucketWeights.length) {
+            int capacity = Math.max(buckets, bucketWeights.length * 2);
+            bucketWeights = Arrays.copyOf(bucketWeights, capacity);
+            bucketProbability = Arrays.copyOf(bucketProbability, capacity);
+            bucketAlias = Arrays.copyOf(bucketAlias, capacity);
+            dirtyBuckets = Arrays.copyOf(dirtyBuckets, capacity);
+        }
+        int scratch = Math.max(BUCKET_SIZE, buckets);
+        if (scratch > scaled.length) {
+            scaled = new double[Math.max(scratch, scaled.length * 2)];
+            small = new int[scaled.length];
+            large = new int[scaled.length];
+        }
+    }
+
+    private void flush() {
+        if (!hasDirtyBuckets) {
+            return;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            if (dirtyBuckets[b]) {
+                dirtyBuckets[b] = false;
+                rebuildBucket(b);
+            }
+        }
+        buildTable(bucketWeights, 0, bucketCount, bucketProbability, bucketAlias);
+        hasDirtyBuckets = false;
+    }
+
+    private void rebuildBucket(int bucket) {
+        int offset = bucket * BUCKET_SIZE;
+        int length = Math.min(BUCKET_SIZE, size - offset);
+        bucketWeights[bucket] = buildTable(weights, offset, length, probability, alias);
+    }
+
+    private static int pick(double[] probability, int[] alias, int offset, int length, Random random) {
+        int slot = offset + random.nextInt(length);
+        return random.nextDouble() < probability[slot] ? slot : alias[slot];
+    }
+
+    /**
+     * 用Vose方法为weights[offset, offset+length)构建别名表
+     *
+     * @return 这段权重的总和
+     */
+    private double buildTable(double[] source, int offset, int length, double[] probability, int[] alias) {
+        double total = 0;
+        for (int i = 0; i < length; i++) {
+            total += Math.max(0, source[offset + i]);
+        }
+        if (total <= 0) {
+            for (int i = 0; i < length; i++) {
+                probability[offset + i] = 1;
+                alias[offset + i] = offset + i;
+            }
+            return 0;
+        }
+
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < length; i++) {
+            scaled[i] = Math.max(0, source[offset + i]) * length / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[offset + less] = scaled[less];
+            alias[offset + less] = offset + more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // 剩余项因浮点误差接近1，直接取自身
+        while (largeCount > 0) {
+            int i = large[--largeCount];
+            probability[offset + i] = 1;
+            alias[offset + i] = offset + i;
+        }
+        while (smallCount > 0) {
+            int i = small[--smallCount];
+            probability[offset + i] = 1;
+            alias[offset + i] = offset + i;
+        }
+        return total;
+    }
+}
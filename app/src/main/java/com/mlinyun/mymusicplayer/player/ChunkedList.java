@@ -0,0 +1,507 @@
+package com.mlinyun.mymusicplayer.player;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * 分块列表
+ * 元素保存在最多CHUNK_CAPACITY个元素的块中，块大小的前缀和用树状数组(Fenwick树)维护。
+ * 按位置定位块为O(log(n/块大小))，块内插入和删除只移动一个块内的元素，
+ * 几万首歌曲的队列上插入、删除和移动不再复制整个列表。
+ * 连续读取相邻位置时命中上次定位的块，为O(1)。
+ * 可选按键索引：记录每个键所在的块，按键查找位置不需要遍历整个列表，且编辑时不必更新其他元素的位置。
+ * snapshot()生成与当前内容共享块数组的不可变快照，只复制块的引用；
+ * 之后对共享块的修改先复制该块(写时复制)，快照内容不受影响
+ *
+ * @param <E> 元素类型
+ */
+public class ChunkedList<E> extends AbstractList<E> {
+
+    // 块容量，满块插入时一分为二
+    private static final int CHUNK_CAPACITY = 256;
+
+    // 块元素数低于该值时尝试与相邻块合并
+    private static final int MERGE_THRESHOLD = CHUNK_CAPACITY / 4;
+
+    private static final class Chunk {
+        Object[] items = new Object[CHUNK_CAPACITY];
+        int size;
+        // 块在块列表中的序号
+        int ordinal;
+        // 元素数组是否被快照引用，被引用时修改前需要先复制
+        boolean shared;
+    }
+
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    // 块大小的树状数组，下标从1开始
+    private int[] tree = new int[1];
+
+    private int size = 0;
+
+    // 按键索引，为null时不维护
+    private final Function<E, ?> keyFunction;
+    private final Map<Object, Chunk> chunkByKey;
+
+    // 最近一次定位的块及其起始位置
+    private Chunk cachedChunk;
+    private int cachedStart;
+
+    public ChunkedList() {
+        this(null);
+    }
+
+    /**
+     * @param keyFunction 从元素取键的函数，用于indexOfKey；键应唯一
+     */
+    public ChunkedList(Function<E, ?> keyFunction) {
+        this.keyFunction = keyFunction;
+        this.chunkByKey = keyFunction != null ? new HashMap<>() : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size);
+        Chunk chunk = locate(index);
+        return (E) chunk.items[index - cachedStart];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        checkIndex(index, size);
+        Chunk chunk = writable(locate(index));
+        int offset = index - cachedStart;
+        E old = (E) chunk.items[offset];
+        chunk.items[offset] = element;
+        if (chunkByKey != null) {
+            chunkByKey.remove(keyFunction.apply(old));
+            chunkByKey.put(keyFunction.apply(element), chunk);
+        }
+        return old;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkIndex(index, size + 1);
+        modCount++;
+        if (chunks.isEmpty()) {
+            appendChunk();
+            rebuildTree();
+        }
+
+        Chunk chunk;
+        int offset;
+        if (index == size) {
+            chunk = chunks.get(chunks.size() - 1);
+            offset = chunk.size;
+        } else {
+            chunk = locate(index);
+            offset = index - cachedStart;
+        }
+
+        if (chunk.size == CHUNK_CAPACITY) {
+            Chunk right = split(chunk);
+            if (offset > chunk.size) {
+                offset -= chunk.size;
+                chunk = right;
+            }
+        }
+
+        writable(chunk);
+        System.arraycopy(chunk.items, offset, chunk.items, offset + 1, chunk.size - offset);
+        chunk.items[offset] = element;
+        chunk.size++;
+        size++;
+        updateTree(chunk.ordinal, 1);
+        if (chunkByKey != null) {
+            chunkByKey.put(keyFunction.apply(element), chunk);
+        }
+        cachedChunk = null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E remove(int index) {
+        checkIndex(index, size);
+        modCount++;
+        Chunk chunk = writable(locate(index));
+        int offset = index - cachedStart;
+        E removed = (E) chunk.items[offset];
+        System.arraycopy(chunk.items, offset + 1, chunk.items, offset, chunk.size - offset - 1);
+        chunk.items[--chunk.size] = null;
+        size--;
+        updateTree(chunk.ordinal, -1);
+        if (chunkByKey != null) {
+            chunkByKey.remove(keyFunction.apply(removed));
+        }
+        cachedChunk = null;
+
+        if (chunk.size == 0) {
+            chunks.remove(chunk.ordinal);
+            rebuildTree();
+        } else if (chunk.size < MERGE_THRESHOLD) {
+            mergeWithNeighbour(chunk);
+        }
+        return removed;
+    }
+
+    /**
+     * 移动元素，用于拖动排序
+     *
+     * @param from 原位置
+     * @param to   新位置
+     */
+    public void move(int from, int to) {
+        if (from == to) {
+            checkIndex(from, size);
+            return;
+        }
+        add(to, remove(from));
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        chunks.clear();
+        tree = new int[1];
+        size = 0;
+        if (chunkByKey != null) {
+            chunkByKey.clear();
+        }
+        cachedChunk = null;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        if (collection.isEmpty()) {
+            return false;
+        }
+        modCount++;
+        // 末尾批量追加时直接填满块，只在最后重建一次树状数组
+        for (E element : collection) {
+            Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (last == null || last.size == CHUNK_CAPACITY) {
+                last = appendChunk();
+            }
+            writable(last);
+            last.items[last.size++] = element;
+            size++;
+            if (chunkByKey != null) {
+                chunkByKey.put(keyFunction.apply(element), last);
+            }
+        }
+        rebuildTree();
+        cachedChunk = null;
+        return true;
+    }
+
+    /**
+     * 按键查找元素位置
+     *
+     * @param key 键
+     * @return 位置，不存在时返回-1
+     */
+    public int indexOfKey(Object key) {
+        if (chunkByKey == null) {
+            throw new IllegalStateException("未设置键函数");
+        }
+        Chunk chunk = chunkByKey.get(key);
+        if (chunk == null) {
+            return -1;
+        }
+        for (int i = 0; i < chunk.size; i++) {
+            @SuppressWarnings("unchecked")
+            E element = (E) chunk.items[i];
+            if (key.equals(keyFunction.apply(element))) {
+                return prefixSum(chunk.ordinal) + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 是否包含指定键的元素，O(1)
+     */
+    public boolean containsKey(Object key) {
+        if (chunkByKey == null) {
+            throw new IllegalStateException("未设置键函数");
+        }
+        return chunkByKey.containsKey(key);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        // 按块顺序遍历，不逐个定位
+        return new Iterator<E>() {
+            private final int expectedModCount = modCount;
+            private int chunkIndex = 0;
+            private int offset = 0;
+            private int returned = 0;
+
+            @Override
+            public boolean hasNext() {
+                return returned < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (returned >= size) {
+                    throw new NoSuchElementException();
+                }
+                while (offset >= chunks.get(chunkIndex).size) {
+                    chunkIndex++;
+                    offset = 0;
+                }
+                returned++;
+                return (E) chunks.get(chunkIndex).items[offset++];
+            }
+        };
+    }
+
+    /**
+     * 生成当前内容的不可变快照，O(块数)
+     * 快照与列表共享块数组，可以在其他线程读取；列表之后的修改只复制被修改的块
+     *
+     * @return 不可修改的列表
+     */
+    public List<E> snapshot() {
+        int count = chunks.size();
+        Object[][] arrays = new Object[count][];
+        int[] starts = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = chunks.get(i);
+            chunk.shared = true;
+            arrays[i] = chunk.items;
+            starts[i + 1] = starts[i] + chunk.size;
+        }
+        return new Snapshot<>(arrays, starts);
+    }
+
+    /**
+     * 修改块之前调用：元素数组被快照引用时先复制一份，O(块容量)
+     */
+    private static Chunk writable(Chunk chunk) {
+        if (chunk.shared) {
+            chunk.items = chunk.items.clone();
+            chunk.shared = false;
+        }
+        return chunk;
+    }
+
+    /**
+     * 共享块数组的不可变快照
+     */
+    private static final class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[][] arrays;
+        // starts[i]为第i块第一个元素的位置，最后一项为总数
+        private final int[] starts;
+
+        Snapshot(Object[][] arrays, int[] starts) {
+            this.arrays = arrays;
+            this.starts = starts;
+        }
+
+        @Override
+        public int size() {
+            return starts[arrays.length];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            checkIndex(index, size());
+            // 二分查找最后一个起始位置不大于index的块
+            int low = 0;
+            int high = arrays.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return (E) arrays[low][index - starts[low]];
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            // 按块顺序遍历
+            return new Iterator<E>() {
+                private int chunkIndex = 0;
+                private int offset = 0;
+                private int returned = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return returned < size();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    if (returned >= size()) {
+                        throw new NoSuchElementException();
+                    }
+                    while (offset >= starts[chunkIndex + 1] - starts[chunkIndex]) {
+                        chunkIndex++;
+                        offset = 0;
+                    }
+                    returned++;
+                    return (E) arrays[chunkIndex][offset++];
+                }
+            };
+        }
+    }
+
+    /**
+     * 定位位置所在的块，并记录块的起始位置
+     */
+    private Chunk locate(int index) {
+        if (cachedChunk != null && index >= cachedStart && index < cachedStart + cachedChunk.size) {
+            return cachedChunk;
+        }
+        // 在树状数组上二分查找第一个前缀和大于index的块
+        int position = 0;
+        int remaining = index;
+        for (int step = Integer.highestOneBit(chunks.size()); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= chunks.size() && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        cachedChunk = chunks.get(position);
+        cachedStart = index - remaining;
+        return cachedChunk;
+    }
+
+    /**
+     * 把满块的后半部分拆成新块
+     *
+     * @return 新块
+     */
+    private Chunk split(Chunk chunk) {
+        writable(chunk);
+        Chunk right = new Chunk();
+        int half = chunk.size / 2;
+        right.size = chunk.size - half;
+        System.arraycopy(chunk.items, half, right.items, 0, right.size);
+        Arrays.fill(chunk.items, half, chunk.size, null);
+        chunk.size = half;
+        chunks.add(chunk.ordinal + 1, right);
+        if (chunkByKey != null) {
+            for (int i = 0; i < right.size; i++) {
+                @SuppressWarnings("unchecked")
+                E element = (E) right.items[i];
+                chunkByKey.put(keyFunction.apply(element), right);
+            }
+        }
+        rebuildTree();
+        return right;
+    }
+
+    /**
+     * 元素过少的块并入相邻块，避免大量删除后留下许多小块
+     */
+    private void mergeWithNeighbour(Chunk chunk) {
+        Chunk target = null;
+        boolean intoPrevious = false;
+        if (chunk.ordinal > 0 && chunks.get(chunk.ordinal - 1).size + chunk.size <= CHUNK_CAPACITY) {
+            target = chunks.get(chunk.ordinal - 1);
+            intoPrevious = true;
+        } else if (chunk.ordinal + 1 < chunks.size()
+                && chunks.get(chunk.ordinal + 1).size + chunk.size <= CHUNK_CAPACITY) {
+            target = chunks.get(chunk.ordinal + 1);
+        }
+        if (target == null) {
+            return;
+        }
+        writable(target);
+        if (intoPrevious) {
+            System.arraycopy(chunk.items, 0, target.items, target.size, chunk.size);
+        } else {
+            System.arraycopy(target.items, 0, target.items, chunk.size, target.size);
+            System.arraycopy(chunk.items, 0, target.items, 0, chunk.size);
+        }
+        target.size += chunk.size;
+        if (chunkByKey != null) {
+            for (int i = 0; i < chunk.size; i++) {
+                @SuppressWarnings("unchecked")
+                E element = (E) chunk.items[i];
+                chunkByKey.put(keyFunction.apply(element), target);
+            }
+        }
+        chunks.remove(chunk.ordinal);
+        rebuildTree();
+    }
+
+    private Chunk appendChunk() {
+        Chunk chunk = new Chunk();
+        chunk.ordinal = chunks.size();
+        chunks.add(chunk);
+        return chunk;
+    }
+
+    /**
+     * 块列表变化后重新编号并重建树状数组，O(块数)
+     */
+    private void rebuildTree() {
+        int count = chunks.size();
+        tree = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = chunks.get(i);
+            chunk.ordinal = i;
+            tree[i + 1] += chunk.size;
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if (parent <= count) {
+                tree[parent] += tree[i + 1];
+            }
+        }
+        cachedChunk = null;
+    }
+
+    private void updateTree(int ordinal, int delta) {
+        for (int i = ordinal + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * 序号小于ordinal的块的元素总数
+     */
+    private int prefixSum(int ordinal) {
+        int sum = 0;
+        for (int i = ordinal; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (bound));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 淡入淡出调度器
+ * 在独立的高优先级音频线程上驱动两个播放引擎的音量渐变，避免主线程繁忙时出现音量跳变。
+ * 采用等功率曲线，增益表在启动时一次性预计算，渐变过程中每个节拍只做查表和两次音量设置
+ */
+public class CrossfadeScheduler {
+    private static final String TAG = "CrossfadeScheduler";
+
+    // 音量更新节拍(毫秒)，约50Hz，足以让人耳感觉不到阶梯
+    private static final int TICK_MS = 20;
+
+    /**
+     * 淡入淡出结束回调
+     */
+    public interface OnCrossfadeFinishedListener {
+        /**
+         * @param outgoing 已淡出完毕的引擎
+         */
+        void onCrossfadeFinished(IPlayerEngine outgoing);
+    }
+
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    // 当前渐变涉及的引擎及参数，仅在调度线程上读写
+    private IPlayerEngine outgoing;
+    private IPlayerEngine incoming;
+    private float[] fadeOutGains;
+    private float[] fadeInGains;
+    private float masterVolume = 1.0f;
+    private long startTime;
+    private int durationMs;
+    private OnCrossfadeFinishedListener listener;
+
+    private volatile boolean running = false;
+
+    private final Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    public CrossfadeScheduler() {
+        thread = new HandlerThread("CrossfadeScheduler", Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 开始淡入淡出
+     *
+     * @param outgoing     淡出的引擎
+     * @param incoming     淡入的引擎，调用前应已以0音量开始播放
+     * @param durationMs   渐变时长(毫秒)
+     * @param masterVolume 用户设置的主音量，渐变增益会与之相乘
+     * @param listener     渐变结束回调，在调度线程上执行
+     */
+    public void start(IPlayerEngine outgoing, IPlayerEngine incoming, int durationMs,
+                      float masterVolume, OnCrossfadeFinishedListener listener) {
+        handler.post(() -> {
+            finishNow();
+
+            this.outgoing = outgoing;
+            this.incoming = incoming;
+            this.durationMs = Math.max(TICK_MS, durationMs);
+            this.masterVolume = masterVolume;
+            this.listener = listener;
+            buildCurve(this.durationMs / TICK_MS + 1);
+            this.startTime = SystemClock.uptimeMillis();
+            running = true;
+
+            Log.d(TAG, "开始淡入淡出，时长: " + this.durationMs + "ms");
+            tick();
+        });
+    }
+
+    /**
+     * 更新主音量，正在进行的渐变会立即按新的主音量计算
+     */
+    public void setMasterVolume(float volume) {
+        handler.post(() -> masterVolume = volume);
+    }
+
+    /**
+     * 立即结束当前渐变：淡入引擎恢复主音量，淡出引擎交给回调处理
+     */
+    public void cancel() {
+        handler.post(this::finishNow);
+    }
+
+    /**
+     * 是否有渐变正在进行
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 释放调度线程
+     */
+    public void release() {
+        handler.removeCallbacksAndMessages(null);
+        running = false;
+        thread.quitSafely();
+    }
+
+    /**
+     * 预计算等功率增益表，淡出为cos，淡入为sin，保证两路功率之和恒定
+     */
+    private void buildCurve(int steps) {
+        fadeOutGains = new float[steps];
+        fadeInGains = new float[steps];
+        for (int i = 0; i < steps; i++) {
+            double t = (steps == 1) ? 1.0 : (double) i / (steps - 1);
+            fadeOutGains[i] = (float) Math.cos(t * Math.PI / 2);
+            fadeInGains[i] = (float) Math.sin(t * Math.PI / 2);
+        }
+    }
+
+    private void tick() {
+        if (!running) {
+            return;
+        }
+
+        long elapsed = SystemClock.uptimeMillis() - startTime;
+        if (elapsed >= durationMs) {
+            finishNow();
+            return;
+        }
+
+        // 按实际流逝时间查表，节拍延迟时直接跳到正确的增益，不会拖长渐变
+        int index = (int) (elapsed / TICK_MS);
+        float out = fadeOutGains[index] * masterVolume;
+        float in = fadeInGains[index] * masterVolume;
+        outgoing.setVolume(out, out);
+        incoming.setVolume(in, in);
+
+        handler.postAtTime(tickRunnable, startTime + (long) (index + 1) * TICK_MS);
+    }
+
+    private void finishNow() {
+        handler.removeCallbacks(tickRunnable);
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        incoming.setVolume(masterVolume, masterVolume);
+        IPlayerEngine finished = outgoing;
+        OnCrossfadeFinishedListener callback = listener;
+        outgoing = null;
+        incoming = null;
+        listener = null;
+
+        Log.d(TAG, "淡入淡出结束");
+        if (callback != null) {
+            callback.onCrossfadeFinished(finished);
+        }
+    }
+}
@@ -4,21 +4,37 @@ import android.content.Context;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.media3.common.C;
 import androidx.media3.common.MediaItem;
 import androidx.media3.common.Player;
+import androidx.media3.common.TrackSelectionParameters;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.SeekParameters;
 import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
 
 /**
  * ExoPlayer实现的播放引擎
  * 基于Media3 ExoPlayer实现IPlayerEngine接口
  * 更适合Android 16 (API 35)及以上版本
  */
+@OptIn(markerClass = UnstableApi.class)
 public class ExoPlayerImpl implements IPlayerEngine {
     private static final String TAG = "ExoPlayerImpl";
 
+    // 本地文件缓冲参数：缓冲2到5秒、最多2MB，缓冲100ms即开始播放；尚未实测，可按首个音频样本输出日志调整
+    private static final int LOCAL_MIN_BUFFER_MS = 2000;
+    private static final int LOCAL_MAX_BUFFER_MS = 5000;
+    private static final int LOCAL_BUFFER_FOR_PLAYBACK_MS = 100;
+    private static final int LOCAL_BUFFER_FOR_REBUFFER_MS = 250;
+    private static final int LOCAL_TARGET_BUFFER_BYTES = 2 * 1024 * 1024;
+
     private ExoPlayer exoPlayer;
     private final Context context;
     private Uri currentUri;
@@ -27,6 +43,20 @@ public class ExoPlayerImpl implements IPlayerEngine {
     private OnCompletionListener onCompletionListener;
     private OnErrorListener onErrorListener;
     private OnPreparedListener onPreparedListener;
+    private OnTrackTransitionListener onTrackTransitionListener;
+    private OnSeekCompleteListener onSeekCompleteListener;
+    private EngineEventListener engineEventListener;
+
+    // 最近一次推送的缓冲状态和音频会话，只在变化时推送
+    private boolean reportedBuffering = false;
+    private int reportedAudioSessionId = C.AUDIO_SESSION_ID_UNSET;
+
+    // 定位索引及其引入的引擎时间与真实时间之差(毫秒)
+    private SeekIndex seekIndex;
+    private int seekPositionDelta = 0;
+
+    // 是否有定位请求正在等待完成，定位后播放器会先进入缓冲状态，再次就绪即视为定位完成
+    private boolean isSeekPending = false;
 
     // 用于延迟执行的Handler
     private final Handler handler;
@@ -35,6 +65,17 @@ public class ExoPlayerImpl implements IPlayerEngine {
     private boolean isPreparing = false;
     private boolean needPlayWhenReady = false;
 
+    // 当前播放器是否使用本地文件缓冲配置
+    private boolean isLocalProfile = true;
+    private DefaultLoadControl loadControl;
+    private float currentVolume = 1.0f;
+
+    // 省电模式：开启时在设备支持的情况下使用音频卸载播放
+    private boolean isPowerSaving = false;
+
+    // 用于统计准备到首个音频样本输出的耗时(System.currentTimeMillis)
+    private long prepareStartTimeMs = 0;
+
     /**
      * 构造函数
      *
@@ -42,7 +83,8 @@ public class ExoPlayerImpl implements IPlayerEngine {
      */
     public ExoPlayerImpl(Context context) {
         this.context = context;
-        this.handler = new Handler(Looper.getMainLooper());
+        // ExoPlayer绑定到创建它的线程(播放器线程)，事件也转发到该线程
+        this.handler = new Handler(Looper.myLooper());
     }
 
     @Override
@@ -51,17 +93,55 @@ public class ExoPlayerImpl implements IPlayerEngine {
         releasePlayer();
 
         try {
-            // 创建ExoPlayer实例
+            // 创建ExoPlayer实例，本地文件使用小缓冲配置，其他来源使用默认的流媒体配置
+            loadControl = isLocalProfile ? buildLocalLoadControl() : new DefaultLoadControl();
             exoPlayer = new ExoPlayer.Builder(context)
                     .setHandleAudioBecomingNoisy(true)  // 处理音频变得嘈杂的情况（如拔出耳机）
-                    .build();            // 设置监听器
+                    .setLoadControl(loadControl)
+                    .setWakeMode(C.WAKE_MODE_LOCAL)  // 播放期间由ExoPlayer持有唤醒锁，暂停或结束时自动释放
+                    .build();
+            exoPlayer.setVolume(currentVolume);
+            applyPowerSaving();
+            notifyAudioSessionId(exoPlayer.getAudioSessionId());
+            exoPlayer.addAudioOffloadListener(new ExoPlayer.AudioOffloadListener() {
+                @Override
+                public void onOffloadedPlaybackStateChanged(boolean offloadedPlayback) {
+                    Log.d(TAG, "音频卸载播放: " + (offloadedPlayback ? "已启用" : "未启用"));
+                }
+            });
+            exoPlayer.addAnalyticsListener(new AnalyticsListener() {
+                @Override
+                public void onAudioPositionAdvancing(@NonNull EventTime eventTime, long playoutStartSystemTimeMs) {
+                    // 记录从开始准备到首个音频样本输出的耗时和缓冲占用，用于对比不同缓冲配置
+                    if (prepareStartTimeMs > 0) {
+                        Log.d(TAG, "首个音频样本输出耗时: " + (playoutStartSystemTimeMs - prepareStartTimeMs)
+                                + "ms, 缓冲占用: " + getAllocatedBufferBytes() / 1024 + "KB, 配置: "
+                                + (isLocalProfile ? "本地" : "默认"));
+                        prepareStartTimeMs = 0;
+                    }
+                }
+
+                @Override
+                public void onAudioSessionIdChanged(@NonNull EventTime eventTime, int audioSessionId) {
+                    notifyAudioSessionId(audioSessionId);
+                }
+            });            // 设置监听器
             exoPlayer.addListener(new Player.Listener() {
                 @Override
                 public void onPlaybackStateChanged(int playbackState) {
+                    notifyBuffering(playbackState == Player.STATE_BUFFERING);
+
                     // 更新状态标志
                     if (playbackState == Player.STATE_READY) {
                         isPreparing = false;
 
+                        if (isSeekPending) {
+                            isSeekPending = false;
+                            if (onSeekCompleteListener != null) {
+                                handler.post(() -> onSeekCompleteListener.onSeekComplete());
+                            }
+                        }
+
                         // 准备完成
                         if (onPreparedListener != null) {
                             handler.post(() -> onPreparedListener.onPrepared());
@@ -78,8 +158,6 @@ public class ExoPlayerImpl implements IPlayerEngine {
                     } else if (playbackState == Player.STATE_IDLE) {
                         // 播放器空闲状态
                         isPreparing = false;
-                    } else if (playbackState == Player.STATE_BUFFERING) {
-                        // 缓冲状态
                     }
                 }
 
@@ -89,36 +167,70 @@ public class ExoPlayerImpl implements IPlayerEngine {
 
                     Log.e(TAG, "ExoPlayer错误: " + error.getMessage() + ", 错误码: " + error.errorCode, error);
 
-                    // 尝试获取更详细的错误信息
-                    String errorMessage = "ExoPlayer错误: " + error.getMessage();
-                    if (error.getCause() != null) {
-                        errorMessage += " 原因: " + error.getCause().getMessage();
-                    }
-
-                    final String finalErrorMsg = errorMessage;
-
                     // 通知错误回调
                     if (onErrorListener != null) {
                         final int errorCode = error.errorCode;
                         handler.post(() -> onErrorListener.onError(errorCode, 0));
-                    }                    // 试图恢复播放
-                    if (currentUri != null) {
-                        handler.postDelayed(() -> {
-                            try {
-                                if (exoPlayer != null) {
-                                    exoPlayer.stop();
-                                    prepare(currentUri);
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "恢复播放失败", e);
-                            }
-                        }, 1000);
                     }
+                    // 不在引擎内自行重试，恢复方式统一由上层的恢复策略决定
                 }
 
                 @Override
                 public void onIsPlayingChanged(boolean isPlaying) {
                     // 通知播放状态变更
+                    long timestamp = SystemClock.elapsedRealtime();
+                    handler.post(() -> {
+                        if (engineEventListener != null) {
+                            engineEventListener.onIsPlayingChanged(isPlaying, timestamp);
+                        }
+                    });
+                }
+
+                @Override
+                public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition,
+                                                    @NonNull Player.PositionInfo newPosition, int reason) {
+                    int mappedReason;
+                    if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+                        mappedReason = DISCONTINUITY_SEEK;
+                    } else if (reason == Player.DISCONTINUITY_REASON_AUTO_TRANSITION) {
+                        mappedReason = DISCONTINUITY_TRANSITION;
+                    } else {
+                        mappedReason = DISCONTINUITY_INTERNAL;
+                    }
+                    // 自动衔接后定位索引已失效，位置无需修正
+                    int delta = mappedReason == DISCONTINUITY_TRANSITION ? 0 : seekPositionDelta;
+                    int position = (int) Math.max(0, newPosition.positionMs - delta);
+                    long timestamp = SystemClock.elapsedRealtime();
+                    handler.post(() -> {
+                        if (engineEventListener != null) {
+                            engineEventListener.onPositionDiscontinuity(position, mappedReason, timestamp);
+                        }
+                    });
+                }
+
+                @Override
+                public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+                    // 只处理播放到末尾后自动进入时间线中下一项的情况
+                    if (reason != Player.MEDIA_ITEM_TRANSITION_REASON_AUTO || mediaItem == null) {
+                        return;
+                    }
+
+                    if (mediaItem.localConfiguration != null) {
+                        currentUri = mediaItem.localConfiguration.uri;
+                    }
+                    seekIndex = null;
+                    seekPositionDelta = 0;
+
+                    // 移除已播放完的条目，保持时间线只包含当前曲目及排队的下一首
+                    int currentIndex = exoPlayer.getCurrentMediaItemIndex();
+                    if (currentIndex > 0) {
+                        exoPlayer.removeMediaItems(0, currentIndex);
+                    }
+
+                    Log.d(TAG, "已无缝切换到下一首: " + currentUri);
+                    if (onTrackTransitionListener != null) {
+                        handler.post(() -> onTrackTransitionListener.onTrackTransition());
+                    }
                 }
             });
 
@@ -132,8 +244,29 @@ public class ExoPlayerImpl implements IPlayerEngine {
         }
     }
 
+    @Override
+    public void prepare(PreparedSource source) {
+        // ExoPlayer通过数据源工厂自行打开文件，这里使用后台解析得到的规范file URI，
+        // 文件已在后台打开校验过，不再重复检查
+        prepareUri(source != null ? source.getUri() : null, source != null);
+    }
+
     @Override
     public void prepare(Uri uri) {
+        prepareUri(uri, false);
+    }
+
+    /**
+     * 准备播放URI
+     *
+     * @param uri      媒体URI
+     * @param verified 文件是否已在后台打开校验过，为true时跳过存在性和可读性检查
+     */
+    private void prepareUri(Uri uri, boolean verified) {
+        // 旧曲目的定位索引不再适用
+        seekIndex = null;
+        seekPositionDelta = 0;
+
         if (uri == null) {
             Log.e(TAG, "无法准备空URI");
             if (onErrorListener != null) {
@@ -158,8 +291,23 @@ public class ExoPlayerImpl implements IPlayerEngine {
             }
         }
 
+        // 根据来源选择缓冲配置，配置变化时需要重建播放器
+        boolean local = isLocalUri(uri);
+        if (local != isLocalProfile) {
+            Log.d(TAG, "切换缓冲配置: " + (local ? "本地" : "默认"));
+            isLocalProfile = local;
+            initialize();
+            if (exoPlayer == null) {
+                if (onErrorListener != null) {
+                    handler.post(() -> onErrorListener.onError(-1002, 0));
+                }
+                return;
+            }
+        }
+
         // 重置准备状态
         isPreparing = true;
+        prepareStartTimeMs = System.currentTimeMillis();
 
         // 记录当前URI
         currentUri = uri;
@@ -167,7 +315,9 @@ public class ExoPlayerImpl implements IPlayerEngine {
         try {
             // 获取内容类型和验证文件是否可访问
             String scheme = uri.getScheme();
-            if ("file".equals(scheme)) {
+            if (verified) {
+                Log.d(TAG, "使用已校验的数据源: " + uri);
+            } else if ("file".equals(scheme)) {
                 java.io.File file = new java.io.File(uri.getPath());
                 if (!file.exists()) {
                     Log.e(TAG, "文件不存在: " + uri);
@@ -205,15 +355,11 @@ public class ExoPlayerImpl implements IPlayerEngine {
             exoPlayer.stop();
 
             // 创建MediaItem (有些特殊处理以支持更多格式)
-            androidx.media3.common.MediaItem.Builder builder = new androidx.media3.common.MediaItem.Builder()
-                    .setUri(uri)
-                    .setMediaId(uri.toString());
-
-            MediaItem mediaItem = builder.build();
+            MediaItem mediaItem = buildMediaItem(uri);
 
             Log.d(TAG, "开始准备媒体: " + uri);
 
-            // 设置媒体项并准备播放
+            // 设置媒体项并准备播放（会同时清除之前排队的下一首）
             exoPlayer.setMediaItem(mediaItem);
             // 使用异步准备
             exoPlayer.prepare();
@@ -230,7 +376,6 @@ public class ExoPlayerImpl implements IPlayerEngine {
             isPreparing = false;
 
             if (onErrorListener != null) {
-                final String errorMsg = "准备播放失败: " + (e.getMessage() != null ? e.getMessage() : "未知错误");
                 handler.post(() -> onErrorListener.onError(-1003, 0));
             }
 
@@ -245,6 +390,73 @@ public class ExoPlayerImpl implements IPlayerEngine {
         }
     }
 
+    /**
+     * 构建本地文件播放的缓冲控制
+     * 只缓冲几秒的数据即可开始播放，并且不保留已播放部分的回退缓冲，
+     * 回退定位时直接从文件重新读取
+     */
+    private static DefaultLoadControl buildLocalLoadControl() {
+        return new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(LOCAL_MIN_BUFFER_MS, LOCAL_MAX_BUFFER_MS,
+                        LOCAL_BUFFER_FOR_PLAYBACK_MS, LOCAL_BUFFER_FOR_REBUFFER_MS)
+                .setTargetBufferBytes(LOCAL_TARGET_BUFFER_BYTES)
+                .setPrioritizeTimeOverSizeThresholds(true)
+                .setBackBuffer(0, false)
+                .build();
+    }
+
+    /**
+     * 判断URI是否指向本地文件
+     * 直接由文件路径解析的URI没有scheme
+     */
+    private static boolean isLocalUri(Uri uri) {
+        String scheme = uri.getScheme();
+        return scheme == null || "file".equals(scheme) || "content".equals(scheme)
+                || "android.resource".equals(scheme);
+    }
+
+    /**
+     * 获取当前缓冲分配的字节数
+     */
+    private long getAllocatedBufferBytes() {
+        return loadControl != null ? loadControl.getAllocator().getTotalBytesAllocated() : 0;
+    }
+
+    /**
+     * 根据URI创建MediaItem
+     */
+    private MediaItem buildMediaItem(Uri uri) {
+        return new MediaItem.Builder()
+                .setUri(uri)
+                .setMediaId(uri.toString())
+                .build();
+    }
+
+    @Override
+    public void setNextDataSource(PreparedSource source) {
+        if (exoPlayer == null) {
+            return;
+        }
+
+        try {
+            // 清除当前曲目之后已排队的条目
+            int nextIndex = exoPlayer.getCurrentMediaItemIndex() + 1;
+            int count = exoPlayer.getMediaItemCount();
+            if (count > nextIndex) {
+                exoPlayer.removeMediaItems(nextIndex, count);
+            }
+
+            // 追加到时间线末尾，ExoPlayer会在当前曲目播放期间提前缓冲下一首并无缝衔接
+            // 文件已在后台打开校验过，使用其规范URI
+            if (source != null) {
+                exoPlayer.addMediaItem(buildMediaItem(source.getUri()));
+                Log.d(TAG, "已排队下一首: " + source.getUri());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "设置下一首时出错: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public void play() {
         if (exoPlayer != null) {
@@ -313,7 +525,9 @@ public class ExoPlayerImpl implements IPlayerEngine {
     public void seekTo(int position) {
         if (exoPlayer != null) {
             try {
-                exoPlayer.seekTo(position);
+                exoPlayer.setSeekParameters(SeekParameters.EXACT);
+                isSeekPending = true;
+                exoPlayer.seekTo(mapSeekPosition(position));
                 // 已跳转到指定位置
             } catch (Exception e) {
                 Log.e(TAG, "Error seeking in ExoPlayer", e);
@@ -321,11 +535,59 @@ public class ExoPlayerImpl implements IPlayerEngine {
         }
     }
 
+    @Override
+    public void seekToFast(int position) {
+        if (exoPlayer != null) {
+            try {
+                // 定位到最近的同步点，拖动预览时不需要精确到帧
+                exoPlayer.setSeekParameters(SeekParameters.CLOSEST_SYNC);
+                isSeekPending = true;
+                exoPlayer.seekTo(mapSeekPosition(position));
+            } catch (Exception e) {
+                Log.e(TAG, "Error fast seeking in ExoPlayer", e);
+            }
+        }
+    }
+
     @Override
     public void release() {
         releasePlayer();
     }
 
+    @Override
+    public void setPowerSaving(boolean enabled) {
+        if (isPowerSaving == enabled) {
+            return;
+        }
+        isPowerSaving = enabled;
+        applyPowerSaving();
+    }
+
+    /**
+     * 按省电模式设置音频卸载偏好
+     * 卸载时解码由音频硬件完成，ExoPlayer会在硬件缓冲充足时停止调度，让CPU进入休眠。
+     * 要求支持无缝播放，避免排队的下一首在卸载模式下出现间隙；设备不支持时自动回退到普通播放
+     */
+    private void applyPowerSaving() {
+        if (exoPlayer == null) {
+            return;
+        }
+        try {
+            TrackSelectionParameters.AudioOffloadPreferences preferences = isPowerSaving
+                    ? new TrackSelectionParameters.AudioOffloadPreferences.Builder()
+                    .setAudioOffloadMode(TrackSelectionParameters.AudioOffloadPreferences.AUDIO_OFFLOAD_MODE_ENABLED)
+                    .setIsGaplessSupportRequired(true)
+                    .build()
+                    : TrackSelectionParameters.AudioOffloadPreferences.DEFAULT;
+            exoPlayer.setTrackSelectionParameters(exoPlayer.getTrackSelectionParameters()
+                    .buildUpon()
+                    .setAudioOffloadPreferences(preferences)
+                    .build());
+        } catch (Exception e) {
+            Log.e(TAG, "设置音频卸载偏好时出错", e);
+        }
+    }
+
     private void releasePlayer() {
         if (exoPlayer != null) {
             try {
@@ -344,7 +606,7 @@ public class ExoPlayerImpl implements IPlayerEngine {
     public int getCurrentPosition() {
         if (exoPlayer != null) {
             try {
-                return (int) exoPlayer.getCurrentPosition();
+                return (int) Math.max(0, exoPlayer.getCurrentPosition() - seekPositionDelta);
             } catch (Exception e) {
                 Log.e(TAG, "Error getting current position", e);
             }
@@ -352,10 +614,20 @@ public class ExoPlayerImpl implements IPlayerEngine {
         return 0;
     }
 
+    @Override
+    public int getPresentationPosition() {
+        // ExoPlayer的播放位置由音频渲染器根据AudioTrack时间戳和输出延迟推算，本身即为呈现位置
+        return getCurrentPosition();
+    }
+
     @Override
     public int getDuration() {
         if (exoPlayer != null) {
             try {
+                // 引擎对无目录的VBR文件按第一帧码率估算时长，有索引时使用逐帧累计的精确时长
+                if (seekIndex != null) {
+                    return seekIndex.getDurationMs();
+                }
                 long duration = exoPlayer.getDuration();
                 return duration != androidx.media3.common.C.TIME_UNSET ? (int) duration : 0;
             } catch (Exception e) {
@@ -385,6 +657,72 @@ public class ExoPlayerImpl implements IPlayerEngine {
         this.onPreparedListener = listener;
     }
 
+    @Override
+    public void setOnTrackTransitionListener(OnTrackTransitionListener listener) {
+        this.onTrackTransitionListener = listener;
+    }
+
+    @Override
+    public void setSeekIndex(SeekIndex index) {
+        this.seekIndex = (index != null && index.needsCorrection()) ? index : null;
+        this.seekPositionDelta = 0;
+    }
+
+    /**
+     * 将目标位置换算为引擎时间，并记录两者之差用于修正后续的进度读取
+     */
+    private int mapSeekPosition(int position) {
+        if (seekIndex == null) {
+            seekPositionDelta = 0;
+            return position;
+        }
+        int enginePosition = seekIndex.toEngineTime(position);
+        seekPositionDelta = enginePosition - position;
+        return enginePosition;
+    }
+
+    @Override
+    public void setOnSeekCompleteListener(OnSeekCompleteListener listener) {
+        this.onSeekCompleteListener = listener;
+    }
+
+    @Override
+    public void setEngineEventListener(EngineEventListener listener) {
+        this.engineEventListener = listener;
+        // 新的监听器立即收到当前的音频会话
+        if (exoPlayer != null) {
+            int sessionId = exoPlayer.getAudioSessionId();
+            reportedAudioSessionId = C.AUDIO_SESSION_ID_UNSET;
+            notifyAudioSessionId(sessionId);
+        }
+    }
+
+    private void notifyBuffering(boolean buffering) {
+        if (buffering == reportedBuffering) {
+            return;
+        }
+        reportedBuffering = buffering;
+        long timestamp = SystemClock.elapsedRealtime();
+        handler.post(() -> {
+            if (engineEventListener != null) {
+                engineEventListener.onBufferingChanged(buffering, timestamp);
+            }
+        });
+    }
+
+    private void notifyAudioSessionId(int sessionId) {
+        if (sessionId == reportedAudioSessionId || sessionId == C.AUDIO_SESSION_ID_UNSET) {
+            return;
+        }
+        reportedAudioSessionId = sessionId;
+        long timestamp = SystemClock.elapsedRealtime();
+        handler.post(() -> {
+            if (engineEventListener != null) {
+                engineEventListener.onAudioSessionIdChanged(sessionId, timestamp);
+            }
+        });
+    }
+
     /**
      * 将播放状态代码转换为可读字符串，便于调试
      */
@@ -409,8 +747,17 @@ public class ExoPlayerImpl implements IPlayerEngine {
             try {
                 // ExoPlayer使用的是单一音量控制，我们取左右声道的平均值
                 float volume = (leftVolume + rightVolume) / 2.0f;
-                exoPlayer.setVolume(volume);
-                Log.d(TAG, "ExoPlayer设置音量: " + volume);
+                currentVolume = volume;
+                // ExoPlayer只允许在创建它的线程上访问，淡入淡出调度线程上的调用需要转发
+                if (Looper.myLooper() == exoPlayer.getApplicationLooper()) {
+                    exoPlayer.setVolume(volume);
+                } else {
+                    handler.post(() -> {
+                        if (exoPlayer != null) {
+                            exoPlayer.setVolume(volume);
+                        }
+                    });
+                }
             } catch (Exception e) {
                 Log.e(TAG, "设置ExoPlayer音量时出错: " + e.getMessage(), e);
             }
@@ -8,6 +8,21 @@ import android.net.Uri;
  */
 public interface IPlayerEngine {
 
+    /**
+     * 位置跳变原因：定位完成
+     */
+    int DISCONTINUITY_SEEK = 1;
+
+    /**
+     * 位置跳变原因：自动衔接到下一首
+     */
+    int DISCONTINUITY_TRANSITION = 2;
+
+    /**
+     * 位置跳变原因：引擎内部调整(如恢复播放时的位置校正)
+     */
+    int DISCONTINUITY_INTERNAL = 3;
+
     /**
      * 初始化播放器
      */
@@ -19,6 +34,30 @@ public interface IPlayerEngine {
      */
     void prepare(Uri uri);
 
+    /**
+     * 准备播放已在后台打开和校验过的数据源
+     * 引擎直接使用其中的文件描述符，不再按路径检查文件；方法返回后调用方可以关闭数据源
+     * @param source 已打开的数据源
+     */
+    void prepare(PreparedSource source);
+
+    /**
+     * 预先设置下一首音频，用于无缝播放
+     * 引擎会在后台提前准备好下一首，当前曲目结束时直接衔接而不触发完成回调，
+     * 而是触发曲目切换回调
+     * 与prepare(PreparedSource)相同，方法返回后调用方可以关闭数据源
+     * @param source 下一首已打开的数据源，传入null表示取消已排队的下一首
+     */
+    void setNextDataSource(PreparedSource source);
+
+    /**
+     * 设置当前曲目的定位索引
+     * 对于没有Xing/VBRI目录的VBR MP3，引擎会借助索引修正定位位置、播放进度和总时长。
+     * 索引只对当前已准备的曲目有效，重新准备或切换曲目后自动失效
+     * @param index 定位索引，传入null表示不使用
+     */
+    void setSeekIndex(SeekIndex index);
+
     /**
      * 开始播放
      */
@@ -40,6 +79,13 @@ public interface IPlayerEngine {
      */
     void seekTo(int position);
 
+    /**
+     * 快速定位到目标位置附近的同步点，用于拖动进度条时的预览
+     * 精度低于seekTo，但开销小，适合频繁调用
+     * @param position 目标位置(毫秒)
+     */
+    void seekToFast(int position);
+
     /**
      * 释放播放器资源
      */
@@ -51,6 +97,14 @@ public interface IPlayerEngine {
      */
     int getCurrentPosition();
 
+    /**
+     * 获取当前呈现位置
+     * 即音频实际从输出设备送出的位置，已扣除解码与音频输出管线中的缓冲延迟，
+     * 适用于歌词同步等需要与听到的声音对齐的场景
+     * @return 呈现位置(毫秒)
+     */
+    int getPresentationPosition();
+
     /**
      * 获取音频总时长
      * @return 总时长(毫秒)
@@ -69,6 +123,14 @@ public interface IPlayerEngine {
      */
     void setVolume(float leftVolume, float rightVolume);
 
+    /**
+     * 设置省电模式
+     * 开启后引擎在设备支持时把解码交给音频硬件(音频卸载)，CPU可在播放期间长时间休眠；
+     * 不支持的引擎或设备上按普通方式播放
+     * @param enabled 是否开启省电模式
+     */
+    void setPowerSaving(boolean enabled);
+
     /**
      * 设置播放完成监听器
      * @param listener 完成回调接口
@@ -87,6 +149,25 @@ public interface IPlayerEngine {
      */
     void setOnPreparedListener(OnPreparedListener listener);
 
+    /**
+     * 设置曲目切换监听器
+     * @param listener 无缝切换到已排队的下一首时的回调接口
+     */
+    void setOnTrackTransitionListener(OnTrackTransitionListener listener);
+
+    /**
+     * 设置定位完成监听器
+     * @param listener 定位完成回调接口
+     */
+    void setOnSeekCompleteListener(OnSeekCompleteListener listener);
+
+    /**
+     * 设置引擎事件监听器
+     * 引擎在状态变化时主动推送事件，上层无需轮询isPlaying等状态
+     * @param listener 引擎事件回调接口
+     */
+    void setEngineEventListener(EngineEventListener listener);
+
     /**
      * 播放完成监听接口
      */
@@ -107,4 +188,46 @@ public interface IPlayerEngine {
     interface OnPreparedListener {
         void onPrepared();
     }
-}
\ No newline at end of file
+
+    /**
+     * 曲目切换监听接口
+     */
+    interface OnTrackTransitionListener {
+        void onTrackTransition();
+    }
+
+    /**
+     * 定位完成监听接口
+     */
+    interface OnSeekCompleteListener {
+        void onSeekComplete();
+    }
+
+    /**
+     * 引擎事件监听接口
+     * 所有事件都在创建引擎的播放器线程回调，timestampMs为事件发生时的SystemClock.elapsedRealtime()
+     */
+    interface EngineEventListener {
+        /**
+         * 实际播放状态变化，缓冲、暂停、结束等都会使其变为false
+         */
+        void onIsPlayingChanged(boolean isPlaying, long timestampMs);
+
+        /**
+         * 播放位置发生跳变
+         * @param positionMs 跳变后的位置(毫秒)
+         * @param reason     跳变原因，DISCONTINUITY_*之一
+         */
+        void onPositionDiscontinuity(int positionMs, int reason, long timestampMs);
+
+        /**
+         * 开始或结束缓冲
+         */
+        void onBufferingChanged(boolean isBuffering, long timestampMs);
+
+        /**
+         * 音频会话ID变化，供均衡器、可视化等音效组件绑定
+         */
+        void onAudioSessionIdChanged(int audioSessionId, long timestampMs);
+    }
+}
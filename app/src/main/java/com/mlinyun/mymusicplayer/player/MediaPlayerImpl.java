@@ -4,8 +4,11 @@ import android.content.Context;
 import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
+import android.media.MediaTimestamp;
 import android.net.Uri;
 import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 import java.io.IOException;
@@ -25,6 +28,30 @@ public class MediaPlayerImpl implements IPlayerEngine {
     private OnCompletionListener onCompletionListener;
     private OnErrorListener onErrorListener;
     private OnPreparedListener onPreparedListener;
+    private OnTrackTransitionListener onTrackTransitionListener;
+    private OnSeekCompleteListener onSeekCompleteListener;
+    private EngineEventListener engineEventListener;
+
+    // 最近一次推送给事件监听器的状态，只在变化时推送
+    private boolean reportedPlaying = false;
+    private boolean reportedBuffering = false;
+    private int reportedAudioSessionId = 0;
+
+    // 无缝播放：预先准备好的下一首播放器
+    private MediaPlayer nextMediaPlayer;
+    private Uri nextUri;
+    private boolean isNextPrepared = false;
+
+    // 已播放完毕并重置的播放器，留作下一次排队时复用，避免每首歌都重新创建MediaPlayer
+    private MediaPlayer spareMediaPlayer;
+
+    // 定位索引及其引入的引擎时间与真实时间之差(毫秒)
+    private SeekIndex seekIndex;
+    private int seekPositionDelta = 0;
+
+    // 当前音量，切换到下一首时沿用
+    private float leftVolume = 1.0f;
+    private float rightVolume = 1.0f;
 
     /**
      * 构造函数
@@ -45,56 +72,254 @@ public class MediaPlayerImpl implements IPlayerEngine {
             mediaPlayer = new MediaPlayer();
 
             // 设置音频属性
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                mediaPlayer.setAudioAttributes(
-                        new AudioAttributes.Builder()
-                                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
-                                .setUsage(AudioAttributes.USAGE_MEDIA)
-                                .build()
-                );
-            } else {
-                mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            }
+            applyAudioAttributes(mediaPlayer);
 
             // 设置监听器
-            mediaPlayer.setOnCompletionListener(mp -> {
-                if (onCompletionListener != null) {
-                    onCompletionListener.onCompletion();
-                }
-            });
+            attachListeners(mediaPlayer);
+            notifyAudioSessionId();
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing MediaPlayer", e);
+            mediaPlayer = null;
+            if (onErrorListener != null) {
+                onErrorListener.onError(MediaPlayer.MEDIA_ERROR_UNKNOWN, 0);
+            }
+        }
+    }
 
-            mediaPlayer.setOnErrorListener((mp, what, extra) -> {
-                Log.e(TAG, "MediaPlayer error: what=" + what + ", extra=" + extra);
-                if (onErrorListener != null) {
-                    onErrorListener.onError(what, extra);
-                    return true; // 错误已处理
+    /**
+     * 为MediaPlayer设置音频属性和唤醒模式
+     * 唤醒锁由MediaPlayer在播放时持有、暂停或停止时自动释放
+     */
+    private void applyAudioAttributes(MediaPlayer player) {
+        player.setWakeMode(context.getApplicationContext(), PowerManager.PARTIAL_WAKE_LOCK);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            player.setAudioAttributes(
+                    new AudioAttributes.Builder()
+                            .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                            .setUsage(AudioAttributes.USAGE_MEDIA)
+                            .build()
+            );
+        } else {
+            player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        }
+    }
+
+    /**
+     * 为当前生效的MediaPlayer设置回调
+     */
+    private void attachListeners(MediaPlayer player) {
+        player.setOnCompletionListener(mp -> {
+            // 已经通过setNextMediaPlayer衔接了下一首，此时系统已自动开始播放下一首
+            if (nextMediaPlayer != null && isNextPrepared) {
+                promoteNextMediaPlayer();
+                return;
+            }
+            notifyPlayingChanged(false);
+            if (onCompletionListener != null) {
+                onCompletionListener.onCompletion();
+            }
+        });
+
+        player.setOnErrorListener((mp, what, extra) -> {
+            Log.e(TAG, "MediaPlayer error: what=" + what + ", extra=" + extra);
+            notifyPlayingChanged(false);
+            if (onErrorListener != null) {
+                onErrorListener.onError(what, extra);
+                return true; // 错误已处理
+            }
+            return false; // 错误未处理
+        });
+        player.setOnSeekCompleteListener(mp -> {
+            notifyDiscontinuity(getCurrentPosition(), DISCONTINUITY_SEEK);
+            if (onSeekCompleteListener != null) {
+                onSeekCompleteListener.onSeekComplete();
+            }
+        });
+        player.setOnInfoListener((mp, what, extra) -> {
+            if (what == MediaPlayer.MEDIA_INFO_BUFFERING_START) {
+                notifyBuffering(true);
+                notifyPlayingChanged(false);
+            } else if (what == MediaPlayer.MEDIA_INFO_BUFFERING_END) {
+                notifyBuffering(false);
+                notifyPlayingChanged(mp.isPlaying());
+            }
+            return false;
+        });
+        player.setOnPreparedListener(mp -> {
+            // 在准备完成时获取并记录总时长（调试用）
+            try {
+                int duration = mp.getDuration();
+                Log.d(TAG, "MediaPlayer准备完成，总时长: " + duration + "ms");
+            } catch (Exception e) {
+                Log.e(TAG, "获取媒体时长时出错", e);
+            }
+
+            if (onPreparedListener != null) {
+                onPreparedListener.onPrepared();
+            }
+        });
+    }
+
+    @Override
+    public void setNextDataSource(PreparedSource source) {
+        // 先丢弃之前排队的下一首
+        releaseNextMediaPlayer();
+
+        if (source == null || mediaPlayer == null) {
+            return;
+        }
+
+        try {
+            MediaPlayer player = obtainMediaPlayer();
+            applyAudioAttributes(player);
+            // 沿用当前的音频会话，衔接后已绑定的音效组件继续生效
+            player.setAudioSessionId(mediaPlayer.getAudioSessionId());
+            // MediaPlayer会复制文件描述符，调用方随后可以关闭
+            player.setDataSource(source.getFileDescriptor(), 0, source.getLength());
+            player.setOnPreparedListener(mp -> {
+                if (mp != nextMediaPlayer || mediaPlayer == null) {
+                    return;
                 }
-                return false; // 错误未处理
-            });
-            mediaPlayer.setOnPreparedListener(mp -> {
-                // 在准备完成时获取并记录总时长（调试用）
                 try {
-                    int duration = mp.getDuration();
-                    Log.d(TAG, "MediaPlayer准备完成，总时长: " + duration + "ms");
-                } catch (Exception e) {
-                    Log.e(TAG, "获取媒体时长时出错", e);
+                    // 下一首准备完成后挂到当前播放器之后，由系统在当前曲目结束时无缝衔接
+                    mp.setVolume(leftVolume, rightVolume);
+                    mediaPlayer.setNextMediaPlayer(mp);
+                    isNextPrepared = true;
+                    Log.d(TAG, "下一首已就绪，等待无缝衔接: " + nextUri);
+                } catch (IllegalStateException e) {
+                    Log.e(TAG, "Error chaining next MediaPlayer", e);
+                    releaseNextMediaPlayer();
                 }
-
-                if (onPreparedListener != null) {
-                    onPreparedListener.onPrepared();
+            });
+            player.setOnErrorListener((mp, what, extra) -> {
+                // 下一首准备失败不影响当前播放，曲目结束后按常规方式切歌
+                Log.w(TAG, "Next MediaPlayer error: what=" + what + ", extra=" + extra);
+                if (mp == nextMediaPlayer) {
+                    releaseNextMediaPlayer();
                 }
+                return true;
             });
+
+            nextMediaPlayer = player;
+            nextUri = source.getUri();
+            isNextPrepared = false;
+            player.prepareAsync();
         } catch (Exception e) {
-            Log.e(TAG, "Error initializing MediaPlayer", e);
-            mediaPlayer = null;
-            if (onErrorListener != null) {
-                onErrorListener.onError(MediaPlayer.MEDIA_ERROR_UNKNOWN, 0);
+            Log.e(TAG, "Error preparing next MediaPlayer", e);
+            releaseNextMediaPlayer();
+        }
+    }
+
+    /**
+     * 当前曲目结束后，将已衔接的下一首提升为当前播放器
+     */
+    private void promoteNextMediaPlayer() {
+        MediaPlayer finished = mediaPlayer;
+
+        mediaPlayer = nextMediaPlayer;
+        currentUri = nextUri;
+        seekIndex = null;
+        seekPositionDelta = 0;
+        nextMediaPlayer = null;
+        nextUri = null;
+        isNextPrepared = false;
+
+        attachListeners(mediaPlayer);
+
+        recycleMediaPlayer(finished);
+
+        Log.d(TAG, "已无缝切换到下一首: " + currentUri);
+        notifyDiscontinuity(0, DISCONTINUITY_TRANSITION);
+        notifyAudioSessionId();
+        if (onTrackTransitionListener != null) {
+            onTrackTransitionListener.onTrackTransition();
+        }
+    }
+
+    /**
+     * 释放排队中的下一首播放器
+     */
+    private void releaseNextMediaPlayer() {
+        if (nextMediaPlayer != null) {
+            try {
+                if (mediaPlayer != null && isNextPrepared) {
+                    mediaPlayer.setNextMediaPlayer(null);
+                }
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Error detaching next MediaPlayer", e);
             }
+            recycleMediaPlayer(nextMediaPlayer);
+        }
+        nextMediaPlayer = null;
+        nextUri = null;
+        isNextPrepared = false;
+    }
+
+    /**
+     * 获取一个空闲的MediaPlayer，优先复用已重置的实例
+     */
+    private MediaPlayer obtainMediaPlayer() {
+        MediaPlayer player = spareMediaPlayer;
+        spareMediaPlayer = null;
+        return player != null ? player : new MediaPlayer();
+    }
+
+    /**
+     * 以备用实例替换无法重置的当前播放器
+     */
+    private void replaceMediaPlayer() {
+        MediaPlayer broken = mediaPlayer;
+        mediaPlayer = obtainMediaPlayer();
+        applyAudioAttributes(mediaPlayer);
+        attachListeners(mediaPlayer);
+        mediaPlayer.setVolume(leftVolume, rightVolume);
+        broken.release();
+        notifyAudioSessionId();
+    }
+
+    /**
+     * 重置不再使用的MediaPlayer并留作复用，已有备用实例时直接释放
+     */
+    private void recycleMediaPlayer(MediaPlayer player) {
+        if (player == null) {
+            return;
+        }
+        try {
+            player.setOnCompletionListener(null);
+            player.setOnErrorListener(null);
+            player.setOnPreparedListener(null);
+            player.setOnSeekCompleteListener(null);
+            player.setOnInfoListener(null);
+            if (spareMediaPlayer == null) {
+                player.reset();
+                spareMediaPlayer = player;
+            } else {
+                player.release();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error recycling MediaPlayer", e);
+            player.release();
         }
     }
 
     @Override
     public void prepare(Uri uri) {
+        prepareInternal(uri, null);
+    }
+
+    @Override
+    public void prepare(PreparedSource source) {
+        prepareInternal(source != null ? source.getUri() : null, source);
+    }
+
+    /**
+     * 准备数据源，有已打开的数据源时直接使用其文件描述符，否则按URI打开
+     */
+    private void prepareInternal(Uri uri, PreparedSource source) {
+        // 旧曲目的定位索引不再适用
+        seekIndex = null;
+        seekPositionDelta = 0;
+
         // 检查URI是否有效
         if (uri == null) {
             Log.e(TAG, "Cannot prepare with null URI");
@@ -123,8 +348,8 @@ public class MediaPlayerImpl implements IPlayerEngine {
         currentUri = uri;
 
         try {
-            // 检查文件是否可读
-            if (uri.getScheme() != null && uri.getScheme().equals("file")) {
+            // 检查文件是否可读，已打开的数据源在后台校验过
+            if (source == null && uri.getScheme() != null && uri.getScheme().equals("file")) {
                 java.io.File file = new java.io.File(uri.getPath());
                 if (!file.exists() || !file.canRead()) {
                     Log.e(TAG, "File doesn't exist or can't be read: " + uri.getPath());
@@ -135,17 +360,26 @@ public class MediaPlayerImpl implements IPlayerEngine {
                 }
             }
 
+            // 重新准备时丢弃排队的下一首
+            releaseNextMediaPlayer();
+
             // 安全重置播放器
             try {
                 mediaPlayer.reset();
             } catch (IllegalStateException e) {
-                Log.e(TAG, "Error resetting player, reinitializing", e);
-                initialize();
-                if (mediaPlayer == null) return;
+                // 重置失败时换用备用实例，不必重新走完整的初始化
+                Log.e(TAG, "Error resetting player, replacing instance", e);
+                replaceMediaPlayer();
             }
+            notifyBuffering(false);
+            notifyPlayingChanged(false);
 
-            // 设置数据源并准备播放
-            mediaPlayer.setDataSource(context, uri);
+            // 设置数据源并准备播放，MediaPlayer会复制文件描述符，调用方随后可以关闭
+            if (source != null) {
+                mediaPlayer.setDataSource(source.getFileDescriptor(), 0, source.getLength());
+            } else {
+                mediaPlayer.setDataSource(context, uri);
+            }
 
             // 使用异步准备，防止阻塞UI线程
             mediaPlayer.prepareAsync();
@@ -176,10 +410,20 @@ public class MediaPlayerImpl implements IPlayerEngine {
         // 记录详细错误
         Log.e(TAG, "Media prepare error: " + e.getMessage(), e);
 
-        // 尝试释放并重新初始化播放器
+        // 重置当前播放器以便下一次准备，重置失败时换用备用实例，备用实例保留在池中
         try {
-            releaseMediaPlayer();
-            initialize();
+            if (mediaPlayer != null) {
+                try {
+                    mediaPlayer.reset();
+                } catch (IllegalStateException ex) {
+                    Log.e(TAG, "Error resetting player after prepare failure, replacing instance", ex);
+                    replaceMediaPlayer();
+                }
+            } else {
+                initialize();
+            }
+            // 准备失败的地址不再用于重新准备
+            currentUri = null;
 
             // 通知错误回调
             if (onErrorListener != null) {
@@ -197,6 +441,7 @@ public class MediaPlayerImpl implements IPlayerEngine {
         if (mediaPlayer != null && !mediaPlayer.isPlaying()) {
             try {
                 mediaPlayer.start();
+                notifyPlayingChanged(true);
             } catch (IllegalStateException e) {
                 Log.e(TAG, "Error starting playback", e);
                 if (currentUri != null) {
@@ -212,6 +457,7 @@ public class MediaPlayerImpl implements IPlayerEngine {
         if (mediaPlayer != null && mediaPlayer.isPlaying()) {
             try {
                 mediaPlayer.pause();
+                notifyPlayingChanged(false);
             } catch (IllegalStateException e) {
                 Log.e(TAG, "Error pausing playback", e);
             }
@@ -220,6 +466,9 @@ public class MediaPlayerImpl implements IPlayerEngine {
 
     @Override
     public void stop() {
+        releaseNextMediaPlayer();
+        notifyBuffering(false);
+        notifyPlayingChanged(false);
         if (mediaPlayer != null) {
             try {
                 // 检查是否正在播放
@@ -247,10 +496,11 @@ public class MediaPlayerImpl implements IPlayerEngine {
     public void seekTo(int position) {
         if (mediaPlayer != null) {
             try {
+                int target = mapSeekPosition(position);
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    mediaPlayer.seekTo(position, MediaPlayer.SEEK_CLOSEST);
+                    mediaPlayer.seekTo(target, MediaPlayer.SEEK_CLOSEST);
                 } else {
-                    mediaPlayer.seekTo(position);
+                    mediaPlayer.seekTo(target);
                 }
             } catch (IllegalStateException e) {
                 Log.e(TAG, "Error seeking to position", e);
@@ -258,6 +508,23 @@ public class MediaPlayerImpl implements IPlayerEngine {
         }
     }
 
+    @Override
+    public void seekToFast(int position) {
+        if (mediaPlayer != null) {
+            try {
+                int target = mapSeekPosition(position);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    // 定位到最近的同步帧，避免从同步帧逐帧解码到精确位置
+                    mediaPlayer.seekTo(target, MediaPlayer.SEEK_CLOSEST_SYNC);
+                } else {
+                    mediaPlayer.seekTo(target);
+                }
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error fast seeking to position", e);
+            }
+        }
+    }
+
     @Override
     public void release() {
         releaseMediaPlayer();
@@ -267,12 +534,19 @@ public class MediaPlayerImpl implements IPlayerEngine {
      * 释放MediaPlayer资源
      */
     private void releaseMediaPlayer() {
+        releaseNextMediaPlayer();
+        if (spareMediaPlayer != null) {
+            spareMediaPlayer.release();
+            spareMediaPlayer = null;
+        }
         if (mediaPlayer != null) {
             try {
                 // 取消所有回调
                 mediaPlayer.setOnCompletionListener(null);
                 mediaPlayer.setOnErrorListener(null);
                 mediaPlayer.setOnPreparedListener(null);
+                mediaPlayer.setOnSeekCompleteListener(null);
+                mediaPlayer.setOnInfoListener(null);
 
                 // 检查播放状态并安全停止
                 try {
@@ -298,7 +572,7 @@ public class MediaPlayerImpl implements IPlayerEngine {
     public int getCurrentPosition() {
         if (mediaPlayer != null) {
             try {
-                return mediaPlayer.getCurrentPosition();
+                return Math.max(0, mediaPlayer.getCurrentPosition() - seekPositionDelta);
             } catch (IllegalStateException e) {
                 Log.e(TAG, "Error getting current position", e);
                 return 0;
@@ -307,6 +581,26 @@ public class MediaPlayerImpl implements IPlayerEngine {
         return 0;
     }
 
+    @Override
+    public int getPresentationPosition() {
+        if (mediaPlayer != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            try {
+                // MediaTimestamp基于AudioTrack时间戳，反映的是实际送达输出设备的位置
+                MediaTimestamp timestamp = mediaPlayer.getTimestamp();
+                if (timestamp != null && timestamp.getMediaClockRate() > 0f) {
+                    long elapsedNs = System.nanoTime() - timestamp.getAnchorSystemNanoTime();
+                    long positionUs = timestamp.getAnchorMediaTimeUs()
+                            + (long) (elapsedNs / 1000 * timestamp.getMediaClockRate());
+                    return (int) Math.max(0, positionUs / 1000 - seekPositionDelta);
+                }
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error getting presentation timestamp", e);
+            }
+        }
+        // 暂停或时间戳不可用时，回退到普通位置
+        return getCurrentPosition();
+    }
+
     @Override
     public int getDuration() {
         if (mediaPlayer != null) {
@@ -314,6 +608,10 @@ public class MediaPlayerImpl implements IPlayerEngine {
                 // 确保MediaPlayer处于合法状态
                 if (mediaPlayer.isPlaying() ||
                         currentUri != null) { // 只有在正在播放或已设置URI时才获取时长
+                    // 引擎对无目录的VBR文件按第一帧码率估算时长，有索引时使用逐帧累计的精确时长
+                    if (seekIndex != null) {
+                        return seekIndex.getDurationMs();
+                    }
                     return mediaPlayer.getDuration();
                 } else {
                     return 0;
@@ -331,6 +629,8 @@ public class MediaPlayerImpl implements IPlayerEngine {
 
     @Override
     public void setVolume(float leftVolume, float rightVolume) {
+        this.leftVolume = leftVolume;
+        this.rightVolume = rightVolume;
         if (mediaPlayer != null) {
             try {
                 mediaPlayer.setVolume(leftVolume, rightVolume);
@@ -338,6 +638,18 @@ public class MediaPlayerImpl implements IPlayerEngine {
                 Log.e(TAG, "Error setting volume", e);
             }
         }
+        if (nextMediaPlayer != null && isNextPrepared) {
+            try {
+                nextMediaPlayer.setVolume(leftVolume, rightVolume);
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error setting next player volume", e);
+            }
+        }
+    }
+
+    @Override
+    public void setPowerSaving(boolean enabled) {
+        // MediaPlayer不提供音频卸载的控制接口，是否卸载由系统决定
     }
 
     @Override
@@ -371,4 +683,81 @@ public class MediaPlayerImpl implements IPlayerEngine {
     public void setOnPreparedListener(OnPreparedListener listener) {
         this.onPreparedListener = listener;
     }
+
+    @Override
+    public void setOnTrackTransitionListener(OnTrackTransitionListener listener) {
+        this.onTrackTransitionListener = listener;
+    }
+
+    @Override
+    public void setSeekIndex(SeekIndex index) {
+        this.seekIndex = (index != null && index.needsCorrection()) ? index : null;
+        this.seekPositionDelta = 0;
+    }
+
+    /**
+     * 将目标位置换算为引擎时间，并记录两者之差用于修正后续的进度读取
+     */
+    private int mapSeekPosition(int position) {
+        if (seekIndex == null) {
+            seekPositionDelta = 0;
+            return position;
+        }
+        int enginePosition = seekIndex.toEngineTime(position);
+        seekPositionDelta = enginePosition - position;
+        return enginePosition;
+    }
+
+    @Override
+    public void setOnSeekCompleteListener(OnSeekCompleteListener listener) {
+        this.onSeekCompleteListener = listener;
+    }
+
+    @Override
+    public void setEngineEventListener(EngineEventListener listener) {
+        this.engineEventListener = listener;
+        // 新的监听器立即收到当前的音频会话
+        reportedAudioSessionId = 0;
+        notifyAudioSessionId();
+    }
+
+    private void notifyPlayingChanged(boolean playing) {
+        if (playing == reportedPlaying) {
+            return;
+        }
+        reportedPlaying = playing;
+        if (engineEventListener != null) {
+            engineEventListener.onIsPlayingChanged(playing, SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void notifyBuffering(boolean buffering) {
+        if (buffering == reportedBuffering) {
+            return;
+        }
+        reportedBuffering = buffering;
+        if (engineEventListener != null) {
+            engineEventListener.onBufferingChanged(buffering, SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void notifyDiscontinuity(int positionMs, int reason) {
+        if (engineEventListener != null) {
+            engineEventListener.onPositionDiscontinuity(positionMs, reason, SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void notifyAudioSessionId() {
+        if (mediaPlayer == null) {
+            return;
+        }
+        int sessionId = mediaPlayer.getAudioSessionId();
+        if (sessionId == reportedAudioSessionId) {
+            return;
+        }
+        reportedAudioSessionId = sessionId;
+        if (engineEventListener != null) {
+            engineEventListener.onAudioSessionIdChanged(sessionId, SystemClock.elapsedRealtime());
+        }
+    }
 }
\ No newline at end of file
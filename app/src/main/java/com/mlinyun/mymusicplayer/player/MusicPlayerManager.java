@@ -1,22 +1,50 @@
 package com.mlinyun.mymusicplayer.player;
 
 import android.content.Context;
-import android.net.Uri;
+import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import com.mlinyun.mymusicplayer.model.Song;
 
 /**
  * 音乐播放器管理类
- * 封装播放引擎，提供统一的播放控制接口，处理播放状态管理
+ * 封装播放引擎，提供统一的播放控制接口，处理播放状态管理。
+ * 必须在带Looper的播放器线程上创建和调用，引擎、进度更新和各种异步结果都绑定到该线程
  */
 public class MusicPlayerManager {
     private static final String TAG = "MusicPlayerManager";
     private static final int UPDATE_INTERVAL_MS = 100; // 进度更新间隔(毫秒)
+    private static final int SEEK_TIMEOUT_MS = 500; // 定位完成回调的最长等待时间(毫秒)
+    private static final int SUSPENDED_UPDATE_INTERVAL_MS = 10000; // 界面不可见时的最长检查间隔(毫秒)
+
+    // 按文件格式记录可用引擎的持久化存储
+    private static final String ENGINE_PREFS_NAME = "engine_preference";
+
+    // 预热解码器的格式数量
+    private static final int WARM_FORMAT_COUNT = 3;
+
+    // 文件扩展名与解码器MIME类型的对应关系
+    private static final Map<String, String> FORMAT_MIME_TYPES = new HashMap<>();
+
+    static {
+        FORMAT_MIME_TYPES.put("mp3", "audio/mpeg");
+        FORMAT_MIME_TYPES.put("m4a", "audio/mp4a-latm");
+        FORMAT_MIME_TYPES.put("aac", "audio/mp4a-latm");
+        FORMAT_MIME_TYPES.put("mp4", "audio/mp4a-latm");
+        FORMAT_MIME_TYPES.put("flac", "audio/flac");
+        FORMAT_MIME_TYPES.put("ogg", "audio/vorbis");
+        FORMAT_MIME_TYPES.put("opus", "audio/opus");
+        FORMAT_MIME_TYPES.put("amr", "audio/3gpp");
+    }
 
     private IPlayerEngine playerEngine;
     private ServiceCallback serviceCallback;
@@ -25,10 +53,72 @@ public class MusicPlayerManager {
     private Song currentSong;
     private Context context;
 
+    // 无缝播放：已排队到引擎中的下一首歌曲
+    private Song nextSong;
+
+    // 当前使用的引擎类型，以及未记录偏好的格式默认使用的引擎类型
+    private PlayerEngineType engineType;
+    private final PlayerEngineType defaultEngineType;
+
+    // 按文件格式记住的可用引擎
+    private final SharedPreferences enginePreferences;
+
+    // 切换引擎后重新准备时要恢复的播放位置，以及等待验证的格式
+    private int pendingStartPosition = -1;
+    private String pendingPreferenceFormat;
+
+    // 淡入淡出：备用引擎用于提前准备下一首，渐变结束后两个引擎互换角色
+    private IPlayerEngine standbyEngine;
+    private CrossfadeScheduler crossfadeScheduler;
+    private int crossfadeDurationMs = 0;
+    private boolean isStandbyPrepared = false;
+    private boolean isCrossfading = false;
+
+    // 用户设置的主音量
+    private float volume = 1.0f;
+
+    // 由引擎事件推送的当前引擎状态，不再轮询引擎
+    private boolean isEnginePlaying = false;
+    private boolean isBuffering = false;
+    private int audioSessionId = 0;
+    private final Map<IPlayerEngine, Integer> engineAudioSessionIds = new HashMap<>();
+
+    // 拖动定位：同一时间只有一个定位请求在执行，期间到达的请求只保留最新的位置
+    private boolean isSeekInFlight = false;
+    private int pendingScrubPosition = -1;
+    private final Runnable seekTimeoutRunnable = this::onSeekFinished;
+
     private Handler progressHandler;
     private Runnable progressRunnable;
     private boolean isProgressTracking = false;
 
+    // 省电模式，以及界面不可见(如屏幕关闭)时暂停进度回调
+    private boolean isPowerSaving = false;
+    private boolean isUiSuspended = false;
+
+    // 输出设备延迟跟踪器，用于修正实际听到的播放位置
+    private final OutputLatencyTracker latencyTracker;
+
+    // 定位索引构建器，为VBR文件提供精确定位和时长
+    private final SeekIndexer seekIndexer;
+
+    // 预热的引擎池，创建和替换引擎时从池中取用
+    private final PlayerEnginePool enginePool;
+
+    // 曲目开头PCM缓存及其过渡播放，切歌时在引擎准备期间先播放已解码的开头
+    private final PcmHeadCache headCache;
+    private final PcmHeadBridge headBridge;
+
+    // 慢速存储上的曲目预读
+    private final TrackReadAhead readAhead;
+
+    // 后台打开数据源的流水线；每次准备递增代号，过期的打开结果直接丢弃
+    private final SourcePreparer sourcePreparer;
+    private int sourceGeneration = 0;
+    private boolean isOpeningSource = false;
+    // 下一首(无缝排队或备用引擎)的打开代号，下一首改变时递增
+    private int nextSourceGeneration = 0;
+
     /**
      * 构造函数
      *
@@ -36,30 +126,38 @@ public class MusicPlayerManager {
      * @param engineType 播放引擎类型
      */
     public MusicPlayerManager(Context context, PlayerEngineType engineType) {
+        if (Looper.myLooper() == null) {
+            throw new IllegalStateException("MusicPlayerManager必须在带Looper的线程上创建");
+        }
         this.context = context;
         this.currentState = PlayerState.IDLE;
         this.playMode = PlayMode.LOOP; // 默认为列表循环播放模式
+        this.engineType = engineType;
+        this.defaultEngineType = engineType;
+        this.enginePreferences = context.getApplicationContext()
+                .getSharedPreferences(ENGINE_PREFS_NAME, Context.MODE_PRIVATE);
+        this.enginePool = new PlayerEnginePool(context);
         // 创建播放引擎
-        if (engineType == PlayerEngineType.MEDIA_PLAYER) {
-            playerEngine = new MediaPlayerImpl(context);
-        } else if (engineType == PlayerEngineType.EXO_PLAYER) {
-            // 使用ExoPlayer实现，更适合Android 16 (SDK 35)
-            playerEngine = new ExoPlayerImpl(context);
-        } else {
-            // 默认回退到MediaPlayer
-            playerEngine = new MediaPlayerImpl(context);
-        }
+        playerEngine = createEngine(engineType);
+
+        latencyTracker = new OutputLatencyTracker(context);
+        seekIndexer = new SeekIndexer(context);
+        headCache = new PcmHeadCache();
+        headBridge = new PcmHeadBridge();
+        readAhead = new TrackReadAhead();
+        sourcePreparer = new SourcePreparer();
 
         // 初始化进度更新Handler
-        progressHandler = new Handler(Looper.getMainLooper());
+        progressHandler = new Handler(Looper.myLooper());
         progressRunnable = new Runnable() {
             @Override
             public void run() {
-                if (playerEngine != null && isPlaying() && serviceCallback != null) {
-                    int position = playerEngine.getCurrentPosition();
+                if (!isUiSuspended && playerEngine != null && isPlaying() && serviceCallback != null) {
+                    int position = getPresentationPosition();
                     serviceCallback.onPlaybackPositionChanged(position);
                 }
-                progressHandler.postDelayed(this, UPDATE_INTERVAL_MS);
+                checkCrossfadeStart();
+                progressHandler.postDelayed(this, getProgressInterval());
             }
         };
 
@@ -72,73 +170,497 @@ public class MusicPlayerManager {
      */
     public void initialize() {
         try {
-            playerEngine.initialize();
-
+            // 引擎由引擎池创建时已完成初始化，这里只需设置监听器，避免重复构建播放器
             // 设置监听器
-            playerEngine.setOnCompletionListener(() -> {
-                currentState = PlayerState.COMPLETED;
-                stopProgressTracking();
+            bindEngineListeners(playerEngine);
 
-                if (serviceCallback != null) {
-                    serviceCallback.onPlaybackCompleted();
-                    serviceCallback.onPlaybackStateChanged(currentState);
+            currentState = PlayerState.IDLE;
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing player engine", e);
+            currentState = PlayerState.ERROR;
+
+            if (serviceCallback != null) {
+                serviceCallback.onError(RecoveryPolicy.ERROR_TRANSIENT, "播放器初始化失败: " + e.getMessage());
+                serviceCallback.onPlaybackStateChanged(currentState);
+            }
+        }
+    }
+
+    /**
+     * 从引擎池取出指定类型的已初始化引擎
+     */
+    private IPlayerEngine createEngine(PlayerEngineType type) {
+        IPlayerEngine engine = enginePool.acquire(type);
+        engine.setPowerSaving(isPowerSaving);
+        return engine;
+    }
+
+    /**
+     * 设置省电模式，当前引擎和备用引擎立即生效，之后创建的引擎沿用此设置
+     *
+     * @param enabled 是否开启省电模式
+     */
+    public void setPowerSaving(boolean enabled) {
+        isPowerSaving = enabled;
+        if (playerEngine != null) {
+            playerEngine.setPowerSaving(enabled);
+        }
+        if (standbyEngine != null) {
+            standbyEngine.setPowerSaving(enabled);
+        }
+    }
+
+    /**
+     * 是否开启了省电模式
+     */
+    public boolean isPowerSaving() {
+        return isPowerSaving;
+    }
+
+    /**
+     * 设置界面是否不可见
+     * 不可见时不再回调播放进度，进度轮询只保留淡入淡出的起始检查，并按距离起始点的时间拉长间隔
+     *
+     * @param suspended 界面是否不可见
+     */
+    public void setUiSuspended(boolean suspended) {
+        if (isUiSuspended == suspended) {
+            return;
+        }
+        isUiSuspended = suspended;
+        if (isProgressTracking) {
+            // 立即按新的间隔重新调度
+            progressHandler.removeCallbacks(progressRunnable);
+            progressHandler.post(progressRunnable);
+        }
+    }
+
+    /**
+     * 计算下一次进度轮询的间隔
+     */
+    private int getProgressInterval() {
+        if (!isUiSuspended) {
+            return UPDATE_INTERVAL_MS;
+        }
+        if (!isCrossfadeEnabled() || isCrossfading || currentState != PlayerState.PLAYING) {
+            return SUSPENDED_UPDATE_INTERVAL_MS;
+        }
+
+        // 在淡入淡出起始点前醒来，备用引擎还未就绪时按最长间隔等待
+        int duration = playerEngine.getDuration();
+        if (!isStandbyPrepared || duration <= 0) {
+            return SUSPENDED_UPDATE_INTERVAL_MS;
+        }
+        int untilCrossfade = duration - playerEngine.getCurrentPosition() - crossfadeDurationMs;
+        return Math.max(UPDATE_INTERVAL_MS, Math.min(untilCrossfade, SUSPENDED_UPDATE_INTERVAL_MS));
+    }
+
+    /**
+     * 根据歌曲列表中最常见的几种格式预热解码器
+     *
+     * @param songs 歌曲列表
+     */
+    public void warmDecodersFor(List<Song> songs) {
+        if (songs == null || songs.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (Song song : songs) {
+            String mimeType = song.getPath() != null ? FORMAT_MIME_TYPES.get(getFormat(song)) : null;
+            if (mimeType != null) {
+                Integer count = counts.get(mimeType);
+                counts.put(mimeType, count == null ? 1 : count + 1);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        Collections.sort(entries, (a, b) -> b.getValue() - a.getValue());
+        List<String> mimeTypes = new ArrayList<>();
+        for (int i = 0; i < entries.size() && i < WARM_FORMAT_COUNT; i++) {
+            mimeTypes.add(entries.get(i).getKey());
+        }
+        enginePool.warmDecoders(mimeTypes);
+    }
+
+    /**
+     * 运行时切换播放引擎
+     * 保留当前歌曲、播放位置和回调，用新引擎重新准备当前歌曲；
+     * 新引擎准备成功后会为该文件格式记住此引擎，之后同格式的歌曲直接使用它
+     *
+     * @param type 目标引擎类型
+     */
+    public void switchEngine(PlayerEngineType type) {
+        if (type == engineType) {
+            return;
+        }
+
+        Song song = currentSong;
+        int position = getCurrentPosition();
+        Log.d(TAG, "切换播放引擎: " + engineType + " -> " + type + ", 恢复位置: " + position);
+
+        cancelCrossfade();
+        stopProgressTracking();
+        replaceEngine(type);
+
+        if (song != null) {
+            currentState = PlayerState.STOPPED;
+            prepareSong(song, false);
+            // 准备完成回调总是异步到达，此时设置仍然生效
+            pendingPreferenceFormat = getFormat(song);
+            pendingStartPosition = position;
+        } else {
+            currentState = PlayerState.IDLE;
+        }
+    }
+
+    /**
+     * 获取当前使用的引擎类型
+     */
+    public PlayerEngineType getEngineType() {
+        return engineType;
+    }
+
+    /**
+     * 释放当前引擎并创建新类型的引擎，回调、音量等设置沿用
+     */
+    private void replaceEngine(PlayerEngineType type) {
+        IPlayerEngine oldEngine = playerEngine;
+        PlayerEngineType oldType = engineType;
+        engineType = type;
+
+        playerEngine = createEngine(type);
+        bindEngineListeners(playerEngine);
+        playerEngine.setVolume(volume, volume);
+        enginePool.recycle(oldType, oldEngine);
+        engineAudioSessionIds.remove(oldEngine);
+        onActiveEngineChanged(false);
+
+        // 备用引擎保持与当前引擎同类型
+        if (standbyEngine != null) {
+            enginePool.recycle(oldType, standbyEngine);
+            engineAudioSessionIds.remove(standbyEngine);
+            standbyEngine = createEngine(type);
+            bindEngineListeners(standbyEngine);
+            isStandbyPrepared = false;
+        }
+    }
+
+    /**
+     * 获取歌曲格式对应的引擎，没有记录时使用默认引擎
+     */
+    private PlayerEngineType getPreferredEngine(Song song) {
+        String format = getFormat(song);
+        if (format == null) {
+            return engineType;
+        }
+        String saved = enginePreferences.getString(format, null);
+        if (saved == null) {
+            return defaultEngineType;
+        }
+        try {
+            return PlayerEngineType.valueOf(saved);
+        } catch (IllegalArgumentException e) {
+            return defaultEngineType;
+        }
+    }
+
+    /**
+     * 获取歌曲的文件格式（小写扩展名）
+     */
+    private static String getFormat(Song song) {
+        String path = song.getPath();
+        int dot = path == null ? -1 : path.lastIndexOf('.');
+        if (dot < 0 || dot == path.length() - 1) {
+            return null;
+        }
+        return path.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 为引擎设置回调
+     * 淡入淡出模式下存在两个引擎，只有当前生效的引擎的事件会被处理，备用引擎只记录准备状态
+     */
+    private void bindEngineListeners(IPlayerEngine engine) {
+        engine.setOnCompletionListener(() -> {
+            if (engine != playerEngine) {
+                // 淡出中的引擎播放结束，由渐变结束回调统一处理
+                return;
+            }
+            currentState = PlayerState.COMPLETED;
+            stopProgressTracking();
+
+            if (serviceCallback != null) {
+                serviceCallback.onPlaybackCompleted();
+                serviceCallback.onPlaybackStateChanged(currentState);
+            }
+        });
+
+        engine.setOnErrorListener((what, extra) -> {
+            if (engine == standbyEngine) {
+                // 备用引擎准备下一首失败，不影响当前播放，曲目结束后按常规方式切歌
+                Log.w(TAG, "备用引擎准备下一首失败: " + what + ", " + extra);
+                if (!isCrossfading) {
+                    nextSong = null;
+                    isStandbyPrepared = false;
                 }
-            });
+                return;
+            }
+            if (engine != playerEngine) {
+                return;
+            }
+            headBridge.stop();
+            currentState = PlayerState.ERROR;
+            stopProgressTracking();
 
-            playerEngine.setOnErrorListener((what, extra) -> {
-                currentState = PlayerState.ERROR;
-                stopProgressTracking();
+            Log.e(TAG, "播放引擎错误: " + what + ", " + extra);
 
-                Log.e(TAG, "播放引擎错误: " + what + ", " + extra);
+            if (serviceCallback != null) {
+                serviceCallback.onError(what, "播放出错: " + what + ", " + extra);
+                serviceCallback.onPlaybackStateChanged(currentState);
+            }
+        });
 
-                if (serviceCallback != null) {
-                    serviceCallback.onError(what, "播放出错: " + what + ", " + extra);
-                    serviceCallback.onPlaybackStateChanged(currentState);
+        engine.setOnPreparedListener(() -> {
+            if (engine == standbyEngine) {
+                // 下一首已在备用引擎上准备好，等待淡入时机
+                isStandbyPrepared = true;
+                Log.d(TAG, "备用引擎已准备好下一首");
+                return;
+            }
+            if (engine != playerEngine) {
+                return;
+            }
+            if (currentState != PlayerState.PREPARING || isOpeningSource) {
+                // 准备请求已被取消（如快速连续切歌），或是播放中重新缓冲完成，忽略
+                Log.d(TAG, "忽略非准备阶段的准备完成回调，当前状态: " + currentState);
+                return;
+            }
+            currentState = PlayerState.PREPARED;
+
+            // 切换引擎后首次准备成功，记住该格式可以使用当前引擎
+            if (pendingPreferenceFormat != null) {
+                enginePreferences.edit().putString(pendingPreferenceFormat, engineType.name()).apply();
+                Log.d(TAG, "记住格式 " + pendingPreferenceFormat + " 使用引擎: " + engineType);
+                pendingPreferenceFormat = null;
+            }
+
+            // 开头已由过渡播放送出的部分不再重复，引擎从过渡播放停止的位置继续
+            int bridgedPosition = headBridge.stop();
+            if (bridgedPosition > 0 && pendingStartPosition < 0) {
+                Log.d(TAG, "开头过渡播放结束，引擎从 " + bridgedPosition + "ms 继续");
+                pendingStartPosition = bridgedPosition;
+            }
+
+            // 恢复切换引擎前的播放位置
+            if (pendingStartPosition > 0) {
+                playerEngine.seekTo(pendingStartPosition);
+            }
+            pendingStartPosition = -1;
+
+            // 准备完成后立即获取并通知总时长变化
+            if (serviceCallback != null) {
+                int duration = playerEngine.getDuration();
+                serviceCallback.onDurationChanged(duration);
+                serviceCallback.onPlaybackStateChanged(currentState);
+            }
+
+            // 如果设置了自动播放，则准备完成后立即播放
+            play();
+        });
+
+        engine.setOnSeekCompleteListener(() -> {
+            if (engine == playerEngine) {
+                onSeekFinished();
+            }
+        });
+
+        engine.setEngineEventListener(new IPlayerEngine.EngineEventListener() {
+            @Override
+            public void onIsPlayingChanged(boolean playing, long timestampMs) {
+                if (engine == playerEngine) {
+                    isEnginePlaying = playing;
+                }
+            }
+
+            @Override
+            public void onPositionDiscontinuity(int positionMs, int reason, long timestampMs) {
+                // 定位完成或衔接到下一首时立即推送新位置，不必等下一个进度周期
+                if (engine == playerEngine && !isUiSuspended && serviceCallback != null) {
+                    serviceCallback.onPositionDiscontinuity(positionMs);
                 }
-            });
-            playerEngine.setOnPreparedListener(() -> {
-                currentState = PlayerState.PREPARED;
+            }
 
-                // 准备完成后立即获取并通知总时长变化
+            @Override
+            public void onBufferingChanged(boolean buffering, long timestampMs) {
+                if (engine != playerEngine || buffering == isBuffering) {
+                    return;
+                }
+                isBuffering = buffering;
                 if (serviceCallback != null) {
-                    int duration = playerEngine.getDuration();
-                    serviceCallback.onDurationChanged(duration);
-                    serviceCallback.onPlaybackStateChanged(currentState);
+                    serviceCallback.onBufferingChanged(buffering);
                 }
+            }
 
-                // 如果设置了自动播放，则准备完成后立即播放
-                play();
-            });
+            @Override
+            public void onAudioSessionIdChanged(int sessionId, long timestampMs) {
+                engineAudioSessionIds.put(engine, sessionId);
+                if (engine == playerEngine) {
+                    updateAudioSessionId(sessionId);
+                }
+            }
+        });
 
-            currentState = PlayerState.IDLE;
-        } catch (Exception e) {
-            Log.e(TAG, "Error initializing player engine", e);
-            currentState = PlayerState.ERROR;
+        engine.setOnTrackTransitionListener(() -> {
+            // 引擎已自动衔接到排队的下一首，更新当前歌曲但保持播放状态
+            if (engine != playerEngine || nextSong == null) {
+                return;
+            }
+            currentSong = nextSong;
+            nextSong = null;
+            currentState = PlayerState.PLAYING;
+            requestSeekIndex(playerEngine, currentSong);
 
             if (serviceCallback != null) {
-                serviceCallback.onError(-1, "播放器初始化失败: " + e.getMessage());
-                serviceCallback.onPlaybackStateChanged(currentState);
+                serviceCallback.onDurationChanged(playerEngine.getDuration());
+                serviceCallback.onTrackTransition(currentSong);
             }
+        });
+    }
+
+    /**
+     * 当前引擎的音频会话变化时通知服务
+     */
+    private void updateAudioSessionId(int sessionId) {
+        if (sessionId == audioSessionId) {
+            return;
+        }
+        audioSessionId = sessionId;
+        if (serviceCallback != null) {
+            serviceCallback.onAudioSessionIdChanged(sessionId);
         }
     }
 
+    /**
+     * 当前引擎更换后同步推送的状态
+     */
+    private void onActiveEngineChanged(boolean playing) {
+        isEnginePlaying = playing;
+        Integer sessionId = engineAudioSessionIds.get(playerEngine);
+        if (sessionId != null) {
+            updateAudioSessionId(sessionId);
+        }
+        if (isBuffering) {
+            isBuffering = false;
+            if (serviceCallback != null) {
+                serviceCallback.onBufferingChanged(false);
+            }
+        }
+    }
+
+    /**
+     * 为引擎上已准备的歌曲加载定位索引
+     * 索引在后台构建，加载完成时若引擎上的歌曲已变化则丢弃
+     */
+    private void requestSeekIndex(IPlayerEngine engine, Song song) {
+        seekIndexer.loadIndex(song.getPath(), index -> {
+            if (index == null) {
+                return;
+            }
+            boolean isActive = engine == playerEngine && song == currentSong;
+            boolean isStandby = engine == standbyEngine && song == nextSong;
+            if (!isActive && !isStandby) {
+                return;
+            }
+
+            engine.setSeekIndex(index);
+
+            // 准备完成后才拿到索引时，补发一次精确时长
+            if (isActive && index.needsCorrection() && currentState != PlayerState.PREPARING
+                    && serviceCallback != null) {
+                serviceCallback.onDurationChanged(engine.getDuration());
+            }
+        });
+    }
+
     /**
      * 加载并准备播放歌曲
      *
      * @param song 待播放的歌曲
      */
     public void prepareAndPlay(Song song) {
+        prepareSong(song, true);
+        if (currentState == PlayerState.PREPARING) {
+            startHeadBridge(song);
+        }
+    }
+
+    /**
+     * 预取接下来可能播放的歌曲：预读文件的开头和结尾区域，并解码歌曲开头
+     *
+     * @param songs 可能播放的歌曲，按可能性从高到低排列
+     */
+    public void prefetchUpcoming(List<Song> songs) {
+        List<String> paths = new ArrayList<>();
+        for (Song song : songs) {
+            if (song != null && song.getPath() != null) {
+                paths.add(song.getPath());
+            }
+        }
+        readAhead.readAhead(paths);
+        headCache.prefetch(songs);
+    }
+
+    /**
+     * 获取曲目预读的统计数据
+     */
+    public TrackReadAhead.Stats getReadAheadStats() {
+        return readAhead.getStats();
+    }
+
+    /**
+     * 记录一首歌曲开始播放，统计曲目预读是否命中
+     * 由服务在每首歌曲开始播放时调用一次，引擎切换和失败重试不重复计数
+     */
+    public void recordReadAheadPlayback(Song song) {
+        if (song != null) {
+            readAhead.recordPlayback(song.getPath());
+        }
+    }
+
+    /**
+     * 歌曲开头已缓存时，在引擎准备期间先播放这段PCM
+     */
+    private void startHeadBridge(Song song) {
+        PcmHeadCache.PcmHead head = headCache.get(song);
+        if (head != null && headBridge.start(head, volume)) {
+            Log.d(TAG, "开始开头过渡播放: " + song.getTitle() + ", 时长: " + head.getDurationMs() + "ms");
+        }
+    }
+
+    /**
+     * 准备并播放歌曲
+     *
+     * @param song         待播放的歌曲
+     * @param selectEngine 是否按文件格式选择记住的引擎
+     */
+    private void prepareSong(Song song, boolean selectEngine) {
         // 预检查
         if (song == null || song.getPath() == null) {
             Log.e(TAG, "尝试播放无效的歌曲数据");
             if (serviceCallback != null) {
-                serviceCallback.onError(-1, "无效的歌曲数据");
+                serviceCallback.onError(RecoveryPolicy.ERROR_TRANSIENT, "无效的歌曲数据");
             }
             return;
         }
 
-        // 先停止当前可能正在播放的内容
-        if (currentState == PlayerState.PLAYING || currentState == PlayerState.PAUSED) {
+        // 手动切歌时立即结束正在进行的淡入淡出和上一首的开头过渡播放
+        cancelCrossfade();
+        headBridge.stop();
+
+        // 先停止当前可能正在播放或仍在准备的内容，避免旧的准备完成回调在打开新文件期间到达
+        if (currentState == PlayerState.PLAYING || currentState == PlayerState.PAUSED
+                || currentState == PlayerState.PREPARING || currentState == PlayerState.PREPARED) {
             try {
                 playerEngine.stop();
             } catch (Exception e) {
@@ -148,45 +670,358 @@ public class MusicPlayerManager {
         }
 
         try {
-            // 检查文件是否存在
-            File file = new File(song.getPath());
-            if (!file.exists()) {
-                Log.e(TAG, "文件不存在: " + song.getPath());
-                if (serviceCallback != null) {
-                    serviceCallback.onError(-1, "文件不存在或无法访问: " + song.getPath());
-                }
-                return;
-            }
-
-            if (!file.canRead()) {
-                Log.e(TAG, "文件无法读取: " + song.getPath());
-                if (serviceCallback != null) {
-                    serviceCallback.onError(-1, "文件无法读取: " + song.getPath());
+            // 按文件格式选择已知可用的引擎
+            pendingStartPosition = -1;
+            pendingPreferenceFormat = null;
+            if (selectEngine) {
+                PlayerEngineType preferred = getPreferredEngine(song);
+                if (preferred != engineType) {
+                    replaceEngine(preferred);
                 }
-                return;
             }
 
-            // 准备播放歌曲
+            // 准备播放歌曲，引擎重新准备时会丢弃之前排队的下一首
             currentSong = song;
-            Uri uri = Uri.parse(song.getPath());
+            nextSong = null;
+            resetStandby();
             currentState = PlayerState.PREPARING;
 
             if (serviceCallback != null) {
                 serviceCallback.onPlaybackStateChanged(currentState);
             }
 
-            // 准备播放引擎
-            playerEngine.prepare(uri);
+            // 在后台打开并校验文件，播放器线程只接收结果；期间再次切歌时旧的结果会被丢弃
+            int generation = ++sourceGeneration;
+            IPlayerEngine engine = playerEngine;
+            isOpeningSource = true;
+            sourcePreparer.open(song, (source, error) -> onSourceReady(generation, engine, song, source, error));
+        } catch (Exception e) {
+            Log.e(TAG, "准备歌曲时出错", e);
+            isOpeningSource = false;
+            currentState = PlayerState.ERROR;
 
+            if (serviceCallback != null) {
+                serviceCallback.onError(RecoveryPolicy.ERROR_TRANSIENT, "准备歌曲失败: " + e.getMessage());
+                serviceCallback.onPlaybackStateChanged(currentState);
+            }
+        }
+    }
+
+    /**
+     * 数据源打开完成，交给播放引擎准备
+     */
+    private void onSourceReady(int generation, IPlayerEngine engine, Song song, PreparedSource source, String error) {
+        if (generation == sourceGeneration) {
+            isOpeningSource = false;
+        }
+        if (generation != sourceGeneration || engine != playerEngine || song != currentSong
+                || currentState != PlayerState.PREPARING) {
+            // 已切换到其他歌曲、引擎被替换或准备被取消
+            if (source != null) {
+                source.close();
+            }
+            return;
+        }
+
+        if (source == null) {
+            headBridge.stop();
+            currentState = PlayerState.ERROR;
+            if (serviceCallback != null) {
+                serviceCallback.onError(RecoveryPolicy.ERROR_SOURCE_UNAVAILABLE, error);
+                serviceCallback.onPlaybackStateChanged(currentState);
+            }
+            return;
+        }
+
+        try {
+            // 准备播放引擎
+            engine.prepare(source);
+            requestSeekIndex(engine, song);
         } catch (Exception e) {
             Log.e(TAG, "准备歌曲时出错", e);
+            headBridge.stop();
             currentState = PlayerState.ERROR;
 
             if (serviceCallback != null) {
-                serviceCallback.onError(-1, "准备歌曲失败: " + e.getMessage());
+                serviceCallback.onError(RecoveryPolicy.ERROR_TRANSIENT, "准备歌曲失败: " + e.getMessage());
                 serviceCallback.onPlaybackStateChanged(currentState);
             }
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * 预先排队下一首歌曲，实现无缝播放
+     * 应在当前歌曲准备完成后调用，引擎会在后台准备好下一首并在当前歌曲结束时直接衔接
+     *
+     * @param song 下一首歌曲，传入null表示取消排队
+     */
+    public void queueNext(Song song) {
+        // 之前排队的下一首先取消，尚未完成的打开结果随之作废
+        nextSourceGeneration++;
+        playerEngine.setNextDataSource(null);
+        if (song == null || song.getPath() == null) {
+            nextSong = null;
+            if (!isCrossfading) {
+                resetStandby();
+            }
+            return;
+        }
+
+        nextSong = song;
+        if (isCrossfadeEnabled()) {
+            // 淡入淡出模式下由备用引擎准备下一首；若备用引擎仍在淡出，等渐变结束后再准备
+            if (!isCrossfading) {
+                prepareStandby(song);
+            }
+        } else {
+            // 与当前歌曲一样在后台打开文件，打开成功后再交给引擎排队
+            int generation = nextSourceGeneration;
+            IPlayerEngine engine = playerEngine;
+            sourcePreparer.open(song, (source, error) -> onNextSourceReady(generation, engine, song, source, error));
+        }
+    }
+
+    /**
+     * 下一首的数据源打开完成，交给当前引擎排队
+     */
+    private void onNextSourceReady(int generation, IPlayerEngine engine, Song song, PreparedSource source, String error) {
+        if (generation != nextSourceGeneration || engine != playerEngine || song != nextSong) {
+            // 下一首已改变、引擎被替换或排队被取消
+            if (source != null) {
+                source.close();
+            }
+            return;
+        }
+        if (source == null) {
+            Log.w(TAG, "下一首文件不可用，取消排队: " + error);
+            nextSong = null;
+            return;
+        }
+        try {
+            engine.setNextDataSource(source);
+            Log.d(TAG, "已排队下一首: " + song.getTitle());
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * 取消正在进行的准备并静默停止当前播放
+     * 用于快速连续切歌：只有最终目标才会真正准备，被取代的准备请求的回调会被忽略。
+     * 不触发状态回调，避免服务在切歌窗口内收起前台通知
+     */
+    public void cancelPendingPrepare() {
+        cancelCrossfade();
+        headBridge.stop();
+        if (currentState == PlayerState.PREPARING || currentState == PlayerState.PREPARED
+                || currentState == PlayerState.PLAYING) {
+            try {
+                playerEngine.stop();
+            } catch (Exception e) {
+                Log.e(TAG, "取消准备时出错", e);
+            }
+            stopProgressTracking();
+            currentState = PlayerState.STOPPED;
+        }
+        nextSong = null;
+        resetStandby();
+    }
+
+    /**
+     * 设置淡入淡出时长
+     *
+     * @param durationMs 渐变时长(毫秒)，0表示关闭淡入淡出，使用无缝衔接
+     */
+    public void setCrossfadeDuration(int durationMs) {
+        int duration = Math.max(0, durationMs);
+        if (duration == crossfadeDurationMs) {
+            return;
+        }
+        crossfadeDurationMs = duration;
+
+        if (duration > 0) {
+            if (standbyEngine == null) {
+                standbyEngine = createEngine(engineType);
+                bindEngineListeners(standbyEngine);
+            }
+            if (crossfadeScheduler == null) {
+                crossfadeScheduler = new CrossfadeScheduler();
+            }
+        } else {
+            cancelCrossfade();
+            if (standbyEngine != null) {
+                enginePool.recycle(engineType, standbyEngine);
+                engineAudioSessionIds.remove(standbyEngine);
+                standbyEngine = null;
+            }
+            isStandbyPrepared = false;
+            if (crossfadeScheduler != null) {
+                crossfadeScheduler.release();
+                crossfadeScheduler = null;
+            }
+        }
+
+        // 按新模式重新排队已选好的下一首
+        if (nextSong != null) {
+            queueNext(nextSong);
+        }
+        Log.d(TAG, "淡入淡出时长设置为: " + duration + "ms");
+    }
+
+    /**
+     * 获取淡入淡出时长
+     *
+     * @return 渐变时长(毫秒)，0表示未开启
+     */
+    public int getCrossfadeDuration() {
+        return crossfadeDurationMs;
+    }
+
+    /**
+     * 是否开启了淡入淡出
+     */
+    public boolean isCrossfadeEnabled() {
+        return crossfadeDurationMs > 0 && standbyEngine != null;
+    }
+
+    /**
+     * 在备用引擎上准备下一首
+     */
+    private void prepareStandby(Song song) {
+        isStandbyPrepared = false;
+        int generation = ++nextSourceGeneration;
+        IPlayerEngine engine = standbyEngine;
+        sourcePreparer.open(song, (source, error) -> onStandbySourceReady(generation, engine, song, source, error));
+    }
+
+    /**
+     * 下一首的数据源打开完成，在备用引擎上准备
+     */
+    private void onStandbySourceReady(int generation, IPlayerEngine engine, Song song, PreparedSource source,
+                                      String error) {
+        if (generation != nextSourceGeneration || engine != standbyEngine || song != nextSong || isCrossfading) {
+            // 下一首已改变、备用引擎被替换或正在淡出，渐变结束后会重新准备
+            if (source != null) {
+                source.close();
+            }
+            return;
+        }
+        if (source == null) {
+            Log.w(TAG, "下一首文件不可用，备用引擎不再准备: " + error);
+            nextSong = null;
+            return;
+        }
+        try {
+            engine.setVolume(0f, 0f);
+            engine.prepare(source);
+            requestSeekIndex(engine, song);
+            Log.d(TAG, "已在备用引擎上准备下一首: " + song.getTitle());
+        } catch (Exception e) {
+            Log.e(TAG, "备用引擎准备下一首失败", e);
+            nextSong = null;
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * 停止备用引擎上已准备的内容
+     */
+    private void resetStandby() {
+        if (standbyEngine != null && !isCrossfading) {
+            standbyEngine.stop();
+        }
+        isStandbyPrepared = false;
+    }
+
+    /**
+     * 由进度节拍检查是否到达淡入淡出的起点
+     */
+    private void checkCrossfadeStart() {
+        if (!isCrossfadeEnabled() || isCrossfading || !isStandbyPrepared || nextSong == null) {
+            return;
+        }
+        if (currentState != PlayerState.PLAYING) {
+            return;
+        }
+
+        int duration = playerEngine.getDuration();
+        if (duration <= 0) {
+            return;
+        }
+        int remaining = duration - playerEngine.getCurrentPosition();
+        if (remaining > crossfadeDurationMs) {
+            return;
+        }
+
+        startCrossfade(Math.max(remaining, 0));
+    }
+
+    /**
+     * 开始淡入淡出：备用引擎以0音量开始播放并成为当前引擎，原引擎在调度线程上渐变淡出
+     */
+    private void startCrossfade(int fadeMs) {
+        IPlayerEngine outgoing = playerEngine;
+        IPlayerEngine incoming = standbyEngine;
+
+        isCrossfading = true;
+        isStandbyPrepared = false;
+        incoming.setVolume(0f, 0f);
+        incoming.play();
+
+        // 角色互换，此后进度、暂停等操作都作用在新的当前引擎上
+        playerEngine = incoming;
+        standbyEngine = outgoing;
+        currentSong = nextSong;
+        nextSong = null;
+        onActiveEngineChanged(true);
+
+        Log.d(TAG, "开始淡入淡出到: " + currentSong.getTitle());
+        crossfadeScheduler.start(outgoing, incoming, fadeMs, volume,
+                finished -> progressHandler.post(() -> onCrossfadeFinished(finished)));
+
+        if (serviceCallback != null) {
+            serviceCallback.onDurationChanged(playerEngine.getDuration());
+            serviceCallback.onTrackTransition(currentSong);
+        }
+    }
+
+    /**
+     * 渐变结束，停止淡出的引擎，使其回到备用状态，并准备期间排队的下一首
+     */
+    private void onCrossfadeFinished(IPlayerEngine finished) {
+        if (!isCrossfading) {
+            return;
+        }
+        isCrossfading = false;
+        finished.stop();
+
+        if (nextSong != null && finished == standbyEngine) {
+            prepareStandby(nextSong);
+        }
+    }
+
+    /**
+     * 立即结束正在进行的淡入淡出
+     */
+    private void cancelCrossfade() {
+        if (!isCrossfading) {
+            return;
+        }
+        isCrossfading = false;
+        if (crossfadeScheduler != null) {
+            crossfadeScheduler.cancel();
+        }
+        if (standbyEngine != null) {
+            standbyEngine.stop();
+            // 渐变期间排队的下一首此时才能在备用引擎上准备
+            if (nextSong != null) {
+                prepareStandby(nextSong);
+            }
         }
+        playerEngine.setVolume(volume, volume);
     }
 
     /**
@@ -227,7 +1062,7 @@ public class MusicPlayerManager {
                     } else {
                         Log.e(TAG, "无法播放：当前无歌曲");
                         if (serviceCallback != null) {
-                            serviceCallback.onError(-1, "无法播放：当前无歌曲");
+                            serviceCallback.onError(RecoveryPolicy.ERROR_TRANSIENT, "无法播放：当前无歌曲");
                         }
                     }
                     break;
@@ -247,7 +1082,7 @@ public class MusicPlayerManager {
             currentState = PlayerState.ERROR;
 
             if (serviceCallback != null) {
-                serviceCallback.onError(-1, "播放失败: " + e.getMessage());
+                serviceCallback.onError(RecoveryPolicy.ERROR_TRANSIENT, "播放失败: " + e.getMessage());
                 serviceCallback.onPlaybackStateChanged(currentState);
             }
         }
@@ -258,6 +1093,7 @@ public class MusicPlayerManager {
      */
     public void pause() {
         if (currentState == PlayerState.PLAYING) {
+            cancelCrossfade();
             playerEngine.pause();
             currentState = PlayerState.PAUSED;
             stopProgressTracking();
@@ -272,6 +1108,8 @@ public class MusicPlayerManager {
      * 停止播放
      */
     public void stop() {
+        cancelCrossfade();
+        headBridge.stop();
         playerEngine.stop();
         currentState = PlayerState.STOPPED;
         stopProgressTracking();
@@ -294,13 +1132,79 @@ public class MusicPlayerManager {
         }
     }
 
+    /**
+     * 拖动进度条时的预览定位
+     * 使用开销较小的快速定位，且同一时间只执行一个定位请求；
+     * 上一个定位尚未完成时只记录最新目标，完成后直接跳到该目标，中间位置全部丢弃
+     *
+     * @param position 目标位置(毫秒)
+     */
+    public void scrubTo(int position) {
+        if (isSeekInFlight) {
+            pendingScrubPosition = position;
+            return;
+        }
+        issueFastSeek(position);
+    }
+
+    /**
+     * 结束拖动，精确定位到最终位置
+     *
+     * @param position 最终位置(毫秒)
+     */
+    public void endScrub(int position) {
+        pendingScrubPosition = -1;
+        progressHandler.removeCallbacks(seekTimeoutRunnable);
+        isSeekInFlight = false;
+        seekTo(position);
+    }
+
+    /**
+     * 发起一次快速定位并设置超时兜底，防止引擎未回调定位完成导致后续请求被阻塞
+     */
+    private void issueFastSeek(int position) {
+        isSeekInFlight = true;
+        playerEngine.seekToFast(position);
+        progressHandler.removeCallbacks(seekTimeoutRunnable);
+        progressHandler.postDelayed(seekTimeoutRunnable, SEEK_TIMEOUT_MS);
+    }
+
+    /**
+     * 定位完成（或超时），如有等待中的拖动目标则继续定位
+     */
+    private void onSeekFinished() {
+        progressHandler.removeCallbacks(seekTimeoutRunnable);
+        isSeekInFlight = false;
+
+        if (pendingScrubPosition >= 0) {
+            int position = pendingScrubPosition;
+            pendingScrubPosition = -1;
+            issueFastSeek(position);
+        }
+    }
+
     /**
      * 释放资源
      */
     public void release() {
         stop();
         stopProgressTracking();
+        progressHandler.removeCallbacks(seekTimeoutRunnable);
         playerEngine.release();
+        if (standbyEngine != null) {
+            standbyEngine.release();
+            standbyEngine = null;
+        }
+        if (crossfadeScheduler != null) {
+            crossfadeScheduler.release();
+            crossfadeScheduler = null;
+        }
+        latencyTracker.release();
+        seekIndexer.release();
+        headCache.release();
+        readAhead.release();
+        sourcePreparer.release();
+        enginePool.release();
         currentState = PlayerState.IDLE;
     }
 
@@ -333,6 +1237,39 @@ public class MusicPlayerManager {
         return playerEngine.getCurrentPosition();
     }
 
+    /**
+     * 获取用户实际听到的播放位置
+     * 在引擎呈现位置的基础上再扣除当前输出设备（如蓝牙耳机）的延迟补偿，供歌词和进度显示使用
+     *
+     * @return 呈现位置(毫秒)
+     */
+    public int getPresentationPosition() {
+        int position = playerEngine.getPresentationPosition();
+        if (isPlaying()) {
+            position -= latencyTracker.getOffsetMs();
+        }
+        return Math.max(0, position);
+    }
+
+    /**
+     * 校准当前输出设备的延迟
+     * 传入的补偿值直接生效并按设备保存
+     *
+     * @param offsetMs 声音相对引擎位置的滞后量(毫秒)
+     */
+    public void calibrateOutputLatency(int offsetMs) {
+        latencyTracker.setOffsetMs(offsetMs);
+    }
+
+    /**
+     * 获取当前输出设备的延迟补偿值
+     *
+     * @return 补偿值(毫秒)
+     */
+    public int getOutputLatencyOffset() {
+        return latencyTracker.getOffsetMs();
+    }
+
     /**
      * 获取音频总时长
      *
@@ -348,7 +1285,23 @@ public class MusicPlayerManager {
      * @return 是否播放中
      */
     public boolean isPlaying() {
-        return playerEngine.isPlaying();
+        return isEnginePlaying;
+    }
+
+    /**
+     * 当前引擎是否正在缓冲
+     */
+    public boolean isBuffering() {
+        return isBuffering;
+    }
+
+    /**
+     * 获取当前引擎的音频会话ID，供均衡器等音效组件绑定
+     *
+     * @return 音频会话ID，尚未获取时为0
+     */
+    public int getAudioSessionId() {
+        return audioSessionId;
     }
 
     /**
@@ -375,6 +1328,13 @@ public class MusicPlayerManager {
      * @param volume 音量级别 (0.0 到 1.0)
      */
     public void setVolume(float volume) {
+        this.volume = volume;
+        headBridge.setVolume(volume);
+        if (isCrossfading && crossfadeScheduler != null) {
+            // 渐变中由调度器按新的主音量继续计算增益
+            crossfadeScheduler.setMasterVolume(volume);
+            return;
+        }
         if (playerEngine != null) {
             playerEngine.setVolume(volume, volume);
         }
@@ -0,0 +1,161 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * 音频输出延迟跟踪器
+ * 记录当前音频输出路由（扬声器、有线耳机、蓝牙等），并为每个输出设备保存用户校准的延迟补偿值，
+ * 用于将引擎报告的播放位置修正为用户实际听到声音的位置。
+ * 引擎报告的位置已经扣除了系统上报的输出延迟，未校准的设备不做额外补偿
+ */
+public class OutputLatencyTracker {
+    private static final String TAG = "OutputLatencyTracker";
+
+    // 持久化存储名称及键前缀
+    private static final String PREFS_NAME = "output_latency";
+    private static final String KEY_PREFIX = "offset_";
+
+    // 补偿值的合法范围(毫秒)
+    private static final int MIN_OFFSET_MS = 0;
+    private static final int MAX_OFFSET_MS = 1000;
+
+    // 未校准设备的补偿值(毫秒)
+    private static final int DEFAULT_OFFSET_MS = 0;
+
+    private final AudioManager audioManager;
+    private final SharedPreferences preferences;
+
+    // 当前输出路由标识及其补偿值
+    private String currentRouteKey = "speaker";
+    private int currentOffsetMs = DEFAULT_OFFSET_MS;
+
+    private AudioDeviceCallback deviceCallback;
+
+    /**
+     * 构造函数
+     *
+     * @param context 应用上下文
+     */
+    public OutputLatencyTracker(Context context) {
+        this.audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        this.preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        refreshRoute();
+
+        // Android M及以上可以监听输出设备的插拔变化
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && audioManager != null) {
+            deviceCallback = new AudioDeviceCallback() {
+                @Override
+                public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+                    refreshRoute();
+                }
+
+                @Override
+                public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+                    refreshRoute();
+                }
+            };
+            audioManager.registerAudioDeviceCallback(deviceCallback, new Handler(Looper.myLooper()));
+        }
+    }
+
+    /**
+     * 获取当前输出设备的延迟补偿值
+     *
+     * @return 补偿值(毫秒)
+     */
+    public int getOffsetMs() {
+        return currentOffsetMs;
+    }
+
+    /**
+     * 获取当前输出路由标识
+     *
+     * @return 路由标识
+     */
+    public String getCurrentRouteKey() {
+        return currentRouteKey;
+    }
+
+    /**
+     * 设置当前输出设备的延迟补偿值，按设备持久化
+     *
+     * @param offsetMs 补偿值(毫秒)
+     */
+    public void setOffsetMs(int offsetMs) {
+        currentOffsetMs = clamp(offsetMs);
+        preferences.edit().putInt(KEY_PREFIX + currentRouteKey, currentOffsetMs).apply();
+        Log.d(TAG, "输出设备 " + currentRouteKey + " 的延迟补偿更新为: " + currentOffsetMs + "ms");
+    }
+
+    /**
+     * 释放资源，取消设备监听
+     */
+    public void release() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && audioManager != null && deviceCallback != null) {
+            audioManager.unregisterAudioDeviceCallback(deviceCallback);
+            deviceCallback = null;
+        }
+    }
+
+    /**
+     * 重新检测当前输出路由并加载对应的补偿值
+     */
+    private void refreshRoute() {
+        AudioDeviceInfo device = findActiveOutputDevice();
+        if (device != null) {
+            currentRouteKey = device.getType() + "_" + device.getProductName();
+        } else {
+            currentRouteKey = "speaker";
+        }
+
+        currentOffsetMs = preferences.getInt(KEY_PREFIX + currentRouteKey, DEFAULT_OFFSET_MS);
+        Log.d(TAG, "当前输出路由: " + currentRouteKey + ", 延迟补偿: " + currentOffsetMs + "ms");
+    }
+
+    /**
+     * 查找当前生效的输出设备
+     * 按照系统的路由优先级：蓝牙 > 有线/USB耳机 > 内置扬声器
+     */
+    private AudioDeviceInfo findActiveOutputDevice() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || audioManager == null) {
+            return null;
+        }
+
+        AudioDeviceInfo wired = null;
+        AudioDeviceInfo speaker = null;
+        for (AudioDeviceInfo device : audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS)) {
+            switch (device.getType()) {
+                case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP:
+                    return device;
+                case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+                case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+                case AudioDeviceInfo.TYPE_USB_HEADSET:
+                case AudioDeviceInfo.TYPE_USB_DEVICE:
+                    if (wired == null) {
+                        wired = device;
+                    }
+                    break;
+                case AudioDeviceInfo.TYPE_BUILTIN_SPEAKER:
+                    speaker = device;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return wired != null ? wired : speaker;
+    }
+
+    private int clamp(int offsetMs) {
+        return Math.max(MIN_OFFSET_MS, Math.min(MAX_OFFSET_MS, offsetMs));
+    }
+}
@@ -0,0 +1,107 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.util.Log;
+
+/**
+ * 曲目开头的过渡播放
+ * 用静态模式的AudioTrack直接播放预先解码好的开头PCM，播放引擎准备完成后停止，
+ * 并由引擎从已播放到的位置继续
+ */
+public class PcmHeadBridge {
+    private static final String TAG = "PcmHeadBridge";
+
+    private AudioTrack audioTrack;
+    private PcmHeadCache.PcmHead head;
+
+    /**
+     * 开始播放曲目开头，已有播放中的开头会先停止
+     *
+     * @param head   曲目开头
+     * @param volume 播放音量
+     * @return 是否成功开始播放
+     */
+    public boolean start(PcmHeadCache.PcmHead head, float volume) {
+        stop();
+
+        try {
+            int channelMask = head.getChannelCount() == 1
+                    ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+            byte[] pcm = head.getPcm();
+            audioTrack = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                            .setUsage(AudioAttributes.USAGE_MEDIA)
+                            .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                            .setSampleRate(head.getSampleRate())
+                            .setChannelMask(channelMask)
+                            .build())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(pcm.length)
+                    .build();
+            audioTrack.write(pcm, 0, pcm.length);
+            audioTrack.setVolume(volume);
+            audioTrack.play();
+            this.head = head;
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "开头过渡播放失败", e);
+            releaseTrack();
+            return false;
+        }
+    }
+
+    /**
+     * 是否正在过渡播放
+     */
+    public boolean isActive() {
+        return audioTrack != null;
+    }
+
+    /**
+     * 设置过渡播放的音量
+     */
+    public void setVolume(float volume) {
+        if (audioTrack != null) {
+            try {
+                audioTrack.setVolume(volume);
+            } catch (Exception e) {
+                Log.e(TAG, "设置过渡播放音量时出错", e);
+            }
+        }
+    }
+
+    /**
+     * 停止过渡播放
+     *
+     * @return 已播放到的位置(毫秒)，没有过渡播放时返回-1
+     */
+    public int stop() {
+        if (audioTrack == null) {
+            return -1;
+        }
+
+        int position = -1;
+        try {
+            long frames = audioTrack.getPlaybackHeadPosition() & 0xFFFFFFFFL;
+            position = (int) Math.min(frames * 1000 / head.getSampleRate(), head.getDurationMs());
+            audioTrack.stop();
+        } catch (Exception e) {
+            Log.e(TAG, "停止过渡播放时出错", e);
+        }
+        releaseTrack();
+        return position;
+    }
+
+    private void releaseTrack() {
+        if (audioTrack != null) {
+            audioTrack.release();
+            audioTrack = null;
+        }
+        head = null;
+    }
+}
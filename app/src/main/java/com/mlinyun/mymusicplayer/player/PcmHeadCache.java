@@ -0,0 +1,313 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 曲目开头PCM缓存
+ * 在后台把接下来可能播放的歌曲开头一小段解码为PCM并缓存在内存中，切歌时先播放这段PCM，
+ * 同时让真正的播放引擎完成容器解析和解码器启动，从而消除切歌后的起播等待。
+ * 缓存按字节数限制总大小，超出时淘汰最久未使用的条目。
+ * 缓存键由媒体库扫描得到的路径和大小生成，播放器线程上不访问文件；
+ * 文件的修改时间在解码线程上核对，文件被替换后旧的开头在下一次预取时丢弃
+ */
+public class PcmHeadCache {
+    private static final String TAG = "PcmHeadCache";
+
+    // 每首歌解码的开头时长(毫秒)
+    private static final int HEAD_DURATION_MS = 1500;
+
+    // 缓存总字节上限，44.1kHz立体声16位PCM每1.5秒约260KB，可容纳十余首
+    private static final int CACHE_BYTE_BUDGET = 3 * 1024 * 1024;
+
+    // 单首歌解码的最长耗时(毫秒)，超时放弃，避免异常文件长时间占用解码器
+    private static final int MAX_DECODE_TIME_MS = 3000;
+
+    // 解码器缓冲区等待超时(微秒)
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+
+    /**
+     * 已解码的曲目开头
+     */
+    public static final class PcmHead {
+        private final byte[] pcm;
+        private final int sampleRate;
+        private final int channelCount;
+
+        // 解码时文件的修改时间
+        private final long lastModified;
+
+        PcmHead(byte[] pcm, int sampleRate, int channelCount, long lastModified) {
+            this.pcm = pcm;
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * 16位交错PCM数据
+         */
+        public byte[] getPcm() {
+            return pcm;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannelCount() {
+            return channelCount;
+        }
+
+        /**
+         * 每帧字节数
+         */
+        public int getFrameSize() {
+            return channelCount * 2;
+        }
+
+        /**
+         * 缓存的时长(毫秒)
+         */
+        public int getDurationMs() {
+            return (int) ((long) pcm.length / getFrameSize() * 1000 / sampleRate);
+        }
+    }
+
+    private final LruCache<String, PcmHead> cache = new LruCache<String, PcmHead>(CACHE_BYTE_BUDGET) {
+        @Override
+        protected int sizeOf(String key, PcmHead value) {
+            return value.pcm.length;
+        }
+    };
+
+    // 创建者所在的播放器线程
+    private final Handler ownerHandler = new Handler(Looper.myLooper());
+
+    // 最近一次预取请求中的文件，不再需要的排队任务直接跳过
+    private volatile Set<String> wantedKeys = new HashSet<>();
+
+    // 已提交但尚未完成的解码任务，仅在播放器线程读写
+    private final Set<String> pendingKeys = new HashSet<>();
+
+    // 单线程低优先级执行，避免与当前播放的解码争抢CPU
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "PcmHeadDecoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 预取一组歌曲的开头，正在解码的跳过，已缓存的在解码线程上核对文件是否被替换
+     * 必须在播放器线程调用
+     *
+     * @param songs 歌曲，按可能性从高到低排列
+     */
+    public void prefetch(List<Song> songs) {
+        Map<String, Song> wanted = new LinkedHashMap<>();
+        for (Song song : songs) {
+            if (song != null && song.getPath() != null) {
+                wanted.put(buildKey(song), song);
+            }
+        }
+        // 先更新需要的集合再提交任务，否则刚提交的任务可能在赋值前执行，被当作已不需要而丢弃
+        wantedKeys = new HashSet<>(wanted.keySet());
+
+        for (Map.Entry<String, Song> entry : wanted.entrySet()) {
+            String key = entry.getKey();
+            String path = entry.getValue().getPath();
+            long scannedSize = entry.getValue().getSize();
+            if (!pendingKeys.add(key)) {
+                continue;
+            }
+
+            executor.execute(() -> {
+                try {
+                    if (!wantedKeys.contains(key)) {
+                        return;
+                    }
+                    File file = new File(path);
+                    long modified = file.lastModified();
+                    PcmHead cached = cache.get(key);
+                    if (cached != null) {
+                        if (cached.lastModified == modified) {
+                            return;
+                        }
+                        cache.remove(key);
+                    }
+                    if (scannedSize > 0 && file.length() != scannedSize) {
+                        // 文件在扫描后被修改，以扫描结果生成的键不再可靠，等下一次扫描后再缓存
+                        Log.d(TAG, "文件大小与扫描结果不一致，跳过: " + path);
+                        return;
+                    }
+                    long start = System.currentTimeMillis();
+                    PcmHead head = decode(path, modified);
+                    if (head != null) {
+                        cache.put(key, head);
+                        Log.d(TAG, "开头已解码: " + path + ", " + head.getDurationMs() + "ms, "
+                                + head.pcm.length / 1024 + "KB, 耗时: " + (System.currentTimeMillis() - start) + "ms");
+                    }
+                } finally {
+                    ownerHandler.post(() -> pendingKeys.remove(key));
+                }
+            });
+        }
+    }
+
+    /**
+     * 获取已缓存的曲目开头，不访问文件
+     *
+     * @param song 歌曲
+     * @return 曲目开头，未缓存时返回null
+     */
+    public PcmHead get(Song song) {
+        if (song == null || song.getPath() == null) {
+            return null;
+        }
+        return cache.get(buildKey(song));
+    }
+
+    /**
+     * 清空缓存并释放后台线程
+     */
+    public void release() {
+        executor.shutdownNow();
+        cache.evictAll();
+    }
+
+    /**
+     * 以扫描得到的路径和文件大小生成缓存键，重新扫描到不同的文件后旧数据自动失效
+     */
+    private static String buildKey(Song song) {
+        return song.getPath() + "_" + song.getSize();
+    }
+
+    /**
+     * 用MediaExtractor和MediaCodec同步解码文件开头
+     *
+     * @param lastModified 解码前读取的文件修改时间，随结果保存
+     * @return 曲目开头，文件没有音轨、输出不是16位PCM或解码失败时返回null
+     */
+    private PcmHead decode(String path, long lastModified) {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(path);
+
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat trackFormat = extractor.getTrackFormat(i);
+                String mime = trackFormat.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = trackFormat;
+                    break;
+                }
+            }
+            if (format == null) {
+                return null;
+            }
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            long deadline = System.currentTimeMillis() + MAX_DECODE_TIME_MS;
+
+            while (System.currentTimeMillis() < deadline && !Thread.currentThread().isInterrupted()) {
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer inputBuffer = codec.getInputBuffer(inputIndex);
+                        int size = inputBuffer != null ? extractor.readSampleData(inputBuffer, 0) : -1;
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    if (outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                            && outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING) != AudioFormat.ENCODING_PCM_16BIT) {
+                        Log.d(TAG, "解码输出不是16位PCM，跳过: " + path);
+                        return null;
+                    }
+                } else if (outputIndex >= 0) {
+                    ByteBuffer outputBuffer = codec.getOutputBuffer(outputIndex);
+                    if (outputBuffer != null && info.size > 0) {
+                        byte[] chunk = new byte[info.size];
+                        outputBuffer.position(info.offset);
+                        outputBuffer.get(chunk);
+                        out.write(chunk, 0, chunk.length);
+                    }
+                    codec.releaseOutputBuffer(outputIndex, false);
+
+                    long targetBytes = (long) sampleRate * channelCount * 2 * HEAD_DURATION_MS / 1000;
+                    if (out.size() >= targetBytes || (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        break;
+                    }
+                }
+            }
+
+            // 只支持单声道和立体声输出，截断到整帧
+            if (channelCount < 1 || channelCount > 2 || out.size() == 0) {
+                return null;
+            }
+            int frameSize = channelCount * 2;
+            long targetBytes = (long) sampleRate * frameSize * HEAD_DURATION_MS / 1000;
+            int length = (int) Math.min(out.size(), targetBytes) / frameSize * frameSize;
+            byte[] pcm = new byte[length];
+            System.arraycopy(out.toByteArray(), 0, pcm, 0, length);
+            return new PcmHead(pcm, sampleRate, channelCount, lastModified);
+        } catch (Exception e) {
+            Log.w(TAG, "解码开头失败: " + path, e);
+            return null;
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (Exception ignored) {
+                    // 解码器可能未成功启动
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+}
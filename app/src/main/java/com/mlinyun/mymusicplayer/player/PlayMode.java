@@ -14,6 +14,9 @@ public enum PlayMode {
     // 随机播放：随机顺序播放列表中的歌曲
     SHUFFLE,
 
+    // 智能随机：按播放次数、跳过率和最近播放时间加权随机选择下一首
+    SMART_SHUFFLE,
+
     // 单曲循环：循环播放当前歌曲
     SINGLE_LOOP
 }
\ No newline at end of file
@@ -0,0 +1,409 @@
+package com.mlinyun.mymusicplayer.player;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 播放队列
+ * 服务持有的唯一队列状态：歌曲列表、当前索引和播放模式。
+ * 歌曲保存在按歌曲ID索引的分块列表中，几万首的队列上插入、移除和移动也只涉及单个块，
+ * 按ID查找不需要遍历；编辑时同步修正当前索引，调用方无需再自行遍历列表或调整位置。
+ * 同一首歌曲(按ID)在队列中只保留一份。
+ * 随机模式下由ShuffleOrder提供随机顺序，队列编辑会同步到随机顺序中；
+ * 智能随机模式下由SmartShuffle按播放统计加权选择。
+ * 每次结构变化都会递增版本号，并向监听器发出描述该变化的QueueChange
+ */
+public class PlayQueue {
+
+    /**
+     * 队列变化监听器
+     */
+    public interface OnQueueChangedListener {
+        void onQueueChanged(QueueChange change);
+    }
+
+    private final ChunkedList<Song> songs = new ChunkedList<>(Song::getId);
+    private final List<Song> readOnlySongs = Collections.unmodifiableList(songs);
+
+    // 当前索引，-1表示当前歌曲不在队列中(如直接播放的搜索结果)
+    private int currentIndex = -1;
+    private PlayMode playMode = PlayMode.SEQUENCE;
+
+    // 随机播放顺序，仅在随机模式下维护，进入随机模式时重建
+    private final ShuffleOrder shuffleOrder = new ShuffleOrder(index -> songs.get(index).getId(), songs::indexOfKey);
+
+    // 智能随机，队列编辑时增量更新权重表，整体替换时重建
+    private final SmartShuffle smartShuffle = new SmartShuffle();
+
+    // 队列版本号，每次结构变化加一
+    private long version = 0;
+    private OnQueueChangedListener listener;
+
+    public void setOnQueueChangedListener(OnQueueChangedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 设置智能随机使用的播放统计，统计变化时增量更新对应歌曲的权重
+     */
+    public void setPlayStatsStore(PlayStatsStore statsStore) {
+        smartShuffle.setStatsStore(statsStore);
+        statsStore.setOnStatsChangedListener(this::refreshWeight);
+    }
+
+    /**
+     * 设置智能随机不应抽到的歌曲(如已隔离的坏文件)
+     */
+    public void setExclusionFilter(Predicate<Song> filter) {
+        smartShuffle.setExclusionFilter(filter);
+    }
+
+    /**
+     * 某首歌曲的排除状态或播放统计变化后，增量更新它在智能随机中的权重
+     */
+    public void refreshWeight(String songId) {
+        int index = indexOf(songId);
+        if (playMode == PlayMode.SMART_SHUFFLE && index >= 0) {
+            smartShuffle.onStatsChanged(songs.get(index));
+        }
+    }
+
+    /**
+     * 排除的歌曲整体变化(如清空隔离列表)后，智能随机的权重表整体重建
+     */
+    public void refreshAllWeights() {
+        smartShuffle.invalidate();
+    }
+
+    /**
+     * 替换整个队列，重复的歌曲只保留第一次出现的位置，当前索引重置为-1
+     *
+     * @param newSongs 新的歌曲列表
+     */
+    public void setSongs(List<Song> newSongs) {
+        songs.clear();
+        currentIndex = -1;
+        if (newSongs == null) {
+            newSongs = Collections.emptyList();
+        }
+        Set<String> seen = new HashSet<>();
+        List<Song> unique = new ArrayList<>(newSongs.size());
+        for (Song song : newSongs) {
+            if (song != null && seen.add(song.getId())) {
+                unique.add(song);
+            }
+        }
+        songs.addAll(unique);
+        if (isShuffling()) {
+            shuffleOrder.reset(songs.size(), -1);
+        }
+        smartShuffle.invalidate();
+        dispatch(QueueChange.reset(++version, songs, currentIndex));
+    }
+
+    /**
+     * 添加歌曲到队列末尾
+     *
+     * @param song 要添加的歌曲
+     * @return 歌曲在队列中的索引，已存在时返回原有索引
+     */
+    public int add(Song song) {
+        return insert(songs.size(), song);
+    }
+
+    /**
+     * 在指定位置插入歌曲
+     *
+     * @param index 插入位置，超出范围时会被限制到队列两端
+     * @param song  要插入的歌曲
+     * @return 歌曲在队列中的索引，已存在时不插入并返回原有索引
+     */
+    public int insert(int index, Song song) {
+        int existing = songs.indexOfKey(song.getId());
+        if (existing >= 0) {
+            return existing;
+        }
+        int position = Math.max(0, Math.min(index, songs.size()));
+        songs.add(position, song);
+        if (currentIndex >= position) {
+            currentIndex++;
+        }
+        if (isShuffling()) {
+            shuffleOrder.onInserted(position);
+        }
+        smartShuffle.onInserted(song);
+        dispatch(QueueChange.inserted(++version, position, song, currentIndex));
+        return position;
+    }
+
+    /**
+     * 把歌曲安排为当前歌曲之后播放("下一首播放")
+     * 已在队列中的歌曲移动到当前歌曲之后，否则插入到该位置；随机类模式下同时成为随机顺序的下一首
+     *
+     * @param song 歌曲
+     * @return 歌曲的新位置
+     */
+    public int insertNext(Song song) {
+        int target = currentIndex + 1;
+        int existing = songs.indexOfKey(song.getId());
+        if (existing == currentIndex && existing >= 0) {
+            return existing;
+        }
+        int position;
+        if (existing < 0) {
+            position = insert(target, song);
+        } else {
+            // 从当前歌曲之前移过来时，移除后目标位置前移一位
+            int to = existing < target ? target - 1 : target;
+            move(existing, Math.min(to, songs.size() - 1));
+            position = songs.indexOfKey(song.getId());
+        }
+
+        if (isShuffling()) {
+            shuffleOrder.placeNext(position);
+        } else if (playMode == PlayMode.SMART_SHUFFLE) {
+            smartShuffle.setPendingNext(song);
+        }
+        return position;
+    }
+
+    /**
+     * 移除指定位置的歌曲
+     * 移除当前歌曲时当前索引保持不变(指向原来的下一首)，超出末尾时回到0，队列为空时为-1；
+     * 随机和智能随机模式下移到随机选出的下一首
+     *
+     * @param index 要移除的位置
+     * @return 被移除的歌曲，位置无效时返回null
+     */
+    public Song remove(int index) {
+        if (index < 0 || index >= songs.size()) {
+            return null;
+        }
+        Song removed = songs.remove(index);
+
+        boolean wasCurrent = index == currentIndex;
+        if (songs.isEmpty()) {
+            currentIndex = -1;
+        } else if (index < currentIndex) {
+            currentIndex--;
+        } else if (wasCurrent && currentIndex >= songs.size()) {
+            currentIndex = 0;
+        }
+
+        if (isShuffling()) {
+            shuffleOrder.onRemoved(removed.getId());
+            if (wasCurrent && !songs.isEmpty()) {
+                currentIndex = shuffleOrder.peek(1);
+                shuffleOrder.moveTo(currentIndex);
+            }
+        }
+        smartShuffle.onRemoved(removed);
+        if (playMode == PlayMode.SMART_SHUFFLE && wasCurrent && !songs.isEmpty()) {
+            currentIndex = smartShuffle.peekNext(this, -1);
+            smartShuffle.moveTo(this, -1, currentIndex);
+        }
+        dispatch(QueueChange.removed(++version, index, removed, currentIndex));
+        return removed;
+    }
+
+    /**
+     * 移动歌曲到新位置，当前索引跟随当前歌曲
+     *
+     * @param from 原位置
+     * @param to   新位置
+     * @return 是否移动成功
+     */
+    public boolean move(int from, int to) {
+        if (from < 0 || from >= songs.size() || to < 0 || to >= songs.size()) {
+            return false;
+        }
+        if (from == to) {
+            return true;
+        }
+        songs.move(from, to);
+        if (isShuffling()) {
+            shuffleOrder.onMoved(from, to);
+        }
+        smartShuffle.onMoved();
+
+        if (currentIndex == from) {
+            currentIndex = to;
+        } else if (from < currentIndex && currentIndex <= to) {
+            currentIndex--;
+        } else if (to <= currentIndex && currentIndex < from) {
+            currentIndex++;
+        }
+        dispatch(QueueChange.moved(++version, from, to, songs.get(to), currentIndex));
+        return true;
+    }
+
+    /**
+     * 清空队列
+     */
+    public void clear() {
+        songs.clear();
+        currentIndex = -1;
+        if (isShuffling()) {
+            shuffleOrder.reset(0, -1);
+        }
+        smartShuffle.invalidate();
+        dispatch(QueueChange.reset(++version, songs, currentIndex));
+    }
+
+    /**
+     * 当前版本的完整快照，供观察者首次同步或版本不连续时重新同步
+     */
+    public QueueChange snapshot() {
+        return QueueChange.reset(version, songs, currentIndex);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    private void dispatch(QueueChange change) {
+        if (listener != null) {
+            listener.onQueueChanged(change);
+        }
+    }
+
+    /**
+     * 按歌曲ID查找索引
+     *
+     * @param songId 歌曲ID
+     * @return 索引，不在队列中时返回-1
+     */
+    public int indexOf(String songId) {
+        return songId != null ? songs.indexOfKey(songId) : -1;
+    }
+
+    /**
+     * 歌曲是否已在队列中
+     */
+    public boolean contains(Song song) {
+        return song != null && songs.containsKey(song.getId());
+    }
+
+    /**
+     * 获取指定位置的歌曲
+     */
+    public Song get(int index) {
+        return songs.get(index);
+    }
+
+    public int size() {
+        return songs.size();
+    }
+
+    public boolean isEmpty() {
+        return songs.isEmpty();
+    }
+
+    /**
+     * 当前索引是否指向队列中的歌曲
+     */
+    public boolean hasCurrent() {
+        return currentIndex >= 0 && currentIndex < songs.size();
+    }
+
+    /**
+     * 获取当前歌曲
+     *
+     * @return 当前歌曲，当前索引无效时返回null
+     */
+    public Song getCurrentSong() {
+        return hasCurrent() ? songs.get(currentIndex) : null;
+    }
+
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    /**
+     * 设置当前索引
+     *
+     * @param index 新的索引，-1表示当前歌曲不在队列中
+     */
+    public void setCurrentIndex(int index) {
+        int previous = currentIndex;
+        currentIndex = index >= 0 && index < songs.size() ? index : -1;
+        if (isShuffling() && currentIndex >= 0) {
+            shuffleOrder.moveTo(currentIndex);
+        } else if (playMode == PlayMode.SMART_SHUFFLE && currentIndex >= 0) {
+            smartShuffle.moveTo(this, previous, currentIndex);
+        }
+    }
+
+    public PlayMode getPlayMode() {
+        return playMode;
+    }
+
+    /**
+     * 设置播放模式，进入随机模式时以当前歌曲为起点生成新的随机顺序
+     */
+    public void setPlayMode(PlayMode playMode) {
+        boolean startShuffle = playMode == PlayMode.SHUFFLE && this.playMode != PlayMode.SHUFFLE;
+        this.playMode = playMode;
+        if (startShuffle) {
+            shuffleOrder.reset(songs.size(), currentIndex);
+        }
+        if (playMode == PlayMode.SMART_SHUFFLE) {
+            smartShuffle.invalidate();
+        }
+    }
+
+    /**
+     * 随机类模式下相对当前歌曲偏移若干首的歌曲
+     * 向后为即将播放的顺序，向前为播放历史，都不会改变当前歌曲。
+     * 智能随机只支持前后各一首
+     *
+     * @param offset 偏移量，1为下一首，-1为上一首
+     * @return 队列索引，非随机类模式或无法确定时返回-1
+     */
+    public int getShuffledIndex(int offset) {
+        if (isShuffling()) {
+            return shuffleOrder.peek(offset);
+        }
+        if (playMode == PlayMode.SMART_SHUFFLE) {
+            if (offset == 1) {
+                return smartShuffle.peekNext(this, currentIndex);
+            }
+            if (offset == -1) {
+                return smartShuffle.peekPrevious(this);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 是否为随机或智能随机模式
+     */
+    public boolean isShuffleMode() {
+        return playMode == PlayMode.SHUFFLE || playMode == PlayMode.SMART_SHUFFLE;
+    }
+
+    private boolean isShuffling() {
+        return playMode == PlayMode.SHUFFLE;
+    }
+
+    /**
+     * 获取队列的只读视图，随队列变化
+     */
+    public List<Song> getSongs() {
+        return readOnlySongs;
+    }
+
+    /**
+     * 获取队列当前内容的不可变快照，可以交给其他线程读取
+     * 与队列共享未修改的块，生成时只复制块的引用，不复制整个队列
+     */
+    public List<Song> snapshotSongs() {
+        return songs.snapshot();
+    }
+}
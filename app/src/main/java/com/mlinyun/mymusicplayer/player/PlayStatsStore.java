@@ -0,0 +1,125 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 歌曲播放统计
+ * 记录每首歌曲的播放次数、跳过次数和最近播放时间，供智能随机计算权重。
+ * 启动时一次性读入内存，之后的查询不访问存储；修改按歌曲增量写回
+ */
+public class PlayStatsStore {
+    private static final String TAG = "PlayStatsStore";
+
+    private static final String PREFS_NAME = "play_stats";
+
+    /**
+     * 统计变化监听器
+     */
+    public interface OnStatsChangedListener {
+        /**
+         * @param songId 统计发生变化的歌曲ID
+         */
+        void onStatsChanged(String songId);
+    }
+
+    /**
+     * 单首歌曲的统计
+     */
+    public static final class PlayStats {
+        public final int playCount;
+        public final int skipCount;
+        public final long lastPlayedAt;
+
+        PlayStats(int playCount, int skipCount, long lastPlayedAt) {
+            this.playCount = playCount;
+            this.skipCount = skipCount;
+            this.lastPlayedAt = lastPlayedAt;
+        }
+    }
+
+    private final SharedPreferences preferences;
+    private final Map<String, PlayStats> stats = new HashMap<>();
+    private OnStatsChangedListener listener;
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     */
+    public PlayStatsStore(Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            PlayStats parsed = parse(entry.getValue());
+            if (parsed != null) {
+                stats.put(entry.getKey(), parsed);
+            }
+        }
+    }
+
+    public void setOnStatsChangedListener(OnStatsChangedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 获取歌曲的统计
+     *
+     * @return 统计，从未播放过时返回null
+     */
+    public PlayStats get(String songId) {
+        return songId != null ? stats.get(songId) : null;
+    }
+
+    /**
+     * 记录一次开始播放
+     */
+    public void recordPlay(String songId) {
+        PlayStats old = get(songId);
+        put(songId, new PlayStats(old != null ? old.playCount + 1 : 1,
+                old != null ? old.skipCount : 0, System.currentTimeMillis()));
+    }
+
+    /**
+     * 记录一次跳过(播放不久即切走)
+     */
+    public void recordSkip(String songId) {
+        PlayStats old = get(songId);
+        if (old == null) {
+            return;
+        }
+        put(songId, new PlayStats(old.playCount, Math.min(old.skipCount + 1, old.playCount), old.lastPlayedAt));
+    }
+
+    private void put(String songId, PlayStats value) {
+        if (songId == null) {
+            return;
+        }
+        stats.put(songId, value);
+        preferences.edit()
+                .putString(songId, value.playCount + "," + value.skipCount + "," + value.lastPlayedAt)
+                .apply();
+        if (listener != null) {
+            listener.onStatsChanged(songId);
+        }
+    }
+
+    private static PlayStats parse(Object value) {
+        if (!(value instanceof String)) {
+            return null;
+        }
+        String[] parts = ((String) value).split(",");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new PlayStats(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "忽略无法解析的播放统计: " + value);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * 播放器命令队列
+ * 在专用的HandlerThread上按提交顺序逐个执行播放器命令。播放引擎、播放队列和服务的播放状态
+ * 只在这个线程上访问，不需要加锁；界面等其他线程提交命令后立即返回，不等待执行。
+ * 在命令线程上提交的命令(命令内部调用其他命令、引擎回调中发起的操作)直接执行，保持调用顺序
+ */
+public class PlayerCommandQueue {
+    private static final String TAG = "PlayerCommandQueue";
+
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    public PlayerCommandQueue() {
+        thread = new HandlerThread("PlayerCommands", Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 提交命令
+     * 从其他线程提交时排队执行，先提交的先执行；在命令线程上提交时立即执行
+     *
+     * @param command 命令
+     */
+    public void submit(Runnable command) {
+        if (isCommandThread()) {
+            command.run();
+        } else {
+            handler.post(() -> execute(command));
+        }
+    }
+
+    /**
+     * 当前线程是否为命令线程
+     */
+    public boolean isCommandThread() {
+        return Looper.myLooper() == thread.getLooper();
+    }
+
+    /**
+     * 命令线程的Looper，播放引擎和需要在命令线程上执行的定时任务使用
+     */
+    public Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    /**
+     * 执行完已提交的命令后结束命令线程
+     */
+    public void quit() {
+        thread.quitSafely();
+    }
+
+    private void execute(Runnable command) {
+        try {
+            command.run();
+        } catch (Exception e) {
+            // 单个命令失败不影响后续命令
+            Log.e(TAG, "执行播放器命令失败: " + e.getMessage(), e);
+        }
+    }
+}
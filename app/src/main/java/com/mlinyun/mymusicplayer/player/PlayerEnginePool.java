@@ -0,0 +1,204 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.content.Context;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.OptIn;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.exoplayer.mediacodec.MediaCodecUtil;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 播放引擎池
+ * 每种引擎类型保留一个已初始化的空闲实例，切歌恢复、淡入淡出和引擎切换时直接取用，
+ * 避免在关键路径上重复创建播放器和渲染器。取走实例后会在播放器线程空闲时补充新的实例，
+ * 引擎与播放器线程绑定，池本身也只在该线程上使用
+ */
+public class PlayerEnginePool {
+    private static final String TAG = "PlayerEnginePool";
+
+    private final Context context;
+
+    // 创建池的播放器线程，引擎在该线程上创建
+    private final Looper looper;
+
+    // 每种类型最多一个空闲实例
+    private final Map<MusicPlayerManager.PlayerEngineType, IPlayerEngine> idleEngines =
+            new EnumMap<>(MusicPlayerManager.PlayerEngineType.class);
+
+    // 等待补充的引擎类型
+    private final Set<MusicPlayerManager.PlayerEngineType> pendingWarmTypes = new HashSet<>();
+
+    // 已预热过解码器的格式
+    private final Set<String> warmedMimeTypes = new HashSet<>();
+
+    // 解码器预热在后台低优先级线程执行
+    private final ExecutorService warmExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "EngineWarmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean released = false;
+
+    // 播放器线程空闲时补充空闲实例，不占用切歌等操作的时间
+    private final MessageQueue.IdleHandler warmIdleHandler = () -> {
+        for (MusicPlayerManager.PlayerEngineType type : pendingWarmTypes) {
+            if (!released && !idleEngines.containsKey(type)) {
+                idleEngines.put(type, create(type));
+                Log.d(TAG, "已补充空闲引擎: " + type);
+            }
+        }
+        pendingWarmTypes.clear();
+        return false;
+    };
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     */
+    public PlayerEnginePool(Context context) {
+        this.context = context;
+        this.looper = Looper.myLooper();
+    }
+
+    /**
+     * 取出一个已初始化的引擎，池中没有时立即创建
+     * 必须在播放器线程调用
+     *
+     * @param type 引擎类型
+     * @return 已初始化的引擎
+     */
+    public IPlayerEngine acquire(MusicPlayerManager.PlayerEngineType type) {
+        IPlayerEngine engine = idleEngines.remove(type);
+        if (engine == null) {
+            engine = create(type);
+        } else {
+            Log.d(TAG, "使用池中的空闲引擎: " + type);
+        }
+        scheduleWarm(type);
+        return engine;
+    }
+
+    /**
+     * 归还不再使用的引擎，池中已有同类型实例时直接释放
+     *
+     * @param type   引擎类型
+     * @param engine 要归还的引擎
+     */
+    public void recycle(MusicPlayerManager.PlayerEngineType type, IPlayerEngine engine) {
+        if (engine == null) {
+            return;
+        }
+
+        // 清除曲目相关状态。回调保持不变：管理器的回调只处理当前引擎和备用引擎的事件，
+        // 空闲引擎的迟到事件会被忽略，下次取用时会重新绑定
+        engine.stop();
+        engine.setSeekIndex(null);
+        engine.setVolume(1.0f, 1.0f);
+
+        if (released || idleEngines.containsKey(type)) {
+            engine.release();
+        } else {
+            idleEngines.put(type, engine);
+            Log.d(TAG, "引擎已归还到池中: " + type);
+        }
+    }
+
+    /**
+     * 预热常用格式的解码器信息
+     * 解码器的查找需要遍历系统编解码器列表，结果会被缓存，提前完成可以缩短首次准备的时间
+     *
+     * @param mimeTypes 需要预热的音频MIME类型
+     */
+    public void warmDecoders(Collection<String> mimeTypes) {
+        Set<String> pending = new HashSet<>();
+        for (String mimeType : mimeTypes) {
+            if (mimeType != null && warmedMimeTypes.add(mimeType)) {
+                pending.add(mimeType);
+            }
+        }
+        if (pending.isEmpty() || released) {
+            return;
+        }
+
+        warmExecutor.execute(() -> {
+            MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (String mimeType : pending) {
+                warmDecoder(codecList, mimeType);
+            }
+        });
+    }
+
+    /**
+     * 释放池中所有空闲引擎
+     */
+    public void release() {
+        released = true;
+        looper.getQueue().removeIdleHandler(warmIdleHandler);
+        pendingWarmTypes.clear();
+        for (IPlayerEngine engine : idleEngines.values()) {
+            engine.release();
+        }
+        idleEngines.clear();
+        warmExecutor.shutdownNow();
+    }
+
+    private void scheduleWarm(MusicPlayerManager.PlayerEngineType type) {
+        if (released) {
+            return;
+        }
+        if (pendingWarmTypes.isEmpty()) {
+            looper.getQueue().addIdleHandler(warmIdleHandler);
+        }
+        pendingWarmTypes.add(type);
+    }
+
+    private IPlayerEngine create(MusicPlayerManager.PlayerEngineType type) {
+        IPlayerEngine engine;
+        if (type == MusicPlayerManager.PlayerEngineType.EXO_PLAYER) {
+            // 使用ExoPlayer实现，更适合Android 16 (SDK 35)
+            engine = new ExoPlayerImpl(context);
+        } else {
+            // 默认使用MediaPlayer
+            engine = new MediaPlayerImpl(context);
+        }
+        engine.initialize();
+        return engine;
+    }
+
+    /**
+     * 分别预热ExoPlayer和系统MediaCodecList的解码器查找结果
+     */
+    @OptIn(markerClass = UnstableApi.class)
+    private void warmDecoder(MediaCodecList codecList, String mimeType) {
+        long start = System.currentTimeMillis();
+        try {
+            MediaCodecUtil.getDecoderInfos(mimeType, false, false);
+        } catch (MediaCodecUtil.DecoderQueryException e) {
+            Log.w(TAG, "查询ExoPlayer解码器失败: " + mimeType, e);
+        }
+        try {
+            codecList.findDecoderForFormat(MediaFormat.createAudioFormat(mimeType, 44100, 2));
+        } catch (Exception e) {
+            Log.w(TAG, "查询系统解码器失败: " + mimeType, e);
+        }
+        Log.d(TAG, "解码器预热完成: " + mimeType + ", 耗时: " + (System.currentTimeMillis() - start) + "ms");
+    }
+}
@@ -0,0 +1,220 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.os.SystemClock;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 播放器状态快照
+ * 命令线程在每次状态变化后发布一份新的不可变快照，其他线程直接读取最近发布的快照，
+ * 不加锁也不复制；同一份快照中的状态、队列、索引、歌曲、模式和时长彼此一致。
+ * 播放位置以锚点形式保存：锚点时刻的位置加上之后经过的时间即为当前位置，
+ * 读取方不需要频繁地向命令线程查询
+ */
+public final class PlayerSnapshot {
+
+    /**
+     * 服务初始化前的空快照
+     */
+    public static final PlayerSnapshot EMPTY = new Builder().build(0);
+
+    private final long version;
+    private final PlayerState state;
+    private final boolean buffering;
+    private final List<Song> queue;
+    private final long queueVersion;
+    private final int currentIndex;
+    private final Song currentSong;
+    private final PlayMode playMode;
+    private final int duration;
+    private final int anchorPosition;
+    private final long anchorTime;
+    private final int outputLatencyOffset;
+    private final int avoidedPrepareCount;
+
+    private PlayerSnapshot(Builder builder, long version) {
+        this.version = version;
+        this.state = builder.state;
+        this.buffering = builder.buffering;
+        this.queue = builder.queue;
+        this.queueVersion = builder.queueVersion;
+        this.currentIndex = builder.currentIndex;
+        this.currentSong = builder.currentSong;
+        this.playMode = builder.playMode;
+        this.duration = builder.duration;
+        this.anchorPosition = builder.anchorPosition;
+        this.anchorTime = builder.anchorTime;
+        this.outputLatencyOffset = builder.outputLatencyOffset;
+        this.avoidedPrepareCount = builder.avoidedPrepareCount;
+    }
+
+    /**
+     * 快照版本号，每次发布加一
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public PlayerState getState() {
+        return state;
+    }
+
+    public boolean isBuffering() {
+        return buffering;
+    }
+
+    /**
+     * 播放队列，不可修改；队列未变化的快照之间共用同一个列表
+     */
+    public List<Song> getQueue() {
+        return queue;
+    }
+
+    /**
+     * 队列版本号，与QueueChange的版本号一致
+     */
+    public long getQueueVersion() {
+        return queueVersion;
+    }
+
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    /**
+     * 当前歌曲，可能不在队列中(如直接播放的搜索结果)
+     */
+    public Song getCurrentSong() {
+        return currentSong;
+    }
+
+    public PlayMode getPlayMode() {
+        return playMode;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * 按锚点推算的当前播放位置
+     */
+    public int getPosition() {
+        return getPositionAt(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * 按锚点推算指定时刻的播放位置：播放中且未缓冲时随时间前进，不超过总时长
+     *
+     * @param elapsedRealtime SystemClock.elapsedRealtime()时间
+     */
+    public int getPositionAt(long elapsedRealtime) {
+        if (state != PlayerState.PLAYING || buffering) {
+            return anchorPosition;
+        }
+        long position = anchorPosition + Math.max(0, elapsedRealtime - anchorTime);
+        if (duration > 0) {
+            position = Math.min(position, duration);
+        }
+        return (int) position;
+    }
+
+    /**
+     * 当前输出设备的延迟补偿值(毫秒)
+     */
+    public int getOutputLatencyOffset() {
+        return outputLatencyOffset;
+    }
+
+    /**
+     * 因隔离而避免的准备次数
+     */
+    public int getAvoidedPrepareCount() {
+        return avoidedPrepareCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerSnapshot{version=" + version + ", state=" + state + ", queueVersion=" + queueVersion
+                + ", size=" + queue.size() + ", currentIndex=" + currentIndex + ", position=" + anchorPosition + "}";
+    }
+
+    /**
+     * 快照构建器，由命令线程使用
+     */
+    public static final class Builder {
+        private PlayerState state = PlayerState.IDLE;
+        private boolean buffering;
+        private List<Song> queue = Collections.emptyList();
+        private long queueVersion;
+        private int currentIndex = -1;
+        private Song currentSong;
+        private PlayMode playMode = PlayMode.SEQUENCE;
+        private int duration;
+        private int anchorPosition;
+        private long anchorTime;
+        private int outputLatencyOffset;
+        private int avoidedPrepareCount;
+
+        public Builder setState(PlayerState state, boolean buffering) {
+            this.state = state;
+            this.buffering = buffering;
+            return this;
+        }
+
+        /**
+         * @param queue        不可修改的队列列表，快照直接持有，调用方之后不得修改
+         * @param queueVersion 队列版本号
+         */
+        public Builder setQueue(List<Song> queue, long queueVersion) {
+            this.queue = queue;
+            this.queueVersion = queueVersion;
+            return this;
+        }
+
+        public Builder setCurrent(int currentIndex, Song currentSong) {
+            this.currentIndex = currentIndex;
+            this.currentSong = currentSong;
+            return this;
+        }
+
+        public Builder setPlayMode(PlayMode playMode) {
+            this.playMode = playMode;
+            return this;
+        }
+
+        public Builder setDuration(int duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        /**
+         * 设置位置锚点
+         *
+         * @param position        锚点时刻的播放位置
+         * @param elapsedRealtime 锚点时刻，SystemClock.elapsedRealtime()时间
+         */
+        public Builder setPositionAnchor(int position, long elapsedRealtime) {
+            this.anchorPosition = position;
+            this.anchorTime = elapsedRealtime;
+            return this;
+        }
+
+        public Builder setOutputLatencyOffset(int outputLatencyOffset) {
+            this.outputLatencyOffset = outputLatencyOffset;
+            return this;
+        }
+
+        public Builder setAvoidedPrepareCount(int avoidedPrepareCount) {
+            this.avoidedPrepareCount = avoidedPrepareCount;
+            return this;
+        }
+
+        public PlayerSnapshot build(long version) {
+            return new PlayerSnapshot(this, version);
+        }
+    }
+}
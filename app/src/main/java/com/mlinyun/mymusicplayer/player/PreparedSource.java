@@ -0,0 +1,68 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 已在后台解析和校验的数据源
+ * 持有一次打开得到的文件描述符，播放引擎直接使用它设置数据源，无需再按路径检查和打开文件。
+ * 引擎在prepare返回前完成对描述符的使用，调用方随后负责关闭
+ */
+public class PreparedSource {
+    private static final String TAG = "PreparedSource";
+
+    private final String path;
+    private final Uri uri;
+    private final ParcelFileDescriptor descriptor;
+    private final long length;
+
+    PreparedSource(String path, Uri uri, ParcelFileDescriptor descriptor, long length) {
+        this.path = path;
+        this.uri = uri;
+        this.descriptor = descriptor;
+        this.length = length;
+    }
+
+    /**
+     * 文件路径
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 带file协议的规范URI，供无法直接使用文件描述符的引擎使用
+     */
+    public Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * 已打开的文件描述符
+     */
+    public FileDescriptor getFileDescriptor() {
+        return descriptor.getFileDescriptor();
+    }
+
+    /**
+     * 文件长度(字节)
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 关闭文件描述符
+     */
+    public void close() {
+        try {
+            descriptor.close();
+        } catch (IOException e) {
+            Log.w(TAG, "关闭文件描述符失败: " + path, e);
+        }
+    }
+}
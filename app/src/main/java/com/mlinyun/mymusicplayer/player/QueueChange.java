@@ -0,0 +1,133 @@
+package com.mlinyun.mymusicplayer.player;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 播放队列变化事件
+ * 描述一次队列编辑(插入、移除、移动或整体替换)，观察者据此增量更新自己的副本，
+ * 不必每次重新获取和处理整个队列。
+ * 每个事件带有递增的版本号，观察者发现版本不连续时应通过RESET快照重新同步
+ */
+public final class QueueChange {
+
+    /**
+     * 变化类型
+     */
+    public enum Type {
+        INSERTED,   // 在position处插入了songs
+        REMOVED,    // 从position处移除了songs
+        MOVED,      // 歌曲从position移动到toPosition
+        RESET       // 队列被整体替换，songs为完整快照
+    }
+
+    private final Type type;
+    private final long version;
+    private final int position;
+    private final int toPosition;
+    private final List<Song> songs;
+    private final int currentIndex;
+
+    private QueueChange(Type type, long version, int position, int toPosition, List<Song> songs, int currentIndex) {
+        this.type = type;
+        this.version = version;
+        this.position = position;
+        this.toPosition = toPosition;
+        this.songs = songs;
+        this.currentIndex = currentIndex;
+    }
+
+    public static QueueChange inserted(long version, int position, Song song, int currentIndex) {
+        return new QueueChange(Type.INSERTED, version, position, position,
+                Collections.singletonList(song), currentIndex);
+    }
+
+    public static QueueChange removed(long version, int position, Song song, int currentIndex) {
+        return new QueueChange(Type.REMOVED, version, position, position,
+                Collections.singletonList(song), currentIndex);
+    }
+
+    public static QueueChange moved(long version, int from, int to, Song song, int currentIndex) {
+        return new QueueChange(Type.MOVED, version, from, to, Collections.singletonList(song), currentIndex);
+    }
+
+    public static QueueChange reset(long version, List<Song> songs, int currentIndex) {
+        return new QueueChange(Type.RESET, version, 0, 0,
+                Collections.unmodifiableList(new ArrayList<>(songs)), currentIndex);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * 变化后的队列版本号，每次变化加一
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 插入或移除的起始位置，移动时为原位置
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * 移动的目标位置
+     */
+    public int getToPosition() {
+        return toPosition;
+    }
+
+    /**
+     * 插入、移除或移动的歌曲；RESET时为变化后的完整队列
+     */
+    public List<Song> getSongs() {
+        return songs;
+    }
+
+    public int getCount() {
+        return songs.size();
+    }
+
+    /**
+     * 变化后的当前索引
+     */
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    /**
+     * 把变化应用到一份队列副本上，副本应处于上一个版本
+     *
+     * @param target 队列副本
+     */
+    public void applyTo(List<Song> target) {
+        switch (type) {
+            case INSERTED:
+                target.addAll(position, songs);
+                break;
+            case REMOVED:
+                target.subList(position, position + songs.size()).clear();
+                break;
+            case MOVED:
+                target.add(toPosition, target.remove(position));
+                break;
+            case RESET:
+                target.clear();
+                target.addAll(songs);
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueueChange{" + type + ", version=" + version + ", position=" + position
+                + ", toPosition=" + toPosition + ", count=" + songs.size() + "}";
+    }
+}
@@ -0,0 +1,197 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 播放错误恢复策略
+ * 统一决定播放出错后的处理方式：切换引擎、延迟跳到下一首或停止播放。
+ * 连续出错时按指数退避拉长跳转间隔；每个文件按错误类型累计失败分数，达到阈值后加入持久化的隔离列表，
+ * 之后切歌和自动续播会直接跳过，不再为已知损坏的文件重复准备
+ */
+public class RecoveryPolicy {
+    private static final String TAG = "RecoveryPolicy";
+
+    private static final String PREFS_NAME = "playback_recovery";
+    private static final String KEY_QUARANTINE = "quarantine";
+
+    // 与文件无关的临时错误(初始化失败、状态异常等)的错误码，只参与退避，不计入文件的失败分数
+    public static final int ERROR_TRANSIENT = -1;
+    // 无法打开文件(不存在、无权限等)的错误码，这类错误重试没有意义
+    public static final int ERROR_SOURCE_UNAVAILABLE = -1100;
+    // MediaPlayer不支持该格式时的错误码，可以换用ExoPlayer重试
+    private static final int ERROR_MEDIA_PLAYER_UNSUPPORTED = -38;
+
+    // 失败分数：无法打开直接达到隔离阈值，引擎报告的解码错误需要再次失败才隔离
+    private static final int SCORE_UNAVAILABLE = 2;
+    private static final int SCORE_DECODE_ERROR = 1;
+    private static final int QUARANTINE_SCORE = 2;
+
+    // 退避：第n次连续失败后等待 BASE * 2^(n-1) 毫秒再跳转，超过上限次数后停止播放
+    private static final long BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 8000;
+    private static final int MAX_CONSECUTIVE_FAILURES = 5;
+
+    /**
+     * 恢复动作
+     */
+    public enum Action {
+        // 切换到ExoPlayer重新准备当前歌曲
+        SWITCH_ENGINE,
+        // 等待退避时间后跳到下一首
+        SKIP,
+        // 停止播放
+        STOP
+    }
+
+    /**
+     * 恢复决定
+     */
+    public static final class Decision {
+        public final Action action;
+        public final long delayMs;
+
+        Decision(Action action, long delayMs) {
+            this.action = action;
+            this.delayMs = delayMs;
+        }
+    }
+
+    private final SharedPreferences preferences;
+
+    // 已隔离的文件，键为路径加扫描时的文件大小，文件被替换后自动解除
+    private final Set<String> quarantine;
+
+    // 尚未达到阈值的文件失败分数
+    private final Map<String, Integer> failureScores = new HashMap<>();
+
+    // 已为其切换过引擎的文件，同一文件只切换一次
+    private String engineSwitchedKey;
+
+    private int consecutiveFailures = 0;
+    private int avoidedPrepareCount = 0;
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     */
+    public RecoveryPolicy(Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.quarantine = new HashSet<>(preferences.getStringSet(KEY_QUARANTINE, new HashSet<>()));
+    }
+
+    /**
+     * 根据错误决定恢复动作，并记录该文件的失败分数
+     *
+     * @param song            出错的歌曲，可以为null
+     * @param errorCode       错误码
+     * @param canSwitchEngine 当前是否还可以切换到ExoPlayer
+     * @return 恢复决定
+     */
+    public Decision onError(Song song, int errorCode, boolean canSwitchEngine) {
+        String key = song != null && song.getPath() != null ? buildKey(song) : null;
+
+        if (errorCode == ERROR_MEDIA_PLAYER_UNSUPPORTED && canSwitchEngine && key != null
+                && !key.equals(engineSwitchedKey)) {
+            engineSwitchedKey = key;
+            return new Decision(Action.SWITCH_ENGINE, 0);
+        }
+
+        if (key != null && errorCode != ERROR_TRANSIENT) {
+            int score = (failureScores.containsKey(key) ? failureScores.get(key) : 0)
+                    + (errorCode == ERROR_SOURCE_UNAVAILABLE ? SCORE_UNAVAILABLE : SCORE_DECODE_ERROR);
+            if (score >= QUARANTINE_SCORE) {
+                failureScores.remove(key);
+                quarantine(key);
+            } else {
+                failureScores.put(key, score);
+            }
+        }
+
+        consecutiveFailures++;
+        if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+            Log.w(TAG, "连续失败 " + consecutiveFailures + " 次，停止播放");
+            consecutiveFailures = 0;
+            return new Decision(Action.STOP, 0);
+        }
+
+        long delay = Math.min(BASE_BACKOFF_MS << (consecutiveFailures - 1), MAX_BACKOFF_MS);
+        return new Decision(Action.SKIP, delay);
+    }
+
+    /**
+     * 歌曲开始正常播放，清除连续失败计数和该文件的失败分数
+     */
+    public void onPlaybackStarted(Song song) {
+        consecutiveFailures = 0;
+        if (song != null && song.getPath() != null) {
+            failureScores.remove(buildKey(song));
+        }
+    }
+
+    /**
+     * 用户手动选择播放时重置退避，隔离列表保持不变
+     */
+    public void resetBackoff() {
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * 记录切歌时越过的已隔离歌曲，只在切歌实际生效时调用，仅查看候选歌曲时不计入
+     *
+     * @param count 本次切歌越过的已隔离歌曲数
+     */
+    public void recordAvoidedPrepares(int count) {
+        avoidedPrepareCount += count;
+    }
+
+    /**
+     * 歌曲是否已被隔离
+     */
+    public boolean isQuarantined(Song song) {
+        return song != null && song.getPath() != null && quarantine.contains(buildKey(song));
+    }
+
+    /**
+     * 清空隔离列表，例如重新扫描媒体库之后
+     */
+    public void clearQuarantine() {
+        quarantine.clear();
+        failureScores.clear();
+        preferences.edit().remove(KEY_QUARANTINE).apply();
+    }
+
+    /**
+     * 因隔离而避免的准备次数
+     */
+    public int getAvoidedPrepareCount() {
+        return avoidedPrepareCount;
+    }
+
+    /**
+     * 已隔离的文件数
+     */
+    public int getQuarantineSize() {
+        return quarantine.size();
+    }
+
+    private void quarantine(String key) {
+        if (quarantine.add(key)) {
+            Log.w(TAG, "文件多次播放失败，已隔离: " + key);
+            preferences.edit().putStringSet(KEY_QUARANTINE, new HashSet<>(quarantine)).apply();
+        }
+    }
+
+    private String buildKey(Song song) {
+        return song.getPath() + "#" + song.getSize();
+    }
+}
@@ -0,0 +1,129 @@
+package com.mlinyun.mymusicplayer.player;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 音频定位索引
+ * 记录每隔固定时间间隔的音频帧在文件中的字节偏移，用于没有Xing/VBRI目录的VBR MP3精确定位。
+ *
+ * 播放引擎在缺少目录时会按第一帧的码率把时间线性换算为字节位置，VBR文件因此定位不准。
+ * 本索引先查出目标时间真正对应的字节偏移，再反算出引擎按恒定码率会定位到该字节的"引擎时间"，
+ * 引擎定位后报告的时间与真实时间之差由调用方记录并在读取进度时扣除
+ */
+public class SeekIndex {
+
+    // 索引文件格式版本，格式变化时旧缓存自动失效
+    static final int FORMAT_VERSION = 1;
+
+    // 采样间隔(毫秒)
+    private final int intervalMs;
+    // 第i项为时间 i * intervalMs 处音频帧的字节偏移
+    private final int[] offsets;
+    // 按帧累计得到的精确总时长(毫秒)
+    private final int durationMs;
+    // 第一个音频帧的字节偏移及其码率，用于模拟引擎的恒定码率换算
+    private final int dataStartOffset;
+    private final int firstFrameBitrate;
+    // 是否需要修正：仅VBR且没有Xing/VBRI目录的文件才需要
+    private final boolean needsCorrection;
+
+    SeekIndex(int intervalMs, int[] offsets, int durationMs, int dataStartOffset,
+              int firstFrameBitrate, boolean needsCorrection) {
+        this.intervalMs = intervalMs;
+        this.offsets = offsets;
+        this.durationMs = durationMs;
+        this.dataStartOffset = dataStartOffset;
+        this.firstFrameBitrate = firstFrameBitrate;
+        this.needsCorrection = needsCorrection;
+    }
+
+    /**
+     * 是否需要由索引修正引擎的定位
+     */
+    public boolean needsCorrection() {
+        return needsCorrection && firstFrameBitrate > 0 && offsets.length > 0;
+    }
+
+    /**
+     * 获取精确总时长(毫秒)
+     */
+    public int getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * 获取指定时间对应的字节偏移，采样点之间按线性插值
+     *
+     * @param positionMs 时间(毫秒)
+     * @return 字节偏移
+     */
+    public long getByteOffset(int positionMs) {
+        if (offsets.length == 0) {
+            return dataStartOffset;
+        }
+        int position = Math.max(0, Math.min(positionMs, durationMs));
+        int index = position / intervalMs;
+        if (index >= offsets.length - 1) {
+            return offsets[offsets.length - 1];
+        }
+        int remainder = position - index * intervalMs;
+        long start = offsets[index];
+        long end = offsets[index + 1];
+        return start + (end - start) * remainder / intervalMs;
+    }
+
+    /**
+     * 将真实时间换算为引擎按第一帧码率线性定位时应传入的时间
+     *
+     * @param positionMs 真实时间(毫秒)
+     * @return 引擎时间(毫秒)
+     */
+    public int toEngineTime(int positionMs) {
+        if (!needsCorrection()) {
+            return positionMs;
+        }
+        long bytes = getByteOffset(positionMs) - dataStartOffset;
+        return (int) (Math.max(0, bytes) * 8000L / firstFrameBitrate);
+    }
+
+    /**
+     * 写入到输出流
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(intervalMs);
+        out.writeInt(durationMs);
+        out.writeInt(dataStartOffset);
+        out.writeInt(firstFrameBitrate);
+        out.writeBoolean(needsCorrection);
+        out.writeInt(offsets.length);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+    }
+
+    /**
+     * 从输入流读取
+     *
+     * @return 索引，格式版本不匹配时返回null
+     */
+    static SeekIndex readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        int intervalMs = in.readInt();
+        int durationMs = in.readInt();
+        int dataStartOffset = in.readInt();
+        int firstFrameBitrate = in.readInt();
+        boolean needsCorrection = in.readBoolean();
+        int count = in.readInt();
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.readInt();
+        }
+        return new SeekIndex(intervalMs, offsets, durationMs, dataStartOffset,
+                firstFrameBitrate, needsCorrection);
+    }
+}
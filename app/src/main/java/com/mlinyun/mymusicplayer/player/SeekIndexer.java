@@ -0,0 +1,388 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 定位索引构建器
+ * 在后台线程逐帧扫描MP3文件一次，生成按时间采样的帧偏移表，并以路径和修改时间为键持久化到缓存目录，
+ * 之后再次播放同一文件时直接读取，无需重新扫描
+ */
+public class SeekIndexer {
+    private static final String TAG = "SeekIndexer";
+
+    // 采样间隔(毫秒)，采样点之间线性插值，一小时的音频约7200项
+    private static final int INTERVAL_MS = 500;
+
+    // 内存缓存的索引数量
+    private static final int CACHE_SIZE = 16;
+
+    private static final String CACHE_DIR = "seek_index";
+
+    // MPEG Layer III 码率表(kbps)
+    private static final int[] BITRATES_V1 = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] BITRATES_V2 = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+
+    // 采样率表(Hz)
+    private static final int[] SAMPLE_RATES_V1 = {44100, 48000, 32000};
+    private static final int[] SAMPLE_RATES_V2 = {22050, 24000, 16000};
+    private static final int[] SAMPLE_RATES_V25 = {11025, 12000, 8000};
+
+    /**
+     * 索引加载回调，在创建SeekIndexer的线程(播放器线程)执行
+     */
+    public interface IndexCallback {
+        /**
+         * @param index 定位索引，文件不支持或扫描失败时为null
+         */
+        void onIndexLoaded(SeekIndex index);
+    }
+
+    private final File cacheDir;
+    private final LruCache<String, SeekIndex> memoryCache = new LruCache<>(CACHE_SIZE);
+    private final Handler callbackHandler = new Handler(Looper.myLooper());
+
+    // 单线程低优先级执行，避免与播放解码争抢CPU和磁盘
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "SeekIndexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 构造函数
+     *
+     * @param context 上下文
+     */
+    public SeekIndexer(Context context) {
+        this.cacheDir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR);
+    }
+
+    /**
+     * 获取文件的定位索引
+     * 依次查找内存缓存、磁盘缓存，都没有时在后台扫描文件并保存结果
+     *
+     * @param path     音频文件路径
+     * @param callback 加载完成回调
+     */
+    public void loadIndex(String path, IndexCallback callback) {
+        if (path == null || !path.toLowerCase(Locale.ROOT).endsWith(".mp3")) {
+            callback.onIndexLoaded(null);
+            return;
+        }
+
+        File file = new File(path);
+        String key = buildKey(file);
+        SeekIndex cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onIndexLoaded(cached);
+            return;
+        }
+
+        executor.execute(() -> {
+            SeekIndex index = readFromDisk(key, path);
+            if (index == null) {
+                long start = System.currentTimeMillis();
+                index = scan(file);
+                if (index != null) {
+                    writeToDisk(key, path, index);
+                    Log.d(TAG, "索引构建完成: " + path + ", 耗时: "
+                            + (System.currentTimeMillis() - start) + "ms, 需要修正: " + index.needsCorrection());
+                }
+            }
+            if (index != null) {
+                memoryCache.put(key, index);
+            }
+
+            final SeekIndex result = index;
+            callbackHandler.post(() -> callback.onIndexLoaded(result));
+        });
+    }
+
+    /**
+     * 释放后台线程
+     */
+    public void release() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 以路径、修改时间和文件大小生成缓存键，文件被替换后旧索引自动失效
+     */
+    private String buildKey(File file) {
+        return Integer.toHexString(file.getAbsolutePath().hashCode())
+                + "_" + file.lastModified() + "_" + file.length();
+    }
+
+    private SeekIndex readFromDisk(String key, String path) {
+        File indexFile = new File(cacheDir, key + ".idx");
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            // 校验路径，防止不同路径的哈希冲突
+            if (!path.equals(in.readUTF())) {
+                return null;
+            }
+            return SeekIndex.readFrom(in);
+        } catch (IOException e) {
+            Log.w(TAG, "读取索引缓存失败: " + indexFile, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String path, SeekIndex index) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "无法创建索引缓存目录: " + cacheDir);
+            return;
+        }
+
+        // 删除同一路径的旧版本索引
+        String prefix = key.substring(0, key.indexOf('_') + 1);
+        File[] stale = cacheDir.listFiles((dir, name) -> name.startsWith(prefix));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+
+        File indexFile = new File(cacheDir, key + ".idx");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeUTF(path);
+            index.writeTo(out);
+        } catch (IOException e) {
+            Log.w(TAG, "保存索引缓存失败: " + indexFile, e);
+            indexFile.delete();
+        }
+    }
+
+    /**
+     * 逐帧扫描MP3文件，只读取每帧的4字节帧头，帧体直接跳过
+     */
+    private SeekIndex scan(File file) {
+        if (!file.canRead() || file.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            byte[] header = new byte[10];
+            long position = skipId3v2(in, header);
+
+            int[] offsets = new int[256];
+            int count = 0;
+            long totalSamples = 0;
+            int sampleRate = 0;
+            int firstBitrate = 0;
+            int dataStart = -1;
+            boolean isVbr = false;
+            boolean hasToc = false;
+            long nextSampleMs = 0;
+
+            while (true) {
+                in.mark(4);
+                if (readFully(in, header, 4) < 4) {
+                    break;
+                }
+
+                int frameLength = parseFrameLength(header);
+                if (frameLength <= 0) {
+                    // 不是合法帧头，后移一个字节重新同步
+                    in.reset();
+                    if (in.skip(1) < 1) {
+                        break;
+                    }
+                    position++;
+                    continue;
+                }
+
+                int frameSampleRate = parseSampleRate(header);
+                int bitrate = parseBitrate(header);
+                if (dataStart < 0) {
+                    // 第一帧：检查是否带有Xing/Info/VBRI目录，有目录时引擎自身即可准确定位
+                    byte[] firstFrame = new byte[Math.min(frameLength, 64)];
+                    System.arraycopy(header, 0, firstFrame, 0, 4);
+                    int read = readFully(in, firstFrame, 4, firstFrame.length - 4);
+                    hasToc = hasVbrHeader(firstFrame, 4 + read);
+                    skipFully(in, frameLength - 4 - read);
+
+                    dataStart = (int) position;
+                    firstBitrate = bitrate;
+                    sampleRate = frameSampleRate;
+                } else {
+                    if (bitrate != firstBitrate) {
+                        isVbr = true;
+                    }
+                    skipFully(in, frameLength - 4);
+                }
+
+                // 记录落在当前帧起点之前的所有采样点
+                long frameStartMs = totalSamples * 1000 / sampleRate;
+                while (frameStartMs >= nextSampleMs) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = (int) position;
+                    nextSampleMs += INTERVAL_MS;
+                }
+
+                totalSamples += samplesPerFrame(header);
+                position += frameLength;
+            }
+
+            if (dataStart < 0 || sampleRate == 0) {
+                return null;
+            }
+
+            int durationMs = (int) (totalSamples * 1000 / sampleRate);
+            return new SeekIndex(INTERVAL_MS, Arrays.copyOf(offsets, count), durationMs,
+                    dataStart, firstBitrate, isVbr && !hasToc);
+        } catch (IOException e) {
+            Log.e(TAG, "扫描文件失败: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 跳过文件开头的ID3v2标签
+     *
+     * @return 音频数据的起始偏移
+     */
+    private long skipId3v2(InputStream in, byte[] header) throws IOException {
+        in.mark(10);
+        if (readFully(in, header, 10) == 10 && header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+            // 标签大小为4个7位的同步安全整数
+            long size = ((header[6] & 0x7F) << 21) | ((header[7] & 0x7F) << 14)
+                    | ((header[8] & 0x7F) << 7) | (header[9] & 0x7F);
+            if ((header[5] & 0x10) != 0) {
+                size += 10; // 带有标签尾
+            }
+            skipFully(in, size);
+            return 10 + size;
+        }
+        in.reset();
+        return 0;
+    }
+
+    /**
+     * 解析帧长度，非法帧头或非Layer III时返回-1
+     */
+    private static int parseFrameLength(byte[] h) {
+        if ((h[0] & 0xFF) != 0xFF || (h[1] & 0xE0) != 0xE0) {
+            return -1;
+        }
+        int version = (h[1] >> 3) & 0x03;
+        int layer = (h[1] >> 1) & 0x03;
+        int bitrateIndex = (h[2] >> 4) & 0x0F;
+        int sampleRateIndex = (h[2] >> 2) & 0x03;
+        if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1;
+        }
+        int padding = (h[2] >> 1) & 0x01;
+        // Layer III帧长：MPEG1为 144 * 码率 / 采样率，MPEG2/2.5每帧采样数减半
+        int coefficient = version == 3 ? 144 : 72;
+        return coefficient * parseBitrate(h) / parseSampleRate(h) + padding;
+    }
+
+    private static int parseBitrate(byte[] h) {
+        int version = (h[1] >> 3) & 0x03;
+        int index = (h[2] >> 4) & 0x0F;
+        return (version == 3 ? BITRATES_V1[index] : BITRATES_V2[index]) * 1000;
+    }
+
+    private static int parseSampleRate(byte[] h) {
+        int version = (h[1] >> 3) & 0x03;
+        int index = (h[2] >> 2) & 0x03;
+        if (version == 3) {
+            return SAMPLE_RATES_V1[index];
+        }
+        return version == 2 ? SAMPLE_RATES_V2[index] : SAMPLE_RATES_V25[index];
+    }
+
+    private static int samplesPerFrame(byte[] h) {
+        int version = (h[1] >> 3) & 0x03;
+        return version == 3 ? 1152 : 576;
+    }
+
+    /**
+     * 检查第一帧中是否带有Xing/Info或VBRI头
+     */
+    private static boolean hasVbrHeader(byte[] frame, int length) {
+        int version = (frame[1] >> 3) & 0x03;
+        boolean mono = ((frame[3] >> 6) & 0x03) == 3;
+        int sideInfo;
+        if (version == 3) {
+            sideInfo = mono ? 17 : 32;
+        } else {
+            sideInfo = mono ? 9 : 17;
+        }
+        return matches(frame, length, 4 + sideInfo, "Xing")
+                || matches(frame, length, 4 + sideInfo, "Info")
+                || matches(frame, length, 4 + 32, "VBRI");
+    }
+
+    private static boolean matches(byte[] data, int length, int offset, String tag) {
+        if (offset + tag.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < tag.length(); i++) {
+            if (data[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        return readFully(in, buffer, 0, length);
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    return;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
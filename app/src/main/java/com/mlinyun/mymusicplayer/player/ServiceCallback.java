@@ -1,5 +1,7 @@
 package com.mlinyun.mymusicplayer.player;
 
+import com.mlinyun.mymusicplayer.model.Song;
+
 /**
  * 播放服务回调接口
  * 用于服务层和控制层之间的通信
@@ -39,4 +41,34 @@ public interface ServiceCallback {
      * @param duration 媒体总时长(毫秒)
      */
     void onDurationChanged(int duration);
-}
\ No newline at end of file
+
+    /**
+     * 无缝切换到已排队的下一首时回调
+     * 此时引擎已在播放新曲目，不会再触发播放完成回调
+     *
+     * @param song 新的当前歌曲
+     */
+    void onTrackTransition(Song song);
+
+    /**
+     * 当前引擎的播放位置发生跳变(定位完成、衔接到下一首)时回调
+     * 由引擎事件推送，无需等待下一次进度更新
+     *
+     * @param position 跳变后的播放位置(毫秒)
+     */
+    void onPositionDiscontinuity(int position);
+
+    /**
+     * 当前引擎开始或结束缓冲时回调
+     *
+     * @param isBuffering 是否正在缓冲
+     */
+    void onBufferingChanged(boolean isBuffering);
+
+    /**
+     * 当前引擎的音频会话ID改变时回调
+     *
+     * @param audioSessionId 新的音频会话ID
+     */
+    void onAudioSessionIdChanged(int audioSessionId);
+}
@@ -0,0 +1,384 @@
+package com.mlinyun.mymusicplayer.player;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * 随机播放顺序
+ * 用按需生成的Fisher-Yates排列决定随机播放顺序：每一轮内所有歌曲恰好播放一次，
+ * 只有真正要播放的位置才会被抽取，下一首和上一首都是O(1)。
+ * 一轮播完后开始新的一轮，上一轮末尾的歌曲进入环形历史缓冲区，上一首可以跨轮回退。
+ * 排列中保存的是歌曲的键而不是队列位置，队列插入和移动不需要修正排列；
+ * 移除时只调整本轮已确定的部分，未抽取的部分与末尾交换即可，已确定的顺序保持不变。
+ * 对外的参数和返回值仍是歌曲在播放队列中的位置，由队列提供的函数与键互相转换
+ */
+public class ShuffleOrder {
+
+    // 跨轮回退时保留的历史歌曲数
+    private static final int HISTORY_CAPACITY = 100;
+
+    private final Random random = new Random();
+
+    // 队列位置与歌曲键的转换
+    private final IntFunction<Object> keyAt;
+    private final ToIntFunction<Object> indexOf;
+
+    // 排列及其逆映射：order[位置] = 歌曲键，positionOf[歌曲键] = 位置
+    private Object[] order = new Object[0];
+    private final Map<Object, Integer> positionOf = new HashMap<>();
+    private int size = 0;
+
+    // 排列中已确定的前缀长度，之后的位置尚未抽取
+    private int generated = 0;
+
+    // 当前歌曲在排列中的位置，-1表示尚未开始
+    private int cursor = -1;
+
+    // 下一轮的第一首，在本轮最后一首时按需确定
+    private Object nextCycleFirst;
+
+    // 上一轮及更早播放过的歌曲，环形缓冲区
+    private final Object[] history = new Object[HISTORY_CAPACITY];
+    private int historyHead = 0;
+    private int historyCount = 0;
+
+    // 最近一次向前查看的结果，同一首歌曲既是下一首又是上一轮的历史时据此判断方向
+    private Object lastBackwardPeek;
+
+    /**
+     * @param keyAt   取队列指定位置歌曲的键
+     * @param indexOf 按键查找歌曲在队列中的位置，不存在时返回-1
+     */
+    public ShuffleOrder(IntFunction<Object> keyAt, ToIntFunction<Object> indexOf) {
+        this.keyAt = keyAt;
+        this.indexOf = indexOf;
+    }
+
+    /**
+     * 以新的队列大小重新开始随机顺序
+     *
+     * @param queueSize 队列大小
+     * @param current   当前歌曲的队列索引，-1表示没有
+     */
+    public void reset(int queueSize, int current) {
+        size = queueSize;
+        order = new Object[Math.max(queueSize, 16)];
+        positionOf.clear();
+        for (int i = 0; i < queueSize; i++) {
+            order[i] = keyAt.apply(i);
+            positionOf.put(order[i], i);
+        }
+        generated = 0;
+        cursor = -1;
+        nextCycleFirst = null;
+        Arrays.fill(history, null);
+        historyHead = 0;
+        historyCount = 0;
+        lastBackwardPeek = null;
+        if (current >= 0 && current < queueSize) {
+            startCycle(order[current]);
+        }
+    }
+
+    /**
+     * 查看相对当前歌曲偏移若干首的歌曲，不移动当前位置
+     * 向后查看时按需抽取排列；越过本轮末尾一首时返回下一轮的第一首。
+     * 向前查看时先回溯本轮，再回溯历史缓冲区
+     *
+     * @param offset 偏移量，正数向后，负数向前
+     * @return 队列索引，无法确定时返回-1
+     */
+    public int peek(int offset) {
+        if (size == 0 || (cursor < 0 && offset <= 0)) {
+            return -1;
+        }
+        Object result = peekInternal(offset);
+        if (offset < 0) {
+            lastBackwardPeek = result;
+        }
+        return result != null ? indexOf.applyAsInt(result) : -1;
+    }
+
+    private Object peekInternal(int offset) {
+        int target = cursor + offset;
+        if (offset >= 0) {
+            if (target < size) {
+                ensureGenerated(target);
+                return order[target];
+            }
+            return target == size ? peekNextCycleFirst() : null;
+        }
+        if (target >= 0) {
+            return order[target];
+        }
+        int depth = -target - 1;
+        return depth < historyCount ? history[(historyHead - 1 - depth + HISTORY_CAPACITY) % HISTORY_CAPACITY] : null;
+    }
+
+    /**
+     * 当前歌曲切换为指定索引
+     * 切换到下一首、上一首或下一轮第一首时只移动游标；其他跳转把目标移到当前位置之后(或之前)，
+     * 本轮尚未播放的歌曲仍按原顺序播放
+     *
+     * @param index 新的当前歌曲
+     */
+    public void moveTo(int index) {
+        if (index < 0 || index >= size) {
+            return;
+        }
+        Object key = keyAt.apply(index);
+        Integer position = positionOf.get(key);
+        if (position == null) {
+            return;
+        }
+        if (cursor < 0) {
+            // 尚未开始或当前歌曲已被移除：目标成为本轮的第一个位置
+            relocate(fix(position), 0);
+            cursor = 0;
+            return;
+        }
+        if (key.equals(order[cursor])) {
+            return;
+        }
+        boolean backward = key.equals(lastBackwardPeek);
+        lastBackwardPeek = null;
+
+        if (backward && cursor == 0 && historyCount > 0 && key.equals(peekInternal(-1))) {
+            // 回退到上一轮的歌曲：放到当前歌曲之前，随后的下一首回到当前歌曲
+            popHistory();
+            relocate(fix(position), 0);
+            return;
+        }
+
+        // 下一首
+        if (cursor + 1 < size) {
+            ensureGenerated(cursor + 1);
+            if (key.equals(order[cursor + 1])) {
+                cursor++;
+                return;
+            }
+        } else if (key.equals(peekNextCycleFirst())) {
+            // 本轮结束，开始新的一轮
+            archiveCycle();
+            startCycle(key);
+            return;
+        }
+
+        // 本轮内的上一首
+        if (cursor > 0 && key.equals(order[cursor - 1])) {
+            cursor--;
+            return;
+        }
+
+        int p = positionOf.get(key);
+        if (cursor == 0 && historyCount > 0 && key.equals(peekInternal(-1))) {
+            popHistory();
+            relocate(fix(p), 0);
+            return;
+        }
+
+        if (p > cursor) {
+            // 跳到本轮尚未播放的歌曲：放到当前歌曲之后
+            p = fix(p);
+            relocate(p, cursor + 1);
+            cursor++;
+        } else {
+            // 重播本轮已播放的歌曲：移到当前位置，之前的当前歌曲成为上一首
+            relocate(p, cursor);
+        }
+    }
+
+    /**
+     * 把指定歌曲安排为随机顺序中的下一首，本轮其余顺序不变
+     */
+    public void placeNext(int index) {
+        if (cursor < 0 || index < 0 || index >= size) {
+            return;
+        }
+        Object key = keyAt.apply(index);
+        Integer position = positionOf.get(key);
+        if (position == null || key.equals(order[cursor])) {
+            return;
+        }
+        int p = fix(position);
+        if (p > cursor) {
+            relocate(p, cursor + 1);
+        } else {
+            // 本轮已播放过：移到当前歌曲之后，游标跟随当前歌曲
+            relocate(p, cursor);
+            cursor--;
+        }
+    }
+
+    /**
+     * 队列在指定位置插入了一首歌曲，新歌曲加入本轮尚未抽取的部分，O(1)
+     */
+    public void onInserted(int index) {
+        if (size == order.length) {
+            order = Arrays.copyOf(order, Math.max(16, size * 2));
+        }
+        Object key = keyAt.apply(index);
+        order[size] = key;
+        positionOf.put(key, size);
+        size++;
+        lastBackwardPeek = null;
+    }
+
+    /**
+     * 队列移除了指定键的歌曲
+     * 移除的是当前歌曲时，游标退到前一位置，下一首即原来的下一首。
+     * 未抽取部分的顺序无关紧要，用末尾的歌曲填补空位；已确定部分只移动被移除位置之后的歌曲
+     *
+     * @param key 被移除歌曲的键
+     */
+    public void onRemoved(Object key) {
+        Integer position = positionOf.remove(key);
+        if (position == null) {
+            return;
+        }
+        int p = position;
+        int hole = p;
+        if (p < generated) {
+            System.arraycopy(order, p + 1, order, p, generated - p - 1);
+            for (int k = p; k < generated - 1; k++) {
+                positionOf.put(order[k], k);
+            }
+            generated--;
+            hole = generated;
+            if (p <= cursor) {
+                cursor--;
+            }
+        }
+        int last = size - 1;
+        if (hole != last) {
+            order[hole] = order[last];
+            positionOf.put(order[hole], hole);
+        }
+        order[last] = null;
+        size--;
+
+        if (key.equals(nextCycleFirst)) {
+            nextCycleFirst = null;
+        }
+        removeFromHistory(key);
+        lastBackwardPeek = null;
+    }
+
+    /**
+     * 队列把歌曲从一个位置移动到另一个位置
+     * 排列保存的是歌曲键，移动不改变排列
+     */
+    public void onMoved(int from, int to) {
+        lastBackwardPeek = null;
+    }
+
+    /**
+     * 抽取排列直到指定位置，每个位置只在第一次用到时抽取
+     */
+    private void ensureGenerated(int position) {
+        while (generated <= position) {
+            swap(generated, generated + random.nextInt(size - generated));
+            generated++;
+        }
+    }
+
+    private Object peekNextCycleFirst() {
+        if (nextCycleFirst == null) {
+            if (size == 1 || cursor < 0) {
+                nextCycleFirst = order[random.nextInt(size)];
+            } else {
+                // 避免新一轮立即重复刚播放的歌曲
+                int candidate = random.nextInt(size - 1);
+                nextCycleFirst = order[candidate >= cursor ? candidate + 1 : candidate];
+            }
+        }
+        return nextCycleFirst;
+    }
+
+    /**
+     * 以指定歌曲开始新的一轮
+     */
+    private void startCycle(Object first) {
+        generated = 0;
+        swap(0, positionOf.get(first));
+        generated = 1;
+        cursor = 0;
+        nextCycleFirst = null;
+    }
+
+    /**
+     * 本轮结束时把最近播放的歌曲按顺序存入历史缓冲区
+     */
+    private void archiveCycle() {
+        for (int k = Math.max(0, size - HISTORY_CAPACITY); k < size; k++) {
+            history[historyHead] = order[k];
+            historyHead = (historyHead + 1) % HISTORY_CAPACITY;
+            historyCount = Math.min(historyCount + 1, HISTORY_CAPACITY);
+        }
+    }
+
+    private void popHistory() {
+        historyHead = (historyHead - 1 + HISTORY_CAPACITY) % HISTORY_CAPACITY;
+        history[historyHead] = null;
+        historyCount--;
+    }
+
+    /**
+     * 从历史缓冲区中删除指定歌曲，较早的记录依次后移，O(历史容量)
+     */
+    private void removeFromHistory(Object key) {
+        int kept = 0;
+        for (int k = 0; k < historyCount; k++) {
+            // 从最近一条向更早的记录遍历，保留的记录紧贴缓冲区头部存放
+            Object value = history[(historyHead - 1 - k + HISTORY_CAPACITY) % HISTORY_CAPACITY];
+            if (!key.equals(value)) {
+                history[(historyHead - 1 - kept + HISTORY_CAPACITY) % HISTORY_CAPACITY] = value;
+                kept++;
+            }
+        }
+        for (int k = kept; k < historyCount; k++) {
+            history[(historyHead - 1 - k + HISTORY_CAPACITY) % HISTORY_CAPACITY] = null;
+        }
+        historyCount = kept;
+    }
+
+    /**
+     * 确保指定位置的歌曲属于已确定的前缀，返回它的新位置
+     */
+    private int fix(int position) {
+        if (position >= generated) {
+            swap(position, generated);
+            position = generated;
+            generated++;
+        }
+        return position;
+    }
+
+    /**
+     * 把位置from的歌曲移到位置to，中间的歌曲顺移一位
+     */
+    private void relocate(int from, int to) {
+        Object value = order[from];
+        if (from < to) {
+            System.arraycopy(order, from + 1, order, from, to - from);
+        } else if (from > to) {
+            System.arraycopy(order, to, order, to + 1, from - to);
+        }
+        order[to] = value;
+        for (int k = Math.min(from, to); k <= Math.max(from, to); k++) {
+            positionOf.put(order[k], k);
+        }
+    }
+
+    private void swap(int a, int b) {
+        Object value = order[a];
+        order[a] = order[b];
+        order[b] = value;
+        positionOf.put(order[a], a);
+        positionOf.put(order[b], b);
+    }
+}
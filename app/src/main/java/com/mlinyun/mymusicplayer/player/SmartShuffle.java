@@ -0,0 +1,283 @@
+package com.mlinyun.mymusicplayer.player;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * 智能随机
+ * 按播放统计为每首歌曲计算权重，用别名表抽取下一首：完整听完次数多的歌曲更容易被选中，
+ * 经常被跳过的歌曲和最近刚播放过的歌曲被选中的机会降低，但不会完全排除。
+ * 抽样为O(1)；某首歌曲的统计变化时只增量更新它所在的块。
+ * 别名表的槽位按歌曲ID对应，与队列位置无关：插入时在末尾追加槽位，移除时用末尾槽位填补，
+ * 移动不改变槽位，每次编辑只需重建一两个块。
+ * 历史按歌曲ID记录，上一首沿历史回退，不受队列编辑影响
+ */
+public class SmartShuffle {
+
+    // 最近播放惩罚的恢复时间常数(小时)：刚播放过权重接近0，约一天后基本恢复
+    private static final double RECENCY_HOURS = 8;
+
+    // 最小权重，保证每首歌曲都有机会
+    private static final double MIN_WEIGHT = 0.02;
+
+    // 权重随时间推移而变化，超过该时间后整体重建一次
+    private static final long REFRESH_INTERVAL_MS = 30 * 60 * 1000;
+
+    // 抽到当前歌曲时的重抽次数
+    private static final int MAX_REDRAWS = 8;
+
+    private static final int HISTORY_CAPACITY = 100;
+
+    private final Random random = new Random();
+    private final AliasSampler sampler = new AliasSampler();
+    private PlayStatsStore statsStore;
+
+    // 不参与抽取的歌曲(如已隔离的坏文件)，权重为0
+    private Predicate<Song> exclusionFilter;
+
+    private boolean tablesValid = false;
+    private long tablesBuiltAt = 0;
+
+    // 别名表槽位与歌曲ID的对应关系
+    private final List<String> slotIds = new ArrayList<>();
+    private final Map<String, Integer> slotOf = new HashMap<>();
+
+    // 已抽取但尚未播放的下一首(歌曲ID)，当前歌曲改变前保持不变，排队的下一首和实际播放的一致
+    private String pendingNext;
+
+    // 播放历史(歌曲ID)，环形缓冲区
+    private final String[] history = new String[HISTORY_CAPACITY];
+    private int historyHead = 0;
+    private int historyCount = 0;
+    private int lastBackwardPeek = -1;
+
+    public void setStatsStore(PlayStatsStore statsStore) {
+        this.statsStore = statsStore;
+        invalidate();
+    }
+
+    public void setExclusionFilter(Predicate<Song> exclusionFilter) {
+        this.exclusionFilter = exclusionFilter;
+        invalidate();
+    }
+
+    /**
+     * 队列整体替换或权重整体变化后调用，权重表在下一次抽样前整体重建
+     */
+    public void invalidate() {
+        tablesValid = false;
+        pendingNext = null;
+        lastBackwardPeek = -1;
+    }
+
+    /**
+     * 队列插入了一首歌曲，在别名表末尾追加它的槽位
+     */
+    public void onInserted(Song song) {
+        lastBackwardPeek = -1;
+        if (!tablesValid) {
+            return;
+        }
+        slotOf.put(song.getId(), slotIds.size());
+        slotIds.add(song.getId());
+        sampler.append(weightOf(song, System.currentTimeMillis()));
+    }
+
+    /**
+     * 队列移除了一首歌曲，用末尾的槽位填补它的槽位
+     */
+    public void onRemoved(Song song) {
+        lastBackwardPeek = -1;
+        if (song.getId().equals(pendingNext)) {
+            pendingNext = null;
+        }
+        if (!tablesValid) {
+            return;
+        }
+        Integer slot = slotOf.remove(song.getId());
+        if (slot == null) {
+            return;
+        }
+        int last = slotIds.size() - 1;
+        if (slot != last) {
+            String moved = slotIds.get(last);
+            slotIds.set(slot, moved);
+            slotOf.put(moved, slot);
+            sampler.update(slot, sampler.weightAt(last));
+        }
+        slotIds.remove(last);
+        sampler.removeLast();
+    }
+
+    /**
+     * 队列移动了一首歌曲，槽位不变，只需丢弃按位置记录的回退方向
+     */
+    public void onMoved() {
+        lastBackwardPeek = -1;
+    }
+
+    /**
+     * 某首歌曲的统计或排除状态变化后增量更新它的权重
+     * 已抽好的下一首变为排除时丢弃，下一次查看时重新抽取
+     */
+    public void onStatsChanged(Song song) {
+        if (song.getId().equals(pendingNext) && isExcluded(song)) {
+            pendingNext = null;
+        }
+        if (!tablesValid) {
+            return;
+        }
+        Integer slot = slotOf.get(song.getId());
+        if (slot != null) {
+            sampler.update(slot, weightOf(song, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * 查看下一首，同一当前歌曲下多次调用返回相同结果
+     *
+     * @param queue   播放队列
+     * @param current 当前歌曲索引，-1表示没有
+     * @return 下一首的索引，队列为空时返回-1
+     */
+    public int peekNext(PlayQueue queue, int current) {
+        if (queue.isEmpty()) {
+            return -1;
+        }
+        int pending = pendingNext != null ? queue.indexOf(pendingNext) : -1;
+        if (pending >= 0) {
+            return pending;
+        }
+        ensureTables(queue.getSongs());
+        Integer currentSlot = current >= 0 && current < queue.size() ? slotOf.get(queue.get(current).getId()) : null;
+        int candidate = -1;
+        for (int i = 0; i < MAX_REDRAWS && (candidate < 0 || currentSlot != null && candidate == currentSlot); i++) {
+            candidate = sampler.sample(random);
+        }
+        int next = candidate >= 0 ? queue.indexOf(slotIds.get(candidate)) : -1;
+        if (next < 0 || (next == current && queue.size() > 1)) {
+            // 总权重为0或反复抽到当前歌曲时，按列表顺序取下一首未被排除的歌曲
+            next = nextIncluded(queue, current);
+        }
+        pendingNext = queue.get(next).getId();
+        return next;
+    }
+
+    /**
+     * 按列表顺序查找当前歌曲之后第一首未被排除的歌曲，全部被排除时返回当前歌曲之后的一首
+     */
+    private int nextIncluded(PlayQueue queue, int current) {
+        int size = queue.size();
+        for (int i = 1; i <= size; i++) {
+            int index = ((current + i) % size + size) % size;
+            if (index != current && !isExcluded(queue.get(index))) {
+                return index;
+            }
+        }
+        return ((current + 1) % size + size) % size;
+    }
+
+    private boolean isExcluded(Song song) {
+        return exclusionFilter != null && exclusionFilter.test(song);
+    }
+
+    /**
+     * 指定下一首，用于"下一首播放"
+     */
+    public void setPendingNext(Song song) {
+        pendingNext = song != null ? song.getId() : null;
+    }
+
+    /**
+     * 查看上一首：历史中最近一首仍在队列中的歌曲
+     *
+     * @return 上一首的索引，没有历史时返回-1
+     */
+    public int peekPrevious(PlayQueue queue) {
+        while (historyCount > 0) {
+            int index = queue.indexOf(history[(historyHead - 1 + HISTORY_CAPACITY) % HISTORY_CAPACITY]);
+            if (index >= 0) {
+                lastBackwardPeek = index;
+                return index;
+            }
+            // 已从队列中移除的歌曲直接丢弃
+            popHistory();
+        }
+        return -1;
+    }
+
+    /**
+     * 当前歌曲改变：回退到上一首时弹出历史，其他情况把原来的歌曲加入历史
+     *
+     * @param queue 播放队列
+     * @param from  原来的当前歌曲索引
+     * @param to    新的当前歌曲索引
+     */
+    public void moveTo(PlayQueue queue, int from, int to) {
+        if (from == to) {
+            return;
+        }
+        if (to == lastBackwardPeek && historyCount > 0
+                && to == queue.indexOf(history[(historyHead - 1 + HISTORY_CAPACITY) % HISTORY_CAPACITY])) {
+            popHistory();
+        } else if (from >= 0 && from < queue.size()) {
+            history[historyHead] = queue.get(from).getId();
+            historyHead = (historyHead + 1) % HISTORY_CAPACITY;
+            historyCount = Math.min(historyCount + 1, HISTORY_CAPACITY);
+        }
+        pendingNext = null;
+        lastBackwardPeek = -1;
+    }
+
+    private void popHistory() {
+        historyHead = (historyHead - 1 + HISTORY_CAPACITY) % HISTORY_CAPACITY;
+        history[historyHead] = null;
+        historyCount--;
+    }
+
+    private void ensureTables(List<Song> songs) {
+        long now = System.currentTimeMillis();
+        if (tablesValid && sampler.size() == songs.size() && now - tablesBuiltAt < REFRESH_INTERVAL_MS) {
+            return;
+        }
+        // 整体重建时槽位按队列顺序重新分配
+        slotIds.clear();
+        slotOf.clear();
+        double[] weights = new double[songs.size()];
+        int i = 0;
+        for (Song song : songs) {
+            slotOf.put(song.getId(), i);
+            slotIds.add(song.getId());
+            weights[i++] = weightOf(song, now);
+        }
+        sampler.build(weights, weights.length);
+        tablesValid = true;
+        tablesBuiltAt = now;
+    }
+
+    /**
+     * 计算歌曲权重
+     * 偏好 = (1 + 0.25·ln(1 + 完整播放次数)) × (1.5 - 跳过率)，跳过率带先验(从未播放时为0.5)；
+     * 再乘以最近播放惩罚 1 - e^(-距上次播放小时数 / RECENCY_HOURS)
+     */
+    private double weightOf(Song song, long now) {
+        if (isExcluded(song)) {
+            return 0;
+        }
+        PlayStatsStore.PlayStats stats = statsStore != null ? statsStore.get(song.getId()) : null;
+        if (stats == null) {
+            return 1.0;
+        }
+        double skipRate = (stats.skipCount + 1.0) / (stats.playCount + 2.0);
+        double affinity = 1.0 + 0.25 * Math.log1p(Math.max(0, stats.playCount - stats.skipCount));
+        double hours = Math.max(0, now - stats.lastPlayedAt) / 3_600_000.0;
+        double recency = 1.0 - Math.exp(-hours / RECENCY_HOURS);
+        return Math.max(MIN_WEIGHT, affinity * (1.5 - skipRate) * recency);
+    }
+}
@@ -0,0 +1,79 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 数据源准备流水线
+ * 在后台线程解析歌曲路径并打开文件，播放器线程只接收结果。
+ * 打开文件本身即可确认文件存在且可读，不再单独检查；文件长度取自已打开的描述符
+ */
+public class SourcePreparer {
+    private static final String TAG = "SourcePreparer";
+
+    /**
+     * 数据源准备结果回调，在创建SourcePreparer的线程(播放器线程)执行
+     */
+    public interface Callback {
+        /**
+         * @param source 已打开的数据源，失败时为null
+         * @param error  失败原因，成功时为null
+         */
+        void onSourceReady(PreparedSource source, String error);
+    }
+
+    private final Handler callbackHandler = new Handler(Looper.myLooper());
+
+    // 单线程执行，切歌路径上的打开操作按提交顺序完成
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SourcePreparer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 在后台打开歌曲文件
+     *
+     * @param song     歌曲
+     * @param callback 结果回调
+     */
+    public void open(Song song, Callback callback) {
+        String path = song.getPath();
+        executor.execute(() -> {
+            PreparedSource source = null;
+            String error = null;
+            try {
+                File file = new File(path);
+                ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+                source = new PreparedSource(path, Uri.fromFile(file), descriptor, descriptor.getStatSize());
+            } catch (FileNotFoundException e) {
+                Log.e(TAG, "文件不存在或无法读取: " + path, e);
+                error = "文件不存在或无法访问: " + path;
+            } catch (Exception e) {
+                Log.e(TAG, "打开文件失败: " + path, e);
+                error = "文件无法读取: " + path;
+            }
+
+            final PreparedSource result = source;
+            final String message = error;
+            callbackHandler.post(() -> callback.onSourceReady(result, message));
+        });
+    }
+
+    /**
+     * 释放后台线程
+     */
+    public void release() {
+        executor.shutdownNow();
+    }
+}
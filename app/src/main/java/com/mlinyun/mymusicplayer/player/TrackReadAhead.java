@@ -0,0 +1,231 @@
+package com.mlinyun.mymusicplayer.player;
+
+import android.os.Process;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 曲目预读
+ * 播放期间在低优先级I/O线程上读取接下来可能播放的歌曲的开头和结尾区域，
+ * 并通过posix_fadvise提示内核预读，使切歌时容器解析和首批数据直接命中页缓存，
+ * 减少SD卡等慢速存储上的冷启动等待。同时统计预读的字节数和命中率
+ */
+public class TrackReadAhead {
+    private static final String TAG = "TrackReadAhead";
+
+    // 读取的开头区域大小，覆盖ID3标签、容器头和最初几秒的音频数据
+    private static final int HEAD_BYTES = 512 * 1024;
+
+    // 读取的结尾区域大小，覆盖ID3v1/APE标签以及放在文件末尾的MP4 moov
+    private static final int TAIL_BYTES = 128 * 1024;
+
+    // 请求后延迟开始预读(毫秒)，让当前歌曲自己的首批读取先完成
+    private static final int START_DELAY_MS = 3000;
+
+    // 记录最近预读过的文件数，用于统计命中率
+    private static final int MAX_WARMED_FILES = 32;
+
+    /**
+     * 预读统计的快照
+     */
+    public static final class Stats {
+        public final int filesRead;
+        public final long bytesRead;
+        public final long readTimeMs;
+        public final int hits;
+        public final int misses;
+
+        Stats(int filesRead, long bytesRead, long readTimeMs, int hits, int misses) {
+            this.filesRead = filesRead;
+            this.bytesRead = bytesRead;
+            this.readTimeMs = readTimeMs;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        /**
+         * 命中率：开始播放的歌曲中事先已被预读的比例
+         */
+        public float getHitRate() {
+            int total = hits + misses;
+            return total == 0 ? 0f : (float) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "预读文件: " + filesRead + ", 字节: " + bytesRead / 1024 + "KB, 耗时: " + readTimeMs
+                    + "ms, 命中: " + hits + "/" + (hits + misses);
+        }
+    }
+
+    // 单线程最低优先级执行，只在空闲时占用存储带宽
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+            r.run();
+        }, "TrackReadAhead");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 最近预读过的文件及预读时的修改时间，按访问顺序淘汰
+    private final Map<String, Long> warmedFiles = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_WARMED_FILES;
+        }
+    };
+
+    private ScheduledFuture<?> pendingTask;
+
+    // 统计数据，在预读线程和调用线程之间共享
+    private int filesRead = 0;
+    private long bytesRead = 0;
+    private long readTimeMs = 0;
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * 预读一组歌曲，取代尚未开始的上一次请求
+     *
+     * @param paths 音频文件路径，按可能性从高到低排列
+     */
+    public synchronized void readAhead(List<String> paths) {
+        if (pendingTask != null) {
+            pendingTask.cancel(false);
+        }
+        List<String> targets = new ArrayList<>(paths);
+        try {
+            pendingTask = executor.schedule(() -> {
+                for (String path : targets) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    warm(path);
+                }
+            }, START_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.w(TAG, "提交预读任务失败", e);
+        }
+    }
+
+    /**
+     * 记录一次开始播放，用于统计命中率
+     *
+     * @param path 开始播放的文件路径
+     */
+    public synchronized void recordPlayback(String path) {
+        if (path == null) {
+            return;
+        }
+        Long modified = warmedFiles.get(path);
+        if (modified != null && modified == new File(path).lastModified()) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    /**
+     * 获取预读统计
+     */
+    public synchronized Stats getStats() {
+        return new Stats(filesRead, bytesRead, readTimeMs, hits, misses);
+    }
+
+    /**
+     * 停止预读线程
+     */
+    public void release() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 读取单个文件的开头和结尾区域，已预读且未修改的文件跳过
+     */
+    private void warm(String path) {
+        File file = new File(path);
+        long modified = file.lastModified();
+        synchronized (this) {
+            Long warmed = warmedFiles.get(path);
+            if (warmed != null && warmed == modified) {
+                return;
+            }
+        }
+        if (!file.isFile() || !file.canRead()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long read = 0;
+        try (FileInputStream input = new FileInputStream(file);
+             FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+            long headLength = Math.min(size, HEAD_BYTES);
+            long tailStart = Math.max(headLength, size - TAIL_BYTES);
+
+            // 提示内核异步预读两段区域，再顺序读取一遍，确保不支持提示的文件系统上也能进入页缓存
+            adviseWillNeed(input, 0, headLength);
+            adviseWillNeed(input, tailStart, size - tailStart);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            read += readRegion(channel, buffer, 0, headLength);
+            read += readRegion(channel, buffer, tailStart, size);
+        } catch (IOException e) {
+            Log.w(TAG, "预读失败: " + path, e);
+            return;
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        synchronized (this) {
+            warmedFiles.put(path, modified);
+            filesRead++;
+            bytesRead += read;
+            readTimeMs += elapsed;
+        }
+        Log.d(TAG, "已预读: " + path + ", " + read / 1024 + "KB, 耗时: " + elapsed + "ms");
+    }
+
+    private void adviseWillNeed(FileInputStream input, long offset, long length) {
+        if (length <= 0) {
+            return;
+        }
+        try {
+            Os.posix_fadvise(input.getFD(), offset, length, OsConstants.POSIX_FADV_WILLNEED);
+        } catch (Exception e) {
+            // 部分文件系统(如FUSE挂载的外部存储)不支持，读取本身仍然有效
+            Log.d(TAG, "posix_fadvise不可用: " + e.getMessage());
+        }
+    }
+
+    private long readRegion(FileChannel channel, ByteBuffer buffer, long start, long end) throws IOException {
+        long position = start;
+        while (position < end && !Thread.currentThread().isInterrupted()) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            int count = channel.read(buffer, position);
+            if (count <= 0) {
+                break;
+            }
+            position += count;
+        }
+        return position - start;
+    }
+}
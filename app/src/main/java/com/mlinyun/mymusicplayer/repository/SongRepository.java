@@ -99,7 +99,8 @@ public class SongRepository {
                 MediaStore.Audio.Media.ALBUM,
                 MediaStore.Audio.Media.DURATION,
                 MediaStore.Audio.Media.DATA,
-                MediaStore.Audio.Media.ALBUM_ID
+                MediaStore.Audio.Media.ALBUM_ID,
+                MediaStore.Audio.Media.SIZE
         };
 
         try (Cursor cursor = contentResolver.query(uri, projection, selection, null, sortOrder)) {
@@ -111,6 +112,7 @@ public class SongRepository {
                 int durationColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
                 int pathColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
                 int albumIdColumn = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_ID);
+                int sizeColumn = cursor.getColumnIndex(MediaStore.Audio.Media.SIZE);
 
                 do {                    // 从游标中提取字段
                     String id = cursor.getString(idColumn);
@@ -134,6 +136,9 @@ public class SongRepository {
 
                     // 创建歌曲对象并添加到缓存中
                     Song song = new Song(id, title, artist, album, duration, path, albumArtUri);
+                    if (sizeColumn != -1) {
+                        song.setSize(cursor.getLong(sizeColumn));
+                    }
                     songCache.put(id, song);
 
                 } while (cursor.moveToNext());
@@ -375,7 +380,8 @@ public class SongRepository {
                 MediaStore.Audio.Media.ALBUM,
                 MediaStore.Audio.Media.DURATION,
                 MediaStore.Audio.Media.DATA,
-                MediaStore.Audio.Media.ALBUM_ID
+                MediaStore.Audio.Media.ALBUM_ID,
+                MediaStore.Audio.Media.SIZE
         };
 
         try (Cursor cursor = contentResolver.query(uri, projection, selection, selectionArgs, sortOrder)) {
@@ -387,6 +393,7 @@ public class SongRepository {
                 int durationColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DURATION);
                 int pathColumn = cursor.getColumnIndex(MediaStore.Audio.Media.DATA);
                 int albumIdColumn = cursor.getColumnIndex(MediaStore.Audio.Media.ALBUM_ID);
+                int sizeColumn = cursor.getColumnIndex(MediaStore.Audio.Media.SIZE);
 
                 do {                    // 从游标中提取字段
                     String id = cursor.getString(idColumn);
@@ -411,6 +418,9 @@ public class SongRepository {
                     // 创建带搜索标记的歌曲对象
                     Song song = new Song(id, title, artist, album, duration, path, albumArtUri);
                     song.setSearchResult(true);
+                    if (sizeColumn != -1) {
+                        song.setSize(cursor.getLong(sizeColumn));
+                    }
 
                     // 检查该歌曲是否已在缓存中存在（表示已在播放列表中）
                     // 如果在缓存中不存在，则视为本地搜索结果
@@ -0,0 +1,78 @@
+package com.mlinyun.mymusicplayer.service;
+
+import com.mlinyun.mymusicplayer.model.Song;
+import com.mlinyun.mymusicplayer.player.PlayMode;
+import com.mlinyun.mymusicplayer.player.PlayerSnapshot;
+
+import java.util.List;
+
+/**
+ * 界面层使用的播放服务接口
+ * 服务与界面在同一进程时由MusicPlayerService直接实现；
+ * 在独立播放进程中运行时由RemotePlayerClient通过Binder转发
+ */
+public interface IPlayerService {
+
+    /**
+     * 添加播放回调，需在主线程调用，回调在主线程执行
+     */
+    void addCallback(MusicPlayerService.PlayerCallback callback);
+
+    void removeCallback(MusicPlayerService.PlayerCallback callback);
+
+    /**
+     * 获取最近的播放器状态快照，可以在任意线程读取
+     */
+    PlayerSnapshot getSnapshot();
+
+    void play();
+
+    void pause();
+
+    void togglePlayPause();
+
+    void playNext();
+
+    void playPrevious();
+
+    void stop();
+
+    void seekTo(int position);
+
+    void scrubTo(int position);
+
+    void endScrub(int position);
+
+    void setPlayMode(PlayMode mode);
+
+    void setCrossfadeDuration(int durationMs);
+
+    void setPowerSaverEnabled(boolean enabled);
+
+    void calibrateOutputLatency(int observedOffsetMs);
+
+    /**
+     * 在当前输出设备的延迟补偿上增加deltaMs，在命令线程上读取当前值，连续调整不会丢失
+     */
+    void adjustOutputLatency(int deltaMs);
+
+    int getOutputLatencyOffset();
+
+    void setPlaylist(List<Song> songs);
+
+    void addSong(Song song);
+
+    void addSongAndPlay(Song song);
+
+    void playSong(Song song);
+
+    void playSongNext(Song song);
+
+    void playAtIndex(int index);
+
+    void removeSongAtIndex(int position);
+
+    void moveSong(int from, int to);
+
+    void clearPlaylist();
+}
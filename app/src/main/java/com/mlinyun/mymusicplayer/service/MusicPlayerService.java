@@ -4,8 +4,10 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ServiceInfo;
 import android.os.Binder;
 import android.os.Build;
@@ -13,6 +15,8 @@ import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
+import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.util.Log;
 
@@ -24,19 +28,26 @@ import com.mlinyun.mymusicplayer.model.Song;
 import com.mlinyun.mymusicplayer.player.AudioFocusHandler;
 import com.mlinyun.mymusicplayer.player.MusicPlayerManager;
 import com.mlinyun.mymusicplayer.player.PlayMode;
+import com.mlinyun.mymusicplayer.player.PlayQueue;
+import com.mlinyun.mymusicplayer.player.PlayStatsStore;
+import com.mlinyun.mymusicplayer.player.PlayerCommandQueue;
+import com.mlinyun.mymusicplayer.player.PlayerSnapshot;
 import com.mlinyun.mymusicplayer.player.PlayerState;
+import com.mlinyun.mymusicplayer.player.RecoveryPolicy;
 import com.mlinyun.mymusicplayer.player.ServiceCallback;
+import com.mlinyun.mymusicplayer.player.TrackReadAhead;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * 音乐播放器服务类
  * 负责后台音乐播放，维持播放状态，处理通知栏控制
  * 实现为前台服务，保持长时间运行而不被系统回收
  */
-public class MusicPlayerService extends Service implements ServiceCallback {
+public class MusicPlayerService extends Service implements ServiceCallback, IPlayerService {
 
     private static final String TAG = "MusicPlayerService";
 
@@ -52,8 +63,14 @@ public class MusicPlayerService extends Service implements ServiceCallback {
     // 服务绑定器
     private final IBinder binder = new MusicBinder();
 
-    // 播放器管理器
-    private MusicPlayerManager musicPlayerManager;
+    // 播放器命令队列：播放引擎、播放队列和播放状态只在命令线程上访问，公开的控制方法都提交到这里执行
+    private final PlayerCommandQueue commands = new PlayerCommandQueue();
+
+    // 界面回调统一在主线程执行
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 播放器管理器，在命令线程上创建和访问；其他线程只可判空后读取预读统计等线程安全的部分
+    private volatile MusicPlayerManager musicPlayerManager;
 
     // 音频焦点处理器
     private AudioFocusHandler audioFocusHandler;
@@ -73,23 +90,66 @@ public class MusicPlayerService extends Service implements ServiceCallback {
     private Handler progressHandler;
     private Runnable progressRunnable;
 
-    // 播放列表相关
-    private List<Song> playlist = new ArrayList<>();
-    private int currentPosition = -1;
-    private PlayMode playMode = PlayMode.SEQUENCE;
+    // 播放队列：歌曲列表、当前位置和播放模式的唯一来源
+    private final PlayQueue queue = new PlayQueue();
 
-    // 回调列表，用于通知UI状态变化
-    private List<PlayerCallback> callbacks = new ArrayList<>();
-    // 唤醒锁，防止CPU休眠导致播放中断
-    private PowerManager.WakeLock wakeLock;
+    // 回调列表，用于通知UI状态变化，仅在主线程访问
+    private final List<PlayerCallback> callbacks = new ArrayList<>();
 
-    // 错误计数器，用于防止播放错误时的无限递归
-    private int errorCounter = 0;
-    private static final int MAX_ERROR_COUNT = 3; // 最大连续错误次数
+    // 播放错误恢复策略：退避、失败计分和坏文件隔离
+    private RecoveryPolicy recoveryPolicy;
+
+    // 播放统计，供智能随机计算权重；记录过开始播放的最近一首歌曲，暂停后继续不重复计数
+    private static final int SKIP_THRESHOLD_MS = 30000;
+    private PlayStatsStore playStats;
+    private String lastCountedSongId;
 
     // 焦点丢失前是否在播放
     private boolean wasPlayingBeforeFocusLoss = false;
 
+    // 无缝播放相关：是否启用，以及已排队到引擎中的下一首在播放列表中的位置
+    private volatile boolean gaplessEnabled = true;
+    private int queuedNextPosition = -1;
+
+    // 最近一次查找可播放歌曲时越过的已隔离歌曲数，以及排队的下一首越过的数目；
+    // 切歌实际生效时才计入避免的准备次数，只是查看候选歌曲时不计入
+    private int lastSkippedQuarantined = 0;
+    private int queuedSkippedQuarantined = 0;
+
+    // 淡入淡出时长(毫秒)，0表示关闭
+    private volatile int crossfadeDurationMs = 0;
+
+    // 省电模式：屏幕关闭时停止进度更新等界面相关的工作
+    private volatile boolean powerSaverEnabled = false;
+    private boolean isScreenOff = false;
+    private BroadcastReceiver screenStateReceiver;
+
+    // 当前播放引擎的音频会话ID，由引擎事件推送
+    private volatile int audioSessionId = 0;
+
+    // 命令线程最近发布的状态快照，其他线程只读取快照，不直接访问绑定在命令线程上的引擎和队列
+    private final AtomicReference<PlayerSnapshot> snapshot = new AtomicReference<>(PlayerSnapshot.EMPTY);
+
+    // 快速切歌合并：窗口期内的多次上一首/下一首只准备最终目标
+    private static final int SKIP_COALESCE_MS = 250;
+    private final Handler skipHandler = new Handler(commands.getLooper());
+    private boolean isSkipPending = false;
+    private final Runnable recoverySkipRunnable = () -> {
+        Log.d("MusicPlayerService", "退避结束，跳到下一首");
+        playNext();
+    };
+    private final Runnable commitSkipRunnable = () -> {
+        isSkipPending = false;
+        Log.d("MusicPlayerService", "切歌窗口结束，开始准备目标歌曲: " + queue.getCurrentIndex());
+        play();
+    };
+
+    // 切歌过渡期的唤醒锁：引擎开始播放后由引擎自身的唤醒模式保持CPU运行，
+    // 但切歌合并窗口、错误退避和异步打开文件期间引擎没有在播放，需要由服务短暂持有；
+    // 每次获取都设置超时，即使过渡没有走到播放或停止也会自动释放
+    private static final long TRANSITION_WAKE_LOCK_TIMEOUT_MS = 10000;
+    private PowerManager.WakeLock transitionWakeLock;
+
     /**
      * 服务创建时的初始化
      */
@@ -104,6 +164,10 @@ public class MusicPlayerService extends Service implements ServiceCallback {
             notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
             createNotificationChannel();
 
+            PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+            transitionWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "MusicPlayer:Transition");
+            transitionWakeLock.setReferenceCounted(false);
+
             // 初始化专用的通知管理器
             playerNotificationManager = new PlayerNotificationManager(this);
             // 初始化播放器管理器，根据Android版本选择合适的播放器引擎
@@ -117,9 +181,23 @@ public class MusicPlayerService extends Service implements ServiceCallback {
                 engineType = MusicPlayerManager.PlayerEngineType.MEDIA_PLAYER;
                 Log.d("MusicPlayerService", "使用MediaPlayer播放引擎");
             }
-            musicPlayerManager = new MusicPlayerManager(this, engineType);
-            musicPlayerManager.initialize();
-            musicPlayerManager.setServiceCallback(this);
+            // 播放引擎绑定到命令线程，在该线程上创建；之后提交的命令都排在初始化之后执行
+            commands.submit(() -> {
+                try {
+                    musicPlayerManager = new MusicPlayerManager(this, engineType);
+                    musicPlayerManager.initialize();
+                    musicPlayerManager.setServiceCallback(this);
+                    recoveryPolicy = new RecoveryPolicy(this);
+                    playStats = new PlayStatsStore(this);
+                    queue.setPlayStatsStore(playStats);
+                    queue.setExclusionFilter(recoveryPolicy::isQuarantined);
+                    // 队列的每次变化以增量事件通知回调
+                    queue.setOnQueueChangedListener(change ->
+                            notifyCallbacks(callback -> callback.onQueueChanged(change)));
+                } catch (Exception e) {
+                    Log.e(TAG, "初始化播放器失败: " + e.getMessage(), e);
+                }
+            });
 
             // 初始化媒体会话
             initMediaSession();
@@ -133,57 +211,73 @@ public class MusicPlayerService extends Service implements ServiceCallback {
             audioFocusHandler = new AudioFocusHandler(this, new AudioFocusHandler.AudioFocusCallback() {
                 @Override
                 public void onAudioFocusGained(boolean wasPlayingBeforeLoss) {
-                    if (musicPlayerManager != null && wasPlayingBeforeLoss) {
-                        musicPlayerManager.play();
-                    }
+                    commands.submit(() -> {
+                        if (musicPlayerManager != null && wasPlayingBeforeLoss) {
+                            musicPlayerManager.play();
+                        }
+                    });
                 }
 
                 @Override
                 public void onAudioFocusLost() {
-                    if (musicPlayerManager != null && musicPlayerManager.getState() == PlayerState.PLAYING) {
-                        wasPlayingBeforeFocusLoss = true;
-                        musicPlayerManager.pause();
-                    }
+                    commands.submit(() -> {
+                        if (musicPlayerManager != null && musicPlayerManager.getState() == PlayerState.PLAYING) {
+                            wasPlayingBeforeFocusLoss = true;
+                            musicPlayerManager.pause();
+                        }
+                    });
                 }
 
                 @Override
                 public void onAudioFocusLostTransient() {
-                    if (musicPlayerManager != null && musicPlayerManager.getState() == PlayerState.PLAYING) {
-                        wasPlayingBeforeFocusLoss = true;
-                        musicPlayerManager.pause();
-                    }
+                    commands.submit(() -> {
+                        if (musicPlayerManager != null && musicPlayerManager.getState() == PlayerState.PLAYING) {
+                            wasPlayingBeforeFocusLoss = true;
+                            musicPlayerManager.pause();
+                        }
+                    });
                 }
 
                 @Override
                 public void onAudioFocusLostTransientCanDuck() {
                     // 可以降低音量而不暂停
-                    if (musicPlayerManager != null) {
-                        musicPlayerManager.setVolume(0.3f);
-                    }
+                    commands.submit(() -> {
+                        if (musicPlayerManager != null) {
+                            musicPlayerManager.setVolume(0.3f);
+                        }
+                    });
                 }
             });
 
-            // 初始化进度更新
-            progressHandler = new Handler(Looper.getMainLooper());
+            // 初始化进度更新，在命令线程上读取引擎位置
+            progressHandler = new Handler(commands.getLooper());
             progressRunnable = new Runnable() {
                 @Override
                 public void run() {
                     if (musicPlayerManager != null &&
                             musicPlayerManager.getState() == PlayerState.PLAYING) {
-                        int position = musicPlayerManager.getCurrentPosition();
+                        // 使用扣除输出延迟后的呈现位置，保证歌词与听到的声音同步
+                        int position = musicPlayerManager.getPresentationPosition();
 
                         // 通知位置变化
-                        for (PlayerCallback callback : callbacks) {
-                            callback.onPositionChanged(position);
-                        }
+                        notifyCallbacks(callback -> callback.onPositionChanged(position));
                     }
                     progressHandler.postDelayed(this, UPDATE_INTERVAL);
                 }
             };
 
-            // 获取唤醒锁
-            PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "MusicPlayer:WakeLock");
+            // 监听屏幕开关，省电模式下屏幕关闭时暂停进度更新
+            screenStateReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    boolean screenOff = Intent.ACTION_SCREEN_OFF.equals(intent.getAction());
+                    commands.submit(() -> onScreenStateChanged(screenOff));
+                }
+            };
+            IntentFilter screenFilter = new IntentFilter();
+            screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+            screenFilter.addAction(Intent.ACTION_SCREEN_ON);
+            registerReceiver(screenStateReceiver, screenFilter);
         } catch (Exception e) {
             e.printStackTrace();
             // 处理初始化异常，确保服务可以正常启动
@@ -233,29 +327,40 @@ public class MusicPlayerService extends Service implements ServiceCallback {
      */
     @Override
     public void onDestroy() {
-        if (progressHandler != null) {
-            progressHandler.removeCallbacks(progressRunnable);
-        }
+        // 不再向界面发送回调
+        callbacks.clear();
+        mainHandler.removeCallbacksAndMessages(null);
 
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
+        if (screenStateReceiver != null) {
+            unregisterReceiver(screenStateReceiver);
         }
 
         if (mediaSession != null) {
             mediaSession.release();
         }
 
-        if (audioFocusHandler != null) {
-            audioFocusHandler.abandonAudioFocus();
-        }
-
         if (playerNotificationManager != null) {
             playerNotificationManager.cancelNotification();
         }
 
-        if (musicPlayerManager != null) {
-            musicPlayerManager.release();
-        }
+        // 在命令线程上执行完已提交的命令后释放播放器，然后结束命令线程
+        commands.submit(() -> {
+            if (progressHandler != null) {
+                progressHandler.removeCallbacks(progressRunnable);
+            }
+            skipHandler.removeCallbacks(commitSkipRunnable);
+            skipHandler.removeCallbacks(recoverySkipRunnable);
+
+            if (audioFocusHandler != null) {
+                audioFocusHandler.abandonAudioFocus();
+            }
+
+            if (musicPlayerManager != null) {
+                musicPlayerManager.release();
+            }
+            releaseTransitionWakeLock();
+        });
+        commands.quit();
 
         super.onDestroy();
     }
@@ -316,7 +421,8 @@ public class MusicPlayerService extends Service implements ServiceCallback {
                 }
             };
 
-            mediaSession.setCallback(mediaSessionCallback);
+            // 媒体按钮等外部控制直接在命令线程上回调
+            mediaSession.setCallback(mediaSessionCallback, new Handler(commands.getLooper()));
 
             // 设置通知管理器的媒体会话令牌
             if (playerNotificationManager != null && mediaSession != null) {
@@ -440,9 +546,7 @@ public class MusicPlayerService extends Service implements ServiceCallback {
                     Log.e("MusicPlayerService", "前台服务错误: " + e.getMessage(), e);
 
                     // 通知回调发生错误
-                    for (PlayerCallback callback : callbacks) {
-                        callback.onError(e);
-                    }
+                    notifyCallbacks(callback -> callback.onError(e));
                 }
             }
         } catch (Exception e) {
@@ -492,9 +596,7 @@ public class MusicPlayerService extends Service implements ServiceCallback {
             } catch (Exception ex) {
                 ex.printStackTrace();
 
-                for (PlayerCallback callback : callbacks) {
-                    callback.onError(ex);
-                }
+                notifyCallbacks(callback -> callback.onError(ex));
             }
         }
     }
@@ -542,232 +644,510 @@ public class MusicPlayerService extends Service implements ServiceCallback {
     /**
      * 播放方法
      */
+    @Override
     public void play() {
-        // 安全检查：如果错误计数已经达到最大值，不要继续尝试播放
-        if (errorCounter >= MAX_ERROR_COUNT) {
-            return;
-        }
-
-        if (currentPosition >= 0 && currentPosition < playlist.size()) {
-            if (!audioFocusHandler.requestAudioFocus()) {
-                return;  // 无法获取音频焦点，不播放
-            }
+        commands.submit(() -> {
+            // 直接播放会取代尚未提交的切歌请求和等待中的错误恢复
+            cancelPendingSkip();
+            skipHandler.removeCallbacks(recoverySkipRunnable);
+
+            if (queue.hasCurrent()) {
+                if (!audioFocusHandler.requestAudioFocus()) {
+                    return;  // 无法获取音频焦点，不播放
+                }
+                // 打开文件和准备在引擎开始播放前完成，期间由过渡唤醒锁保持CPU运行
+                holdTransitionWakeLock();
 
-            Song song = playlist.get(currentPosition);
+                Song song = queue.getCurrentSong();
+                updateMediaSessionMetadata(song);
 
-            // 先创建通知并启动前台服务，然后再播放音乐
-            // 这样可以确保前台服务已经启动，避免权限问题
-            updateNotification(song, PlayerState.PLAYING);
+                // 先创建通知并启动前台服务，然后再播放音乐
+                // 这样可以确保前台服务已经启动，避免权限问题
+                updateNotification(song, PlayerState.PLAYING);
 
-            // 然后播放音乐
-            musicPlayerManager.prepareAndPlay(song);
+                // 然后播放音乐
+                musicPlayerManager.prepareAndPlay(song);
 
-            wakeLock.acquire(3600000); // 获取一小时的唤醒锁
-            startProgressUpdates();
-        } else if (!playlist.isEmpty()) {
-            currentPosition = 0;
-            play();
-        }
+                startProgressUpdates();
+            } else if (!queue.isEmpty()) {
+                queue.setCurrentIndex(0);
+                play();
+            }
+        });
     }
 
     /**
      * 继续播放
      */
     public void resume() {
-        if (!audioFocusHandler.requestAudioFocus()) {
-            return;
-        }
+        commands.submit(() -> {
+            if (!audioFocusHandler.requestAudioFocus()) {
+                return;
+            }
 
-        // 先更新通知并启动前台服务
-        updateNotification(getCurrentSong(), PlayerState.PLAYING);
+            // 先更新通知并启动前台服务
+            updateNotification(resolveCurrentSong(), PlayerState.PLAYING);
 
-        // 然后播放音乐
-        musicPlayerManager.play();
+            // 然后播放音乐
+            musicPlayerManager.play();
 
-        wakeLock.acquire(3600000);
-        startProgressUpdates();
+            startProgressUpdates();
+        });
     }
 
     /**
      * 暂停播放
      */
+    @Override
     public void pause() {
-        musicPlayerManager.pause();
-        if (wakeLock.isHeld()) {
-            wakeLock.release();
-        }
-        updateNotification(getCurrentSong(), PlayerState.PAUSED);
+        commands.submit(() -> {
+            musicPlayerManager.pause();
+            updateNotification(resolveCurrentSong(), PlayerState.PAUSED);
+        });
+    }
+
+    /**
+     * 播放或暂停
+     * 在命令线程上根据当前状态决定，连续点击时每次都基于上一次命令执行后的状态
+     */
+    @Override
+    public void togglePlayPause() {
+        commands.submit(() -> {
+            if (musicPlayerManager.getState() == PlayerState.PLAYING) {
+                pause();
+            } else if (resolveCurrentSong() != null) {
+                // 如果当前有歌曲，则恢复播放，否则从头开始播放
+                resume();
+            } else if (!queue.isEmpty()) {
+                playAtIndex(0);
+            }
+        });
     }
 
     /**
      * 播放下一首
      */
+    @Override
     public void playNext() {
-        if (playlist.isEmpty()) return;
+        commands.submit(() -> {
+            if (queue.isEmpty()) return;
 
-        // 安全检查：如果错误计数已经达到最大值，不要继续尝试播放
-        if (errorCounter >= MAX_ERROR_COUNT) {
-            return;
-        }
+            recordSkipIfEarly();
 
-        int nextPosition;
-        switch (playMode) {
-            case SHUFFLE:
-                Random random = new Random();
-                nextPosition = random.nextInt(playlist.size());
-                break;
-            case LOOP:
-                nextPosition = (currentPosition + 1) % playlist.size();
-                break;
-            case SINGLE_LOOP:
-                // 单曲循环模式下，仍然允许用户手动切换到下一首
-                nextPosition = (currentPosition + 1) % playlist.size();
-                break;
-            default: // SEQUENCE
-                nextPosition = currentPosition + 1;
-                if (nextPosition >= playlist.size()) {
-                    nextPosition = 0; // 循环回到第一首
+            int nextPosition;
+            switch (queue.getPlayMode()) {
+                case SHUFFLE:
+                case SMART_SHUFFLE:
+                    // 随机顺序中的下一首，一轮内不重复；沿随机顺序跳过已隔离的坏文件
+                    nextPosition = findPlayableShuffled(1);
+                    break;
+                case LOOP:
+                    nextPosition = (queue.getCurrentIndex() + 1) % queue.size();
+                    break;
+                case SINGLE_LOOP:
+                    // 单曲循环模式下，仍然允许用户手动切换到下一首
+                    nextPosition = (queue.getCurrentIndex() + 1) % queue.size();
+                    break;
+                default: // SEQUENCE
+                    nextPosition = queue.getCurrentIndex() + 1;
+                    if (nextPosition >= queue.size()) {
+                        nextPosition = 0; // 循环回到第一首
+                    }
+                    break;
+            }
+
+            if (!queue.isShuffleMode()) {
+                // 额外的安全检查，确保位置有效
+                if (nextPosition < 0 || nextPosition >= queue.size()) {
+                    nextPosition = 0;
                 }
-                break;
-        }
 
-        // 额外的安全检查，确保位置有效
-        if (nextPosition < 0 || nextPosition >= playlist.size()) {
-            nextPosition = 0;
-        }
+                // 跳过已隔离的坏文件
+                nextPosition = findPlayablePosition(nextPosition, 1);
+            }
+            if (nextPosition < 0) {
+                Log.w("MusicPlayerService", "播放列表中没有可播放的歌曲");
+                return;
+            }
 
-        currentPosition = nextPosition;
-        play();
+            queue.setCurrentIndex(nextPosition);
+            recoveryPolicy.recordAvoidedPrepares(lastSkippedQuarantined);
+            scheduleSkip();
 
-        // 通知回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onSongChanged(getCurrentSong());
-        }
+            // 通知回调
+            notifySongChanged();
+        });
     }
 
     /**
      * 播放上一首
      */
+    @Override
     public void playPrevious() {
-        if (playlist.isEmpty()) return;
+        commands.submit(() -> {
+            if (queue.isEmpty()) return;
 
-        // 安全检查：如果错误计数已经达到最大值，不要继续尝试播放
-        if (errorCounter >= MAX_ERROR_COUNT) {
-            return;
-        }
+            // 当处于单曲循环模式并且不是从头开始时，只重置当前歌曲到开始位置
+            if (queue.getPlayMode() == PlayMode.SINGLE_LOOP && !isSkipPending && musicPlayerManager.getCurrentPosition() > 3000) {
+                musicPlayerManager.seekTo(0);
+                return;
+            }
 
-        // 当处于单曲循环模式并且不是从头开始时，只重置当前歌曲到开始位置
-        if (playMode == PlayMode.SINGLE_LOOP && musicPlayerManager.getCurrentPosition() > 3000) {
-            musicPlayerManager.seekTo(0);
-            return;
-        }
+            int prevPosition;
+            switch (queue.getPlayMode()) {
+                case SHUFFLE:
+                case SMART_SHUFFLE:
+                    // 沿随机播放历史回退，没有历史时从头播放当前歌曲
+                    if (queue.getShuffledIndex(-1) < 0) {
+                        musicPlayerManager.seekTo(0);
+                        return;
+                    }
+                    prevPosition = findPlayableShuffled(-1);
+                    break;
+                case LOOP:
+                    prevPosition = (queue.getCurrentIndex() - 1 + queue.size()) % queue.size();
+                    break;
+                case SINGLE_LOOP:
+                    // 单曲循环模式下，仍然允许用户手动切换到上一首
+                    prevPosition = (queue.getCurrentIndex() - 1 + queue.size()) % queue.size();
+                    break;
+                default: // SEQUENCE
+                    prevPosition = queue.getCurrentIndex() - 1;
+                    if (prevPosition < 0) {
+                        prevPosition = queue.size() - 1; // 循环到最后一首
+                    }
+                    break;
+            }
 
-        int prevPosition;
-        switch (playMode) {
-            case SHUFFLE:
-                Random random = new Random();
-                prevPosition = random.nextInt(playlist.size());
-                break;
-            case LOOP:
-                prevPosition = (currentPosition - 1 + playlist.size()) % playlist.size();
-                break;
-            case SINGLE_LOOP:
-                // 单曲循环模式下，仍然允许用户手动切换到上一首
-                prevPosition = (currentPosition - 1 + playlist.size()) % playlist.size();
-                break;
-            default: // SEQUENCE
-                prevPosition = currentPosition - 1;
-                if (prevPosition < 0) {
-                    prevPosition = playlist.size() - 1; // 循环到最后一首
+            if (!queue.isShuffleMode()) {
+                // 额外的安全检查，确保位置有效
+                if (prevPosition < 0 || prevPosition >= queue.size()) {
+                    prevPosition = 0;
                 }
-                break;
+
+                // 跳过已隔离的坏文件
+                prevPosition = findPlayablePosition(prevPosition, -1);
+            }
+            if (prevPosition < 0) {
+                Log.w("MusicPlayerService", "播放列表中没有可播放的歌曲");
+                return;
+            }
+
+            // 更新当前位置并播放
+            queue.setCurrentIndex(prevPosition);
+            recoveryPolicy.recordAvoidedPrepares(lastSkippedQuarantined);
+            scheduleSkip();
+
+            // 通知回调
+            notifySongChanged();
+        });
+    }
+
+    /**
+     * 延迟提交切歌
+     * 立即停止当前播放并取消进行中的准备，同步更新媒体会话显示的目标歌曲，
+     * 窗口期内再次切歌会重新计时，窗口结束后只准备最终目标
+     */
+    private void scheduleSkip() {
+        musicPlayerManager.cancelPendingPrepare();
+        queuedNextPosition = -1;
+        isSkipPending = true;
+        holdTransitionWakeLock();
+
+        updateMediaSessionMetadata(resolveCurrentSong());
+
+        skipHandler.removeCallbacks(commitSkipRunnable);
+        skipHandler.postDelayed(commitSkipRunnable, SKIP_COALESCE_MS);
+    }
+
+    /**
+     * 在切歌过渡期间持有唤醒锁，重复获取会重新开始计时
+     */
+    private void holdTransitionWakeLock() {
+        if (transitionWakeLock != null) {
+            transitionWakeLock.acquire(TRANSITION_WAKE_LOCK_TIMEOUT_MS);
         }
+    }
 
-        // 额外的安全检查，确保位置有效
-        if (prevPosition < 0 || prevPosition >= playlist.size()) {
-            prevPosition = 0;
+    private void releaseTransitionWakeLock() {
+        if (transitionWakeLock != null && transitionWakeLock.isHeld()) {
+            transitionWakeLock.release();
         }
+    }
 
-        // 更新当前位置并播放
-        currentPosition = prevPosition;
-        play();
+    /**
+     * 取消尚未提交的切歌
+     */
+    private void cancelPendingSkip() {
+        if (isSkipPending) {
+            skipHandler.removeCallbacks(commitSkipRunnable);
+            isSkipPending = false;
+        }
+    }
 
-        // 通知回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onSongChanged(getCurrentSong());
+    /**
+     * 更新媒体会话中的歌曲信息，供锁屏、蓝牙设备等外部控制器显示
+     */
+    private void updateMediaSessionMetadata(Song song) {
+        if (mediaSession == null || song == null) {
+            return;
+        }
+
+        try {
+            mediaSession.setMetadata(new MediaMetadataCompat.Builder()
+                    .putString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID, song.getId())
+                    .putString(MediaMetadataCompat.METADATA_KEY_TITLE, song.getTitle())
+                    .putString(MediaMetadataCompat.METADATA_KEY_ARTIST, song.getArtist())
+                    .putString(MediaMetadataCompat.METADATA_KEY_ALBUM, song.getAlbum())
+                    .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, song.getDuration())
+                    .build());
+        } catch (Exception e) {
+            Log.e("MusicPlayerService", "更新媒体会话信息失败: " + e.getMessage(), e);
         }
     }
 
     /**
      * 停止播放
      */
+    @Override
     public void stop() {
-        musicPlayerManager.stop();
-
-        if (wakeLock.isHeld()) {
-            wakeLock.release();
-        }
+        commands.submit(() -> {
+            cancelPendingSkip();
+            musicPlayerManager.stop();
 
-        stopForegroundService();
+            stopForegroundService();
+        });
     }
 
     /**
      * 跳转到指定位置
      */
+    @Override
     public void seekTo(int position) {
-        musicPlayerManager.seekTo(position);
+        commands.submit(() -> {
+            musicPlayerManager.seekTo(position);
+        });
+    }
+
+    /**
+     * 拖动进度条时的预览定位，频繁调用也只会执行最新的目标位置
+     */
+    @Override
+    public void scrubTo(int position) {
+        commands.submit(() -> {
+            musicPlayerManager.scrubTo(position);
+        });
+    }
+
+    /**
+     * 结束拖动并精确定位到最终位置
+     */
+    @Override
+    public void endScrub(int position) {
+        commands.submit(() -> {
+            musicPlayerManager.endScrub(position);
+        });
     }
 
     /**
      * 获取当前播放位置
+     * 在命令线程上直接读取引擎，其他线程按快照的位置锚点推算
      */
     public int getCurrentPosition() {
-        return musicPlayerManager.getCurrentPosition();
+        return commands.isCommandThread() ? musicPlayerManager.getCurrentPosition() : snapshot.get().getPosition();
+    }
+
+    /**
+     * 获取用户实际听到的播放位置（已补偿输出设备延迟）
+     * 在命令线程上直接读取引擎，其他线程按快照的位置锚点推算
+     */
+    public int getPresentationPosition() {
+        return commands.isCommandThread() ? musicPlayerManager.getPresentationPosition() : snapshot.get().getPosition();
+    }
+
+    /**
+     * 校准当前输出设备的延迟补偿，传入的值直接生效
+     *
+     * @param observedOffsetMs 声音相对引擎位置的滞后量(毫秒)
+     */
+    @Override
+    public void calibrateOutputLatency(int observedOffsetMs) {
+        commands.submit(() -> {
+            musicPlayerManager.calibrateOutputLatency(observedOffsetMs);
+            publishSnapshot();
+        });
+    }
+
+    /**
+     * 在当前输出设备的延迟补偿上增加指定的毫秒数
+     *
+     * @param deltaMs 增加的滞后量(毫秒)，可以为负数
+     */
+    @Override
+    public void adjustOutputLatency(int deltaMs) {
+        commands.submit(() -> {
+            musicPlayerManager.calibrateOutputLatency(musicPlayerManager.getOutputLatencyOffset() + deltaMs);
+            publishSnapshot();
+        });
+    }
+
+    /**
+     * 获取当前输出设备的延迟补偿值(毫秒)
+     */
+    @Override
+    public int getOutputLatencyOffset() {
+        return snapshot.get().getOutputLatencyOffset();
+    }
+
+    /**
+     * 获取曲目预读的统计数据(预读字节数、耗时和命中率)
+     */
+    public TrackReadAhead.Stats getReadAheadStats() {
+        // 预读统计本身是同步的，可以在任意线程读取；播放器尚未初始化时没有统计
+        MusicPlayerManager manager = musicPlayerManager;
+        return manager != null ? manager.getReadAheadStats() : null;
     }
 
     /**
      * 获取当前歌曲总时长
      */
     public int getDuration() {
-        return musicPlayerManager.getDuration();
+        return commands.isCommandThread() ? musicPlayerManager.getDuration() : snapshot.get().getDuration();
     }
 
     /**
      * 设置播放模式
      */
+    @Override
     public void setPlayMode(PlayMode mode) {
-        this.playMode = mode;
+        commands.submit(() -> {
+            queue.setPlayMode(mode);
+            publishSnapshot();
+            // 播放模式变化会影响下一首的选择，重新排队
+            refreshQueuedSuccessor();
+        });
+    }
+
+    /**
+     * 设置是否启用无缝播放
+     */
+    public void setGaplessEnabled(boolean enabled) {
+        this.gaplessEnabled = enabled;
+        commands.submit(this::refreshQueuedSuccessor);
+    }
+
+    /**
+     * 设置切歌时的淡入淡出时长
+     * 开启后下一首会在备用引擎上提前准备，并在当前歌曲结束前开始交叉渐变
+     *
+     * @param durationMs 渐变时长(毫秒)，0表示关闭
+     */
+    @Override
+    public void setCrossfadeDuration(int durationMs) {
+        this.crossfadeDurationMs = Math.max(0, durationMs);
+        commands.submit(() -> {
+            musicPlayerManager.setCrossfadeDuration(crossfadeDurationMs);
+            refreshQueuedSuccessor();
+        });
+    }
+
+    /**
+     * 获取淡入淡出时长(毫秒)
+     */
+    public int getCrossfadeDuration() {
+        return crossfadeDurationMs;
+    }
+
+    /**
+     * 设置省电模式
+     * 开启后播放引擎在设备支持时使用音频卸载，屏幕关闭期间停止进度更新和界面回调
+     *
+     * @param enabled 是否开启省电模式
+     */
+    @Override
+    public void setPowerSaverEnabled(boolean enabled) {
+        this.powerSaverEnabled = enabled;
+        commands.submit(() -> {
+            musicPlayerManager.setPowerSaving(enabled);
+            applyScreenState();
+        });
+    }
+
+    /**
+     * 是否开启了省电模式
+     */
+    public boolean isPowerSaverEnabled() {
+        return powerSaverEnabled;
+    }
+
+    /**
+     * 屏幕开关状态变化
+     */
+    private void onScreenStateChanged(boolean screenOff) {
+        Log.d("MusicPlayerService", "屏幕状态变化: " + (screenOff ? "关闭" : "打开"));
+        isScreenOff = screenOff;
+        applyScreenState();
+    }
+
+    /**
+     * 根据省电模式和屏幕状态暂停或恢复进度更新
+     */
+    private void applyScreenState() {
+        boolean suspended = isProgressSuspended();
+        musicPlayerManager.setUiSuspended(suspended);
+        if (suspended) {
+            stopProgressUpdates();
+        } else if (musicPlayerManager.getState() == PlayerState.PLAYING) {
+            // 恢复时立即推送一次当前位置，界面不需要等下一个周期
+            startProgressUpdates();
+        }
+    }
+
+    /**
+     * 是否暂停进度更新：仅在省电模式且屏幕关闭时
+     */
+    private boolean isProgressSuspended() {
+        return powerSaverEnabled && isScreenOff;
+    }
+
+    /**
+     * 是否启用无缝播放
+     */
+    public boolean isGaplessEnabled() {
+        return gaplessEnabled;
     }
 
     /**
      * 获取当前播放模式
      */
     public PlayMode getPlayMode() {
-        return playMode;
+        return snapshot.get().getPlayMode();
     }
 
     /**
      * 设置播放列表
      */
+    @Override
     public void setPlaylist(List<Song> songs) {
-        this.playlist = songs;
-
-        // 通知回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onPlaylistChanged(playlist);
-        }
+        // 复制一份，调用方之后修改原列表不影响排队中的命令
+        List<Song> copy = songs != null ? new ArrayList<>(songs) : new ArrayList<>();
+        commands.submit(() -> {
+            queue.setSongs(copy);
+            refreshQueuedSuccessor();
+            // 按播放列表中常见的格式提前预热解码器
+            musicPlayerManager.warmDecodersFor(copy);
+        });
     }
 
     /**
      * 添加歌曲到播放列表
      */
+    @Override
     public void addSong(Song song) {
-        playlist.add(song);
-
-        // 通知回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onPlaylistChanged(playlist);
-        }
+        commands.submit(() -> {
+            queue.add(song);
+            refreshQueuedSuccessor();
+        });
     }
 
     /**
@@ -775,17 +1155,15 @@ public class MusicPlayerService extends Service implements ServiceCallback {
      *
      * @param song 要添加并播放的歌曲
      */
+    @Override
     public void addSongAndPlay(Song song) {
-        // 添加歌曲到列表
-        playlist.add(song);
-
-        // 播放新添加的歌曲（在列表末尾）
-        playAtIndex(playlist.size() - 1);
+        commands.submit(() -> {
+            // 添加歌曲到列表，已在列表中时沿用原位置
+            int index = queue.add(song);
 
-        // 通知回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onPlaylistChanged(playlist);
-        }
+            // 播放新添加的歌曲
+            playAtIndex(index);
+        });
     }
 
     /**
@@ -793,75 +1171,95 @@ public class MusicPlayerService extends Service implements ServiceCallback {
      *
      * @param position 要移除的歌曲位置
      */
+    @Override
     public void removeSongAtIndex(int position) {
-        if (position < 0 || position >= playlist.size()) {
-            return;
-        }
+        commands.submit(() -> {
+            if (position < 0 || position >= queue.size()) {
+                return;
+            }
 
-        // 判断是否是当前播放的歌曲
-        boolean isCurrentSong = (position == currentPosition);
+            // 判断是否是当前播放的歌曲
+            boolean isCurrentSong = (position == queue.getCurrentIndex());
 
-        // 移除歌曲
-        playlist.remove(position);
+            // 移除歌曲，队列会同步修正当前位置
+            queue.remove(position);
 
-        // 如果移除的是当前播放的歌曲，则播放下一首
-        if (isCurrentSong) {
-            if (playlist.isEmpty()) {
-                // 播放列表为空，停止播放
-                stop();
-                currentPosition = -1;
-            } else if (position < playlist.size()) {
-                // 继续播放当前位置的下一首歌
-                currentPosition = position;
-                play();
+            // 如果移除的是当前播放的歌曲，则播放下一首（删除最后一首时从列表头开始）
+            if (isCurrentSong) {
+                if (queue.isEmpty()) {
+                    // 播放列表为空，停止播放
+                    stop();
+                } else {
+                    play();
+                }
             } else {
-                // 如果删除的是最后一首，从列表头开始播放
-                currentPosition = 0;
-                play();
+                refreshQueuedSuccessor();
             }
-        } else if (position < currentPosition) {
-            // 如果移除的歌曲在当前播放歌曲之前，需要调整currentPosition
-            currentPosition--;
-        }
-
-        // 通知播放列表已变化
-        for (PlayerCallback callback : callbacks) {
-            callback.onPlaylistChanged(playlist);
-        }
+        });
     }
 
     /**
      * 清空播放列表
      */
+    @Override
     public void clearPlaylist() {
-        // 先停止播放
-        stop();
+        commands.submit(() -> {
+            // 先停止播放
+            stop();
+
+            // 清空播放列表并重置播放位置
+            queue.clear();
+            queuedNextPosition = -1;
+        });
+    }
 
-        // 清空播放列表并重置播放位置
-        playlist.clear();
-        currentPosition = -1;
+    /**
+     * 移动播放列表中的歌曲，当前播放位置跟随当前歌曲
+     *
+     * @param from 原位置
+     * @param to   新位置
+     */
+    @Override
+    public void moveSong(int from, int to) {
+        commands.submit(() -> {
+            if (!queue.move(from, to) || from == to) {
+                return;
+            }
+            refreshQueuedSuccessor();
+        });
+    }
 
-        // 通知播放列表已变化
-        for (PlayerCallback callback : callbacks) {
-            callback.onPlaylistChanged(playlist);
-        }
+    /**
+     * 把歌曲安排在当前歌曲之后播放，已在列表中的歌曲会被移过去
+     *
+     * @param song 要下一首播放的歌曲
+     */
+    @Override
+    public void playSongNext(Song song) {
+        commands.submit(() -> {
+            if (song == null) return;
+
+            queue.insertNext(song);
+            refreshQueuedSuccessor();
+        });
     }
 
     /**
      * 播放指定索引的歌曲
      */
+    @Override
     public void playAtIndex(int index) {
-        if (index < 0 || index >= playlist.size()) return;
+        commands.submit(() -> {
+            if (index < 0 || index >= queue.size()) return;
 
-        // 每次手动播放时重置错误计数器
-        errorCounter = 0;
-        currentPosition = index;
-        play();
+            // 每次手动播放时重置错误退避，用户明确选择的歌曲即使已隔离也尝试播放
+            recoveryPolicy.resetBackoff();
+            queue.setCurrentIndex(index);
+            play();
 
-        // 通知回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onSongChanged(getCurrentSong());
-        }
+            // 通知回调
+            notifySongChanged();
+        });
     }
 
     /**
@@ -869,45 +1267,57 @@ public class MusicPlayerService extends Service implements ServiceCallback {
      *
      * @param song 要播放的歌曲对象
      */
+    @Override
     public void playSong(Song song) {
-        if (song == null) return;
-
-        // 检查歌曲是否已在播放列表中
-        int songIndex = -1;
-        for (int i = 0; i < playlist.size(); i++) {
-            if (playlist.get(i).getId().equals(song.getId())) {
-                songIndex = i;
-                break;
+        commands.submit(() -> {
+            if (song == null) return;
+
+            // 检查歌曲是否已在播放列表中
+            int songIndex = queue.indexOf(song.getId());
+
+            // 如果歌曲在播放列表中，直接播放
+            if (songIndex != -1) {
+                playAtIndex(songIndex);
+            } else if (song.isSearchResult()) {
+                // 搜索结果直接播放而不添加到播放列表
+                queue.setCurrentIndex(-1); // 表示当前播放的歌曲不在播放列表中
+                musicPlayerManager.prepareAndPlay(song);
+
+                // 通知回调当前播放歌曲已变化
+                notifyCallbacks(callback -> callback.onSongChanged(song));
+            } else {
+                // 如果歌曲不在播放列表中且不是搜索结果，添加到播放列表并播放
+                addSongAndPlay(song);
             }
-        }
-
-        // 如果歌曲在播放列表中，直接播放
-        if (songIndex != -1) {
-            playAtIndex(songIndex);
-        } else if (song.isSearchResult()) {
-            // 搜索结果直接播放而不添加到播放列表
-            currentPosition = -1; // 表示当前播放的歌曲不在播放列表中
-            musicPlayerManager.prepareAndPlay(song);
 
-            // 通知回调当前播放歌曲已变化
-            for (PlayerCallback callback : callbacks) {
-                callback.onSongChanged(song);
-            }
-        } else {
-            // 如果歌曲不在播放列表中且不是搜索结果，添加到播放列表并播放
-            addSongAndPlay(song);
-        }
+            // 在播放新歌曲时重置错误退避
+            recoveryPolicy.resetBackoff();
+        });
+    }
 
-        // 在播放新歌曲时重置错误计数器
-        errorCounter = 0;
+    /**
+     * 获取最近发布的播放器状态快照
+     * 快照不可变，可以在任意线程读取；同一份快照中的各项状态彼此一致，
+     * 需要同时读取多项状态时应使用快照，而不是分别调用各个getter
+     */
+    @Override
+    public PlayerSnapshot getSnapshot() {
+        return snapshot.get();
     }
 
     /**
      * 获取当前歌曲
      */
     public Song getCurrentSong() {
-        if (currentPosition >= 0 && currentPosition < playlist.size()) {
-            return playlist.get(currentPosition);
+        return snapshot.get().getCurrentSong();
+    }
+
+    /**
+     * 在命令线程上读取当前歌曲
+     */
+    private Song resolveCurrentSong() {
+        if (queue.hasCurrent()) {
+            return queue.getCurrentSong();
         } else if (musicPlayerManager != null) {
             // 如果当前播放歌曲不在播放列表中（如搜索结果），
             // 则直接从播放器管理器获取当前歌曲
@@ -920,27 +1330,263 @@ public class MusicPlayerService extends Service implements ServiceCallback {
      * 获取当前播放索引
      */
     public int getCurrentIndex() {
-        return currentPosition;
+        return snapshot.get().getCurrentIndex();
     }
 
     /**
-     * 获取播放列表
+     * 获取播放列表，返回最近发布的快照中的不可修改列表
      */
     public List<Song> getPlaylist() {
-        return playlist;
+        return snapshot.get().getQueue();
+    }
+
+    /**
+     * 获取歌曲在播放列表中的位置
+     *
+     * @param songId 歌曲ID
+     * @return 位置，不在列表中时返回-1
+     */
+    public int indexOfSong(String songId) {
+        return commands.isCommandThread() ? queue.indexOf(songId) : indexInSnapshot(songId);
+    }
+
+    /**
+     * 歌曲是否已在播放列表中
+     */
+    public boolean containsSong(Song song) {
+        return song != null && indexOfSong(song.getId()) >= 0;
+    }
+
+    private int indexInSnapshot(String songId) {
+        if (songId == null) {
+            return -1;
+        }
+        List<Song> songs = snapshot.get().getQueue();
+        for (int i = 0; i < songs.size(); i++) {
+            if (songId.equals(songs.get(i).getId())) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
      * 获取当前播放状态
      */
     public PlayerState getPlayerState() {
-        return musicPlayerManager.getState();
+        return snapshot.get().getState();
+    }
+
+    /**
+     * 根据播放模式计算当前歌曲自然播放结束后的下一首位置
+     *
+     * @return 下一首位置，无法确定时返回-1
+     */
+    private int computeAutoNextPosition() {
+        lastSkippedQuarantined = 0;
+        if (queue.isEmpty() || queue.getCurrentIndex() < 0 || queue.getCurrentIndex() >= queue.size()) {
+            return -1;
+        }
+
+        switch (queue.getPlayMode()) {
+            case SINGLE_LOOP:
+                return queue.getCurrentIndex();
+            case SHUFFLE:
+            case SMART_SHUFFLE:
+                return findPlayableShuffled(1);
+            case LOOP:
+            case SEQUENCE:
+            default:
+                return findPlayablePosition((queue.getCurrentIndex() + 1) % queue.size(), 1);
+        }
+    }
+
+    /**
+     * 从指定位置开始按方向查找第一首未被隔离的歌曲
+     * 隔离检查为O(1)，每跳过一首计为一次避免的准备
+     *
+     * @param start 起始位置
+     * @param step  查找方向，1为向后，-1为向前
+     * @return 可播放的位置，全部被隔离时返回-1
+     */
+    private int findPlayablePosition(int start, int step) {
+        if (start < 0) {
+            return -1;
+        }
+        lastSkippedQuarantined = 0;
+        int size = queue.size();
+        for (int i = 0; i < size; i++) {
+            int position = ((start + i * step) % size + size) % size;
+            if (!recoveryPolicy.isQuarantined(queue.get(position))) {
+                return position;
+            }
+            lastSkippedQuarantined++;
+        }
+        return -1;
+    }
+
+    /**
+     * 随机类模式下沿随机顺序查找第一首未被隔离的歌曲
+     * 随机模式逐个查看随机顺序中的后续(或之前的)歌曲，不按列表顺序；
+     * 智能随机只能前后各查看一首；选出的歌曲已被隔离时(如全部歌曲权重为0时的兜底)，改为按列表顺序查找
+     *
+     * @param step 1为向后查找，-1为沿历史向前查找
+     * @return 队列索引，没有可播放的歌曲时返回-1
+     */
+    private int findPlayableShuffled(int step) {
+        lastSkippedQuarantined = 0;
+        for (int offset = step; Math.abs(offset) <= queue.size(); offset += step) {
+            int position = queue.getShuffledIndex(offset);
+            if (position < 0) {
+                return -1;
+            }
+            if (!recoveryPolicy.isQuarantined(queue.get(position))) {
+                return position;
+            }
+            lastSkippedQuarantined++;
+            if (queue.getPlayMode() == PlayMode.SMART_SHUFFLE) {
+                int size = queue.size();
+                int found = findPlayablePosition(((position + step) % size + size) % size, step);
+                lastSkippedQuarantined++;
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 没有可播放的歌曲时停止播放，与恢复策略决定停止时的处理一致，不会回到第一首重试
+     */
+    private void stopWithoutPlayable() {
+        Log.w("MusicPlayerService", "播放列表中没有可播放的歌曲，停止播放");
+        stop();
+        queue.setCurrentIndex(-1);
+        publishSnapshot();
+    }
+
+    /**
+     * 记录一次开始播放，同一首歌曲暂停后继续播放不重复计数
+     * 播放统计和曲目预读的命中率都在这里记录
+     */
+    private void recordPlayStart(Song song) {
+        if (song == null || song.getId() == null || song.getId().equals(lastCountedSongId)) {
+            return;
+        }
+        lastCountedSongId = song.getId();
+        playStats.recordPlay(song.getId());
+        MusicPlayerManager manager = musicPlayerManager;
+        if (manager != null) {
+            manager.recordReadAheadPlayback(song);
+        }
+    }
+
+    /**
+     * 手动切到下一首时，若当前歌曲刚开始播放不久则记为跳过
+     */
+    private void recordSkipIfEarly() {
+        PlayerState state = musicPlayerManager.getState();
+        if (isSkipPending || (state != PlayerState.PLAYING && state != PlayerState.PAUSED)) {
+            return;
+        }
+        Song song = resolveCurrentSong();
+        int position = musicPlayerManager.getCurrentPosition();
+        if (song != null && position < SKIP_THRESHOLD_MS && position < musicPlayerManager.getDuration() / 2) {
+            playStats.recordSkip(song.getId());
+        }
+    }
+
+    /**
+     * 获取因坏文件隔离而避免的准备次数
+     */
+    public int getAvoidedPrepareCount() {
+        return snapshot.get().getAvoidedPrepareCount();
+    }
+
+    /**
+     * 清空坏文件隔离列表
+     */
+    public void clearQuarantine() {
+        commands.submit(() -> {
+            recoveryPolicy.clearQuarantine();
+            queue.refreshAllWeights();
+        });
+    }
+
+    /**
+     * 为当前歌曲排队下一首，使引擎可以提前准备实现无缝衔接
+     */
+    private void queueSuccessor() {
+        if (musicPlayerManager == null) {
+            return;
+        }
+        // 淡入淡出同样依赖提前排队的下一首
+        if (!gaplessEnabled && crossfadeDurationMs == 0) {
+            queuedNextPosition = -1;
+            musicPlayerManager.queueNext(null);
+        } else {
+            int next = computeAutoNextPosition();
+            queuedNextPosition = next;
+            queuedSkippedQuarantined = lastSkippedQuarantined;
+            musicPlayerManager.queueNext(next >= 0 ? queue.get(next) : null);
+        }
+        prefetchUpcomingHeads();
+    }
+
+    /**
+     * 预读并预解码接下来最可能播放的歌曲开头，手动切歌时可以立即出声
+     * 顺序类模式下为列表中的下一首和上一首，随机模式下为随机顺序中的下一首和上一首
+     */
+    private void prefetchUpcomingHeads() {
+        if (queue.isEmpty() || queue.getCurrentIndex() < 0 || queue.getCurrentIndex() >= queue.size()) {
+            return;
+        }
+
+        List<Song> upcoming = new ArrayList<>();
+        if (queuedNextPosition >= 0 && queuedNextPosition != queue.getCurrentIndex()) {
+            upcoming.add(queue.get(queuedNextPosition));
+        }
+        if (queue.size() > 1) {
+            int nextIndex;
+            int previousIndex;
+            if (queue.isShuffleMode()) {
+                nextIndex = queue.getShuffledIndex(1);
+                previousIndex = queue.getShuffledIndex(-1);
+            } else {
+                nextIndex = (queue.getCurrentIndex() + 1) % queue.size();
+                previousIndex = (queue.getCurrentIndex() - 1 + queue.size()) % queue.size();
+            }
+            for (int index : new int[]{nextIndex, previousIndex}) {
+                if (index >= 0 && index != queue.getCurrentIndex() && !upcoming.contains(queue.get(index))) {
+                    upcoming.add(queue.get(index));
+                }
+            }
+        }
+        musicPlayerManager.prefetchUpcoming(upcoming);
+    }
+
+    /**
+     * 播放列表或播放模式变化后重新排队下一首
+     * 仅在已有排队或当前歌曲正在播放时生效，避免在空闲状态下提前准备
+     */
+    private void refreshQueuedSuccessor() {
+        if (musicPlayerManager == null) {
+            return;
+        }
+        PlayerState state = musicPlayerManager.getState();
+        if (state == PlayerState.PLAYING || state == PlayerState.PAUSED || state == PlayerState.PREPARED) {
+            queueSuccessor();
+        } else {
+            queuedNextPosition = -1;
+        }
     }
 
     /**
      * 开始更新进度
      */
     private void startProgressUpdates() {
+        if (isProgressSuspended()) {
+            return;
+        }
         progressHandler.removeCallbacks(progressRunnable);
         progressHandler.post(progressRunnable);
     }
@@ -953,8 +1599,59 @@ public class MusicPlayerService extends Service implements ServiceCallback {
     }
 
     /**
-     * 添加播放回调
+     * 在命令线程上发布当前状态的快照
+     * 只有命令线程发布，队列未变化时沿用上一份快照的队列列表，不重复复制
+     */
+    private void publishSnapshot() {
+        if (musicPlayerManager == null) {
+            return;
+        }
+        try {
+            PlayerSnapshot previous = snapshot.get();
+            List<Song> songs = previous.getQueueVersion() == queue.getVersion()
+                    ? previous.getQueue()
+                    : queue.snapshotSongs();
+            snapshot.set(new PlayerSnapshot.Builder()
+                    .setState(musicPlayerManager.getState(), musicPlayerManager.isBuffering())
+                    .setQueue(songs, queue.getVersion())
+                    .setCurrent(queue.getCurrentIndex(), resolveCurrentSong())
+                    .setPlayMode(queue.getPlayMode())
+                    .setDuration(musicPlayerManager.getDuration())
+                    .setPositionAnchor(musicPlayerManager.getPresentationPosition(), SystemClock.elapsedRealtime())
+                    .setOutputLatencyOffset(musicPlayerManager.getOutputLatencyOffset())
+                    .setAvoidedPrepareCount(recoveryPolicy != null ? recoveryPolicy.getAvoidedPrepareCount() : 0)
+                    .build(previous.getVersion() + 1));
+        } catch (Exception e) {
+            Log.e(TAG, "发布播放器状态快照失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 在主线程上通知所有回调
+     * 从命令线程按顺序发出，回调的执行顺序与事件发生的顺序一致；
+     * 通知前先发布快照，回调中读取到的快照不会比该事件旧
+     */
+    private void notifyCallbacks(Consumer<PlayerCallback> event) {
+        publishSnapshot();
+        mainHandler.post(() -> {
+            for (PlayerCallback callback : callbacks) {
+                event.accept(callback);
+            }
+        });
+    }
+
+    /**
+     * 通知当前歌曲已变化
      */
+    private void notifySongChanged() {
+        Song song = resolveCurrentSong();
+        notifyCallbacks(callback -> callback.onSongChanged(song));
+    }
+
+    /**
+     * 添加播放回调，需在主线程调用
+     */
+    @Override
     public void addCallback(PlayerCallback callback) {
         if (!callbacks.contains(callback)) {
             callbacks.add(callback);
@@ -964,6 +1661,7 @@ public class MusicPlayerService extends Service implements ServiceCallback {
     /**
      * 移除播放回调
      */
+    @Override
     public void removeCallback(PlayerCallback callback) {
         callbacks.remove(callback);
     }
@@ -974,33 +1672,32 @@ public class MusicPlayerService extends Service implements ServiceCallback {
     @Override
     public void onPlaybackStateChanged(PlayerState state) {
         // 通知所有回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onPlayStateChanged(state);
-        }
+        notifyCallbacks(callback -> callback.onPlayStateChanged(state));
 
         // 根据状态更新服务
         if (state == PlayerState.PAUSED) {
             stopProgressUpdates();
-            if (wakeLock.isHeld()) {
-                wakeLock.release();
-            }
+            releaseTransitionWakeLock();
+        } else if (state == PlayerState.PREPARED) {
+            // 当前歌曲准备完成，提前排队下一首以实现无缝衔接
+            queueSuccessor();
         } else if (state == PlayerState.PLAYING) {
-            // 播放成功，重置错误计数器
-            errorCounter = 0;
+            // 播放成功，重置连续失败计数和该文件的失败分数
+            recoveryPolicy.onPlaybackStarted(resolveCurrentSong());
+            recordPlayStart(resolveCurrentSong());
             startProgressUpdates();
-            if (!wakeLock.isHeld()) {
-                wakeLock.acquire(3600000);
-            }
+            // 引擎已开始播放，由引擎的唤醒模式接管
+            releaseTransitionWakeLock();
         } else if (state == PlayerState.STOPPED || state == PlayerState.COMPLETED || state == PlayerState.ERROR) {
             stopProgressUpdates();
-            if (wakeLock.isHeld()) {
-                wakeLock.release();
-            }
             stopForegroundService();
+            if (state == PlayerState.STOPPED) {
+                releaseTransitionWakeLock();
+            }
         }
 
         // 更新通知
-        Song currentSong = getCurrentSong();
+        Song currentSong = resolveCurrentSong();
         if (currentSong != null) {
             updateNotification(currentSong, state);
         }
@@ -1011,55 +1708,104 @@ public class MusicPlayerService extends Service implements ServiceCallback {
         // 进度更新已在progressRunnable中处理
     }
 
+    @Override
+    public void onPositionDiscontinuity(int position) {
+        // 定位完成或衔接时立即同步进度，不必等下一次进度更新
+        notifyCallbacks(callback -> callback.onPositionChanged(position));
+    }
+
+    @Override
+    public void onBufferingChanged(boolean isBuffering) {
+        notifyCallbacks(callback -> callback.onBufferingChanged(isBuffering));
+    }
+
+    @Override
+    public void onAudioSessionIdChanged(int audioSessionId) {
+        Log.d(TAG, "音频会话ID改变: " + audioSessionId);
+        this.audioSessionId = audioSessionId;
+    }
+
+    /**
+     * 获取当前播放引擎的音频会话ID
+     *
+     * @return 音频会话ID，尚未获取时为0
+     */
+    public int getAudioSessionId() {
+        return audioSessionId;
+    }
+
     @Override
     public void onPlaybackCompleted() {
         // 如果播放列表为空，不执行任何操作
-        if (playlist.isEmpty()) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        holdTransitionWakeLock();
+
+        // 若已为无缝播放选好了下一首（排队失败时引擎仍会回调完成），沿用该选择保持一致
+        int queued = queuedNextPosition;
+        queuedNextPosition = -1;
+        if (queued >= 0 && queued < queue.size()) {
+            queue.setCurrentIndex(queued);
+            recoveryPolicy.recordAvoidedPrepares(queuedSkippedQuarantined);
+            play();
+            notifySongChanged();
             return;
         }
-
-        // 播放成功完成，重置错误计数器
-        errorCounter = 0;
 
         // 播放完成，根据播放模式决定下一步操作
-        switch (playMode) {
+        int next;
+        switch (queue.getPlayMode()) {
             case SINGLE_LOOP:
                 // 单曲循环，重新播放当前歌曲
                 musicPlayerManager.seekTo(0);
                 play();
-                break;
-            case LOOP:
-                // 列表循环，播放下一首
-                currentPosition = (currentPosition + 1) % playlist.size();
-                play();
-                break;
+                notifySongChanged();
+                return;
             case SHUFFLE:
-                // 随机播放，随机选择下一首
-                if (playlist.size() > 1) {
-                    // 避免随机到相同的歌曲
-                    int oldPosition = currentPosition;
-                    Random random = new Random();
-                    do {
-                        currentPosition = random.nextInt(playlist.size());
-                    } while (currentPosition == oldPosition && playlist.size() > 1);
-                } else {
-                    // 只有一首歌曲时简单重播
-                    currentPosition = 0;
-                }
-                play();
+            case SMART_SHUFFLE:
+                // 随机播放，播放随机顺序中下一首可播放的歌曲
+                next = findPlayableShuffled(1);
                 break;
+            case LOOP:
             case SEQUENCE:
             default:
-                // 顺序播放，播放下一首，如果已经是最后一首则循环到第一首
-                currentPosition = (currentPosition + 1) % playlist.size();
-                play();
+                // 顺序播放和列表循环，播放下一首，如果已经是最后一首则循环到第一首
+                next = findPlayablePosition((queue.getCurrentIndex() + 1) % queue.size(), 1);
                 break;
         }
 
+        if (next < 0) {
+            stopWithoutPlayable();
+            return;
+        }
+        queue.setCurrentIndex(next);
+        recoveryPolicy.recordAvoidedPrepares(lastSkippedQuarantined);
+        play();
+
         // 通知回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onSongChanged(getCurrentSong());
+        notifySongChanged();
+    }
+
+    @Override
+    public void onTrackTransition(Song song) {
+        // 引擎已无缝切换到排队的下一首，只需同步播放列表位置
+        if (queuedNextPosition >= 0 && queuedNextPosition < queue.size()) {
+            queue.setCurrentIndex(queuedNextPosition);
+            recoveryPolicy.recordAvoidedPrepares(queuedSkippedQuarantined);
         }
+        queuedNextPosition = -1;
+        recoveryPolicy.onPlaybackStarted(song);
+        recordPlayStart(song);
+
+        Log.d("MusicPlayerService", "无缝切换到下一首: " + song.getTitle());
+
+        notifySongChanged();
+        updateMediaSessionMetadata(resolveCurrentSong());
+        updateNotification(resolveCurrentSong(), PlayerState.PLAYING);
+
+        // 继续为新的当前歌曲排队下一首
+        queueSuccessor();
     }
 
     @Override
@@ -1067,68 +1813,66 @@ public class MusicPlayerService extends Service implements ServiceCallback {
         Log.d("MusicPlayerService", "收到媒体总时长更新: " + duration + "ms");
 
         // 通知所有回调
-        for (PlayerCallback callback : callbacks) {
-            callback.onDurationChanged(duration);
-        }
+        notifyCallbacks(callback -> callback.onDurationChanged(duration));
     }
 
     @Override
     public void onError(int errorCode, String errorMessage) {
-        errorCounter++;
+        Song failedSong = musicPlayerManager.getCurrentSong();
+        boolean canSwitchEngine = failedSong != null
+                && musicPlayerManager.getEngineType() != MusicPlayerManager.PlayerEngineType.EXO_PLAYER;
+        RecoveryPolicy.Decision decision = recoveryPolicy.onError(failedSong, errorCode, canSwitchEngine);
+        if (decision.action != RecoveryPolicy.Action.STOP) {
+            // 退避等待和切换引擎期间没有声音输出，保持CPU运行直到下一首开始播放
+            holdTransitionWakeLock();
+        }
+        if (failedSong != null && recoveryPolicy.isQuarantined(failedSong)) {
+            // 刚被隔离的歌曲不再被智能随机抽到
+            queue.refreshWeight(failedSong.getId());
+        }
 
         // 播放错误处理
         String errorMsg = "错误码: " + errorCode + ", 错误信息: " + errorMessage;
-        if (errorCounter >= MAX_ERROR_COUNT) {
+        if (decision.action == RecoveryPolicy.Action.STOP) {
             errorMsg += " (连续错误次数过多，停止播放)";
         }
         Log.e("MusicPlayerService", "播放错误: " + errorMsg);
         Exception error = new Exception(errorMsg);
 
         // 通知UI层发生了错误
-        for (PlayerCallback callback : callbacks) {
-            callback.onError(error);
-        }
-        // 根据错误类型采取不同策略
-        if (errorCode == -38) { // MediaPlayer特定错误，可能是文件格式不支持
-            Log.d("MusicPlayerService", "检测到MediaPlayer错误-38，建议切换到ExoPlayer播放引擎");
+        notifyCallbacks(callback -> callback.onError(error));
 
-            try {
-                // 重新初始化播放器管理器，使用ExoPlayer (支持Android 16 SDK 35)
-                Log.d("MusicPlayerService", "正在切换到ExoPlayer引擎");
-                musicPlayerManager.release();
-                musicPlayerManager = new MusicPlayerManager(this, MusicPlayerManager.PlayerEngineType.EXO_PLAYER);
-                musicPlayerManager.initialize();
-                musicPlayerManager.setServiceCallback(this);
-
-                // 如果有当前歌曲，尝试用新的播放器播放
-                if (currentPosition >= 0 && currentPosition < playlist.size()) {
-                    // 短暂延迟，确保播放器初始化完成
-                    new Handler().postDelayed(() -> {
-                        Log.d("MusicPlayerService", "使用ExoPlayer重新尝试播放当前歌曲");
-                        playSong(playlist.get(currentPosition));
-                    }, 500);
-                    return;
+        // 按恢复策略的决定处理
+        switch (decision.action) {
+            case SWITCH_ENGINE:
+                // MediaPlayer特定错误，可能是文件格式不支持
+                Log.d("MusicPlayerService", "检测到MediaPlayer错误-38，切换到ExoPlayer引擎继续播放当前歌曲");
+                try {
+                    // 在原播放器管理器内切换引擎，保留当前歌曲、播放位置和回调；
+                    // 切换成功后该格式的歌曲会直接使用ExoPlayer
+                    musicPlayerManager.switchEngine(MusicPlayerManager.PlayerEngineType.EXO_PLAYER);
+                    break;
+                } catch (Exception e) {
+                    Log.e("MusicPlayerService", "切换到ExoPlayer时出错: " + e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                Log.e("MusicPlayerService", "切换到ExoPlayer时出错: " + e.getMessage(), e);
-            }
-        }
-
-        // 常规错误处理逻辑
-        if (errorCounter < MAX_ERROR_COUNT) {
-            // 低于错误阈值，尝试播放下一首
-            Log.d("MusicPlayerService", "尝试播放下一首歌曲");
-            playNext();
-        } else {
-            // 超过最大错误次数，停止播放并重置错误计数
-            Log.d("MusicPlayerService", "连续错误次数过多，停止播放");
-            stop();
-
-            // 重置当前播放位置，避免再次尝试播放同一首歌曲
-            currentPosition = -1;
+                skipHandler.postDelayed(recoverySkipRunnable, 0);
+                break;
+            case SKIP:
+                // 等待退避时间后尝试下一首，连续失败时间隔逐次加倍
+                Log.d("MusicPlayerService", decision.delayMs + "ms后尝试播放下一首歌曲");
+                skipHandler.removeCallbacks(recoverySkipRunnable);
+                skipHandler.postDelayed(recoverySkipRunnable, decision.delayMs);
+                break;
+            case STOP:
+            default:
+                Log.d("MusicPlayerService", "连续错误次数过多，停止播放");
+                skipHandler.removeCallbacks(recoverySkipRunnable);
+                stop();
 
-            // 重置错误计数器，以便用户下次可以再次尝试播放
-            errorCounter = 0;
+                // 重置当前播放位置，避免再次尝试播放同一首歌曲
+                queue.setCurrentIndex(-1);
+                publishSnapshot();
+                break;
         }
     }
 
@@ -1151,10 +1895,15 @@ public class MusicPlayerService extends Service implements ServiceCallback {
 
         void onSongChanged(Song song);
 
-        void onPlaylistChanged(List<Song> playlist);
+        /**
+         * 播放列表变化，按插入、移除、移动或整体替换增量通知
+         */
+        void onQueueChanged(QueueChange change);
 
         void onError(Exception error);
 
         void onDurationChanged(int duration);
+
+        void onBufferingChanged(boolean isBuffering);
     }
 }
@@ -0,0 +1,123 @@
+package com.mlinyun.mymusicplayer.service;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 从仍在运行的独立播放进程接管播放队列
+ * 设置改为进程内播放后，上次启动的播放进程可能还在运行：读取它的队列和当前歌曲，
+ * 停止它的服务并等待进程退出，之后才启动进程内的服务。
+ * 两个进程不会同时持有播放器的持久化设置，队列也不会因切换进程而丢失
+ */
+public final class PlayerHandover {
+
+    private static final String TAG = "PlayerHandover";
+
+    // 等待播放进程退出的最长时间，超时后照常启动进程内的服务
+    private static final long EXIT_TIMEOUT_MS = 5000;
+
+    /**
+     * 接管完成回调，在主线程执行
+     */
+    public interface Callback {
+        /**
+         * @param queue        播放进程的队列，读取失败时为空
+         * @param currentIndex 当前歌曲索引，-1表示没有
+         * @param wasPlaying   接管前是否正在播放
+         */
+        void onHandover(List<Song> queue, int currentIndex, boolean wasPlaying);
+    }
+
+    private final Context context;
+    private final Callback callback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private List<Song> queue = Collections.emptyList();
+    private int currentIndex = -1;
+    private boolean wasPlaying = false;
+    private boolean connected = false;
+    private boolean finished = false;
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            if (connected) {
+                return;
+            }
+            connected = true;
+            // 队列较长时需要多次跨进程读取，不在主线程上进行
+            new Thread(() -> readAndStop(service), TAG).start();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // 播放进程退出，由死亡通知处理
+        }
+    };
+
+    private PlayerHandover(Context context, Callback callback) {
+        this.context = context.getApplicationContext();
+        this.callback = callback;
+    }
+
+    /**
+     * 开始接管，需在主线程调用
+     */
+    public static void start(Context context, Callback callback) {
+        PlayerHandover handover = new PlayerHandover(context, callback);
+        Intent intent = new Intent(handover.context, RemotePlayerService.class);
+        if (!handover.context.bindService(intent, handover.connection, Context.BIND_AUTO_CREATE)) {
+            Log.w(TAG, "无法连接播放进程，直接启动进程内的服务");
+            handover.finish();
+        }
+    }
+
+    private void readAndStop(IBinder service) {
+        IRemotePlayerService remote = IRemotePlayerService.Stub.asInterface(service);
+        try {
+            wasPlaying = remote.isPlaying();
+            currentIndex = remote.getCurrentIndex();
+            queue = SongChunk.readAll(remote.getQueue());
+            remote.stop();
+        } catch (RemoteException e) {
+            Log.e(TAG, "读取播放进程的队列失败: " + e.getMessage(), e);
+            queue = Collections.emptyList();
+            currentIndex = -1;
+            wasPlaying = false;
+        }
+
+        mainHandler.post(() -> {
+            // 播放进程在服务销毁后退出，退出前已写完持久化设置
+            try {
+                service.linkToDeath(() -> mainHandler.post(this::finish), 0);
+            } catch (RemoteException e) {
+                // 进程已经退出
+                finish();
+            }
+            mainHandler.postDelayed(this::finish, EXIT_TIMEOUT_MS);
+            context.unbindService(connection);
+            context.stopService(new Intent(context, RemotePlayerService.class));
+        });
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        Log.d(TAG, "播放进程已交接，队列: " + queue.size() + "首");
+        callback.onHandover(queue, currentIndex, wasPlaying);
+    }
+}
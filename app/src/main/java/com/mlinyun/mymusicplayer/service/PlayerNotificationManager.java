@@ -52,7 +52,7 @@ public class PlayerNotificationManager {
     /**
      * 构造函数
      *
-     * @param context 应用上下文
+     * @param context 所属的播放服务，控制按钮的Intent发往该服务
      */
     public PlayerNotificationManager(Context context) {
         this.context = context;
@@ -223,7 +223,8 @@ public class PlayerNotificationManager {
      * @return 构建的PendingIntent
      */
     private PendingIntent createActionIntent(String action) {
-        Intent intent = new Intent(context, MusicPlayerService.class);
+        // 指向实际运行的服务组件，播放服务可能在独立进程中运行
+        Intent intent = new Intent(context, context.getClass());
         intent.setAction(action);
 
         // 从Android M开始，可以使用FLAG_IMMUTABLE标志
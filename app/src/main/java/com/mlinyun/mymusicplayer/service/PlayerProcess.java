@@ -0,0 +1,79 @@
+package com.mlinyun.mymusicplayer.service;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.List;
+
+/**
+ * 播放服务运行进程的设置
+ * 开启后播放服务在独立的:player进程中运行(RemotePlayerService)，否则与界面在同一进程(MusicPlayerService)。
+ * 播放器的持久化设置(隔离列表、播放统计、输出延迟和引擎偏好)由运行服务的进程缓存，
+ * 界面进程运行期间切换会让两个进程各自持有一份缓存并互相覆盖，因此设置在应用下次启动时才生效
+ */
+public final class PlayerProcess {
+
+    private static final String PREFS_NAME = "player_process";
+    private static final String KEY_SEPARATE_PROCESS = "separate_process";
+
+    // 与清单中RemotePlayerService声明的进程名一致
+    private static final String PLAYER_PROCESS_SUFFIX = ":player";
+
+    // 本进程实际使用的设置，第一次读取时确定
+    private static Boolean activeSetting;
+
+    private PlayerProcess() {
+    }
+
+    /**
+     * 已保存的设置，默认关闭；修改后在应用下次启动时生效
+     */
+    public static boolean isSeparateProcessEnabled(Context context) {
+        return preferences(context).getBoolean(KEY_SEPARATE_PROCESS, false);
+    }
+
+    public static void setSeparateProcessEnabled(Context context, boolean enabled) {
+        preferences(context).edit().putBoolean(KEY_SEPARATE_PROCESS, enabled).apply();
+    }
+
+    /**
+     * 本次启动实际使用的设置，进程运行期间不再改变
+     */
+    public static synchronized boolean isSeparateProcessActive(Context context) {
+        if (activeSetting == null) {
+            activeSetting = isSeparateProcessEnabled(context);
+        }
+        return activeSetting;
+    }
+
+    /**
+     * 按本次启动的设置选择要绑定的服务组件
+     */
+    public static Class<? extends MusicPlayerService> getServiceClass(Context context) {
+        return isSeparateProcessActive(context) ? RemotePlayerService.class : MusicPlayerService.class;
+    }
+
+    /**
+     * 独立的播放进程是否仍在运行，如上次启动时开启了设置而界面进程退出后播放仍在继续
+     */
+    public static boolean isPlayerProcessRunning(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningAppProcessInfo> processes =
+                activityManager != null ? activityManager.getRunningAppProcesses() : null;
+        if (processes == null) {
+            return false;
+        }
+        String name = context.getPackageName() + PLAYER_PROCESS_SUFFIX;
+        for (ActivityManager.RunningAppProcessInfo process : processes) {
+            if (name.equals(process.processName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,163 @@
+package com.mlinyun.mymusicplayer.service;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+
+import com.mlinyun.mymusicplayer.model.Song;
+import com.mlinyun.mymusicplayer.player.PlayMode;
+import com.mlinyun.mymusicplayer.player.PlayerSnapshot;
+import com.mlinyun.mymusicplayer.player.PlayerState;
+
+/**
+ * 跨进程推送的播放器状态增量
+ * 只携带相对上一次推送变化了的字段，由掩码标明；进度更新时只有位置锚点，
+ * 不必每次发送完整的状态。队列通过队列变化事件单独同步，不在增量中
+ */
+public final class PlayerStateDelta implements Parcelable {
+
+    public static final int FIELD_STATE = 1;
+    public static final int FIELD_CURRENT = 1 << 1;
+    public static final int FIELD_PLAY_MODE = 1 << 2;
+    public static final int FIELD_DURATION = 1 << 3;
+    public static final int FIELD_POSITION = 1 << 4;
+    public static final int FIELD_ALL = FIELD_STATE | FIELD_CURRENT | FIELD_PLAY_MODE | FIELD_DURATION | FIELD_POSITION;
+
+    private final int fields;
+    private final PlayerState state;
+    private final boolean buffering;
+    private final int currentIndex;
+    private final Song currentSong;
+    private final PlayMode playMode;
+    private final int duration;
+    private final int anchorPosition;
+    private final long anchorTime;
+
+    private PlayerStateDelta(int fields, PlayerSnapshot snapshot) {
+        this.fields = fields;
+        this.state = snapshot.getState();
+        this.buffering = snapshot.isBuffering();
+        this.currentIndex = snapshot.getCurrentIndex();
+        this.currentSong = snapshot.getCurrentSong();
+        this.playMode = snapshot.getPlayMode();
+        this.duration = snapshot.getDuration();
+        // 锚点时刻使用开机以来的时间，两个进程读取的是同一个时钟
+        long now = SystemClock.elapsedRealtime();
+        this.anchorPosition = snapshot.getPositionAt(now);
+        this.anchorTime = now;
+    }
+
+    /**
+     * 比较两份快照，生成变化字段的增量
+     *
+     * @param previous        上一次推送的快照，为null时生成完整状态
+     * @param current         当前快照
+     * @param includePosition 是否携带位置锚点；播放状态变化时总是携带
+     * @return 增量，没有变化时返回null
+     */
+    public static PlayerStateDelta between(PlayerSnapshot previous, PlayerSnapshot current, boolean includePosition) {
+        if (previous == null) {
+            return new PlayerStateDelta(FIELD_ALL, current);
+        }
+        int fields = 0;
+        if (previous.getState() != current.getState() || previous.isBuffering() != current.isBuffering()) {
+            fields |= FIELD_STATE;
+        }
+        if (previous.getCurrentIndex() != current.getCurrentIndex()
+                || previous.getCurrentSong() != current.getCurrentSong()) {
+            fields |= FIELD_CURRENT;
+        }
+        if (previous.getPlayMode() != current.getPlayMode()) {
+            fields |= FIELD_PLAY_MODE;
+        }
+        if (previous.getDuration() != current.getDuration()) {
+            fields |= FIELD_DURATION;
+        }
+        if (includePosition || (fields & FIELD_STATE) != 0) {
+            fields |= FIELD_POSITION;
+        }
+        return fields != 0 ? new PlayerStateDelta(fields, current) : null;
+    }
+
+    public boolean has(int field) {
+        return (fields & field) != 0;
+    }
+
+    /**
+     * 把增量合并到上一份快照，得到新的快照
+     *
+     * @param base    上一份快照
+     * @param builder 用于构建新快照的构建器，队列由调用方设置
+     */
+    public void applyTo(PlayerSnapshot base, PlayerSnapshot.Builder builder) {
+        builder.setState(has(FIELD_STATE) ? state : base.getState(), has(FIELD_STATE) ? buffering : base.isBuffering())
+                .setCurrent(has(FIELD_CURRENT) ? currentIndex : base.getCurrentIndex(),
+                        has(FIELD_CURRENT) ? currentSong : base.getCurrentSong())
+                .setPlayMode(has(FIELD_PLAY_MODE) ? playMode : base.getPlayMode())
+                .setDuration(has(FIELD_DURATION) ? duration : base.getDuration());
+        if (has(FIELD_POSITION)) {
+            builder.setPositionAnchor(anchorPosition, anchorTime);
+        } else {
+            long now = SystemClock.elapsedRealtime();
+            builder.setPositionAnchor(base.getPositionAt(now), now);
+        }
+    }
+
+    private PlayerStateDelta(Parcel in) {
+        fields = in.readInt();
+        state = (fields & FIELD_STATE) != 0 ? PlayerState.values()[in.readInt()] : null;
+        buffering = (fields & FIELD_STATE) != 0 && in.readInt() != 0;
+        currentIndex = (fields & FIELD_CURRENT) != 0 ? in.readInt() : -1;
+        currentSong = (fields & FIELD_CURRENT) != 0 ? SongChunk.readSong(in) : null;
+        playMode = (fields & FIELD_PLAY_MODE) != 0 ? PlayMode.values()[in.readInt()] : null;
+        duration = (fields & FIELD_DURATION) != 0 ? in.readInt() : 0;
+        anchorPosition = (fields & FIELD_POSITION) != 0 ? in.readInt() : 0;
+        anchorTime = (fields & FIELD_POSITION) != 0 ? in.readLong() : 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(fields);
+        if (has(FIELD_STATE)) {
+            dest.writeInt(state.ordinal());
+            dest.writeInt(buffering ? 1 : 0);
+        }
+        if (has(FIELD_CURRENT)) {
+            dest.writeInt(currentIndex);
+            SongChunk.writeSong(dest, currentSong);
+        }
+        if (has(FIELD_PLAY_MODE)) {
+            dest.writeInt(playMode.ordinal());
+        }
+        if (has(FIELD_DURATION)) {
+            dest.writeInt(duration);
+        }
+        if (has(FIELD_POSITION)) {
+            dest.writeInt(anchorPosition);
+            dest.writeLong(anchorTime);
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<PlayerStateDelta> CREATOR = new Creator<PlayerStateDelta>() {
+        @Override
+        public PlayerStateDelta createFromParcel(Parcel in) {
+            return new PlayerStateDelta(in);
+        }
+
+        @Override
+        public PlayerStateDelta[] newArray(int size) {
+            return new PlayerStateDelta[size];
+        }
+    };
+
+    @Override
+    public String toString() {
+        return "PlayerStateDelta{fields=" + Integer.toBinaryString(fields) + ", state=" + state
+                + ", currentIndex=" + currentIndex + ", position=" + anchorPosition + "}";
+    }
+}
@@ -0,0 +1,306 @@
+package com.mlinyun.mymusicplayer.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteCallbackList;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.mlinyun.mymusicplayer.model.Song;
+import com.mlinyun.mymusicplayer.player.PlayMode;
+import com.mlinyun.mymusicplayer.player.PlayerSnapshot;
+import com.mlinyun.mymusicplayer.player.PlayerState;
+import com.mlinyun.mymusicplayer.player.QueueChange;
+
+import java.util.List;
+
+/**
+ * 独立播放进程中的Binder实现
+ * 把界面进程的命令转发给播放服务；服务的回调事件在主线程上转换为状态增量和队列变化，
+ * 推送给所有已注册的界面进程回调。完整队列只在注册时和整体替换时发送，由界面进程逐块读取
+ */
+class RemotePlayerBinder extends IRemotePlayerService.Stub {
+
+    private static final String TAG = "RemotePlayerBinder";
+
+    /**
+     * 对单个远程回调的一次调用
+     */
+    private interface RemoteCall {
+        void send(IRemotePlayerCallback callback) throws RemoteException;
+    }
+
+    private final MusicPlayerService service;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final RemoteCallbackList<IRemotePlayerCallback> remoteCallbacks = new RemoteCallbackList<>();
+
+    // 上一次推送给所有回调的快照，仅在主线程访问
+    private PlayerSnapshot lastPushed;
+
+    // 服务事件转发：状态类事件推送与上一次的差异，队列变化和错误直接转发
+    private final MusicPlayerService.PlayerCallback forwarder = new MusicPlayerService.PlayerCallback() {
+        @Override
+        public void onPlayStateChanged(PlayerState state) {
+            pushState(false);
+        }
+
+        @Override
+        public void onPositionChanged(int position) {
+            pushState(true);
+        }
+
+        @Override
+        public void onSongChanged(Song song) {
+            pushState(false);
+        }
+
+        @Override
+        public void onQueueChanged(QueueChange change) {
+            broadcast(toRemoteCall(change));
+        }
+
+        @Override
+        public void onError(Exception error) {
+            String message = error.getMessage();
+            broadcast(callback -> callback.onError(message));
+        }
+
+        @Override
+        public void onDurationChanged(int duration) {
+            pushState(false);
+        }
+
+        @Override
+        public void onBufferingChanged(boolean isBuffering) {
+            pushState(false);
+        }
+    };
+
+    /**
+     * 需在主线程创建
+     */
+    RemotePlayerBinder(MusicPlayerService service) {
+        this.service = service;
+        service.addCallback(forwarder);
+    }
+
+    /**
+     * 服务销毁时调用，不再推送事件
+     */
+    void release() {
+        service.removeCallback(forwarder);
+        remoteCallbacks.kill();
+    }
+
+    @Override
+    public void registerCallback(IRemotePlayerCallback callback) {
+        mainHandler.post(() -> {
+            // 先让已有的回调追上当前状态，新回调从同一份快照开始接收增量
+            pushState(false);
+            PlayerSnapshot snapshot = service.getSnapshot();
+            lastPushed = snapshot;
+            remoteCallbacks.register(callback);
+            try {
+                callback.onStateDelta(PlayerStateDelta.between(null, snapshot, true));
+                // 快照中的队列不可变，界面进程读取期间不受后续编辑影响
+                callback.onQueueReset(snapshot.getQueueVersion(), SongChunk.sourceOf(snapshot.getQueue()),
+                        snapshot.getCurrentIndex());
+            } catch (RemoteException e) {
+                Log.e(TAG, "发送初始状态失败: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @Override
+    public void unregisterCallback(IRemotePlayerCallback callback) {
+        remoteCallbacks.unregister(callback);
+    }
+
+    /**
+     * 推送当前快照相对上一次推送的变化
+     */
+    private void pushState(boolean includePosition) {
+        PlayerSnapshot snapshot = service.getSnapshot();
+        PlayerStateDelta delta = lastPushed != null
+                ? PlayerStateDelta.between(lastPushed, snapshot, includePosition)
+                : PlayerStateDelta.between(null, snapshot, true);
+        lastPushed = snapshot;
+        if (delta != null) {
+            broadcast(callback -> callback.onStateDelta(delta));
+        }
+    }
+
+    /**
+     * 把队列变化转换为远程调用，整体替换时只发送歌曲源，由界面进程逐块读取
+     */
+    private static RemoteCall toRemoteCall(QueueChange change) {
+        if (change.getType() == QueueChange.Type.RESET) {
+            ISongSource source = SongChunk.sourceOf(change.getSongs());
+            return callback -> callback.onQueueReset(change.getVersion(), source, change.getCurrentIndex());
+        }
+        int type = change.getType().ordinal();
+        SongChunk songs = new SongChunk(0, change.getCount(), change.getSongs());
+        return callback -> callback.onQueueEdit(type, change.getVersion(), change.getPosition(),
+                change.getToPosition(), songs, change.getCurrentIndex());
+    }
+
+    private void broadcast(RemoteCall call) {
+        int count = remoteCallbacks.beginBroadcast();
+        try {
+            for (int i = 0; i < count; i++) {
+                try {
+                    call.send(remoteCallbacks.getBroadcastItem(i));
+                } catch (RemoteException e) {
+                    // 界面进程已退出，RemoteCallbackList会自动移除该回调
+                    Log.e(TAG, "推送事件失败: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            remoteCallbacks.finishBroadcast();
+        }
+    }
+
+    @Override
+    public void play() {
+        service.play();
+    }
+
+    @Override
+    public void pause() {
+        service.pause();
+    }
+
+    @Override
+    public void togglePlayPause() {
+        service.togglePlayPause();
+    }
+
+    @Override
+    public void playNext() {
+        service.playNext();
+    }
+
+    @Override
+    public void playPrevious() {
+        service.playPrevious();
+    }
+
+    @Override
+    public void stop() {
+        service.stop();
+    }
+
+    @Override
+    public void seekTo(int position) {
+        service.seekTo(position);
+    }
+
+    @Override
+    public void scrubTo(int position) {
+        service.scrubTo(position);
+    }
+
+    @Override
+    public void endScrub(int position) {
+        service.endScrub(position);
+    }
+
+    @Override
+    public void setPlayMode(int mode) {
+        service.setPlayMode(PlayMode.values()[mode]);
+    }
+
+    @Override
+    public void setCrossfadeDuration(int durationMs) {
+        service.setCrossfadeDuration(durationMs);
+    }
+
+    @Override
+    public void setPowerSaverEnabled(boolean enabled) {
+        service.setPowerSaverEnabled(enabled);
+    }
+
+    @Override
+    public void calibrateOutputLatency(int observedOffsetMs) {
+        service.calibrateOutputLatency(observedOffsetMs);
+    }
+
+    @Override
+    public void adjustOutputLatency(int deltaMs) {
+        service.adjustOutputLatency(deltaMs);
+    }
+
+    @Override
+    public int getOutputLatencyOffset() {
+        return service.getOutputLatencyOffset();
+    }
+
+    @Override
+    public ISongSource getQueue() {
+        return SongChunk.sourceOf(service.getSnapshot().getQueue());
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return service.getSnapshot().getCurrentIndex();
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return service.getSnapshot().getState() == PlayerState.PLAYING;
+    }
+
+    @Override
+    public void setPlaylist(ISongSource songs) {
+        // 在Binder线程上同步读取完整队列，读取期间同一接口上后续的单向命令排在其后
+        List<Song> complete;
+        try {
+            complete = SongChunk.readAll(songs);
+        } catch (RemoteException e) {
+            Log.e(TAG, "读取播放列表失败，播放列表保持不变: " + e.getMessage(), e);
+            mainHandler.post(() -> broadcast(callback -> callback.onError("播放列表传输失败")));
+            return;
+        }
+        service.setPlaylist(complete);
+    }
+
+    @Override
+    public void addSong(SongChunk song) {
+        service.addSong(song.getSongs().get(0));
+    }
+
+    @Override
+    public void addSongAndPlay(SongChunk song) {
+        service.addSongAndPlay(song.getSongs().get(0));
+    }
+
+    @Override
+    public void playSong(SongChunk song) {
+        service.playSong(song.getSongs().get(0));
+    }
+
+    @Override
+    public void playSongNext(SongChunk song) {
+        service.playSongNext(song.getSongs().get(0));
+    }
+
+    @Override
+    public void playAtIndex(int index) {
+        service.playAtIndex(index);
+    }
+
+    @Override
+    public void removeSongAtIndex(int index) {
+        service.removeSongAtIndex(index);
+    }
+
+    @Override
+    public void moveSong(int from, int to) {
+        service.moveSong(from, to);
+    }
+
+    @Override
+    public void clearPlaylist() {
+        service.clearPlaylist();
+    }
+}
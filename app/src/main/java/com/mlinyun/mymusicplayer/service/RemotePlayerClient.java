@@ -0,0 +1,329 @@
+package com.mlinyun.mymusicplayer.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mlinyun.mymusicplayer.model.Song;
+import com.mlinyun.mymusicplayer.player.ChunkedList;
+import com.mlinyun.mymusicplayer.player.PlayMode;
+import com.mlinyun.mymusicplayer.player.PlayerSnapshot;
+import com.mlinyun.mymusicplayer.player.QueueChange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 界面进程中的远程播放服务代理
+ * 命令通过AIDL接口转发到播放进程；播放进程推送的状态增量和队列变化在主线程上合并到本地的快照镜像，
+ * 再以与进程内服务相同的PlayerCallback事件通知界面，界面层不需要区分服务在哪个进程中运行
+ */
+public class RemotePlayerClient implements IPlayerService {
+
+    private static final String TAG = "RemotePlayerClient";
+
+    /**
+     * 一次远程调用
+     */
+    private interface RemoteCall {
+        void run() throws RemoteException;
+    }
+
+    private final IRemotePlayerService remote;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 界面回调，仅在主线程访问
+    private final List<MusicPlayerService.PlayerCallback> callbacks = new ArrayList<>();
+    private boolean registered = false;
+
+    // 播放进程状态的本地镜像，在主线程更新，任意线程读取
+    private final AtomicReference<PlayerSnapshot> snapshot = new AtomicReference<>(PlayerSnapshot.EMPTY);
+    private final ChunkedList<Song> queueSongs = new ChunkedList<>();
+    private long queueVersion = -1;
+
+    // 播放进程的事件在Binder线程上按发送顺序到达，转到主线程后顺序不变
+    private final IRemotePlayerCallback.Stub remoteCallback = new IRemotePlayerCallback.Stub() {
+        @Override
+        public void onStateDelta(PlayerStateDelta delta) {
+            mainHandler.post(() -> applyStateDelta(delta));
+        }
+
+        @Override
+        public void onQueueEdit(int type, long version, int position, int toPosition, SongChunk songs, int currentIndex) {
+            Song song = songs.getSongs().get(0);
+            QueueChange change;
+            switch (QueueChange.Type.values()[type]) {
+                case INSERTED:
+                    change = QueueChange.inserted(version, position, song, currentIndex);
+                    break;
+                case REMOVED:
+                    change = QueueChange.removed(version, position, song, currentIndex);
+                    break;
+                case MOVED:
+                default:
+                    change = QueueChange.moved(version, position, toPosition, song, currentIndex);
+                    break;
+            }
+            mainHandler.post(() -> applyQueueChange(change));
+        }
+
+        @Override
+        public void onQueueReset(long version, ISongSource songs, int currentIndex) {
+            // 在Binder线程上同步读取完整队列，读取完成前同一回调上的后续事件不会送达
+            List<Song> queue;
+            try {
+                queue = SongChunk.readAll(songs);
+            } catch (RemoteException e) {
+                // 播放进程已退出，重新连接后会收到新的完整队列
+                Log.e(TAG, "读取播放列表失败: " + e.getMessage(), e);
+                return;
+            }
+            QueueChange change = QueueChange.reset(version, queue, currentIndex);
+            mainHandler.post(() -> applyQueueChange(change));
+        }
+
+        @Override
+        public void onError(String message) {
+            Exception error = new Exception(message);
+            mainHandler.post(() -> dispatch(callback -> callback.onError(error)));
+        }
+    };
+
+    public RemotePlayerClient(IRemotePlayerService remote) {
+        this.remote = remote;
+    }
+
+    /**
+     * 合并状态增量并通知变化的部分
+     */
+    private void applyStateDelta(PlayerStateDelta delta) {
+        PlayerSnapshot previous = snapshot.get();
+        PlayerSnapshot.Builder builder = new PlayerSnapshot.Builder()
+                .setQueue(previous.getQueue(), previous.getQueueVersion());
+        delta.applyTo(previous, builder);
+        PlayerSnapshot current = builder.build(previous.getVersion() + 1);
+        snapshot.set(current);
+
+        if (delta.has(PlayerStateDelta.FIELD_STATE)) {
+            if (current.getState() != previous.getState()) {
+                dispatch(callback -> callback.onPlayStateChanged(current.getState()));
+            }
+            if (current.isBuffering() != previous.isBuffering()) {
+                dispatch(callback -> callback.onBufferingChanged(current.isBuffering()));
+            }
+        }
+        if (delta.has(PlayerStateDelta.FIELD_CURRENT)) {
+            dispatch(callback -> callback.onSongChanged(current.getCurrentSong()));
+        }
+        if (delta.has(PlayerStateDelta.FIELD_DURATION)) {
+            dispatch(callback -> callback.onDurationChanged(current.getDuration()));
+        }
+        if (delta.has(PlayerStateDelta.FIELD_POSITION)) {
+            int position = current.getPosition();
+            dispatch(callback -> callback.onPositionChanged(position));
+        }
+    }
+
+    /**
+     * 合并队列变化
+     */
+    private void applyQueueChange(QueueChange change) {
+        // 注册前已排队的事件可能已包含在初始队列中，按版本号忽略
+        long version = change.getVersion();
+        int currentIndex = change.getCurrentIndex();
+        boolean stale = change.getType() == QueueChange.Type.RESET ? version < queueVersion : version <= queueVersion;
+        if (stale) {
+            return;
+        }
+        try {
+            change.applyTo(queueSongs);
+        } catch (IndexOutOfBoundsException e) {
+            Log.e(TAG, "应用播放列表变化失败: " + change, e);
+            return;
+        }
+        queueVersion = version;
+
+        PlayerSnapshot previous = snapshot.get();
+        snapshot.set(new PlayerSnapshot.Builder()
+                .setState(previous.getState(), previous.isBuffering())
+                .setQueue(queueSongs.snapshot(), version)
+                .setCurrent(currentIndex, previous.getCurrentSong())
+                .setPlayMode(previous.getPlayMode())
+                .setDuration(previous.getDuration())
+                .setPositionAnchor(previous.getPosition(), SystemClock.elapsedRealtime())
+                .build(previous.getVersion() + 1));
+        dispatch(callback -> callback.onQueueChanged(change));
+    }
+
+    private void dispatch(Consumer<MusicPlayerService.PlayerCallback> event) {
+        for (MusicPlayerService.PlayerCallback callback : callbacks) {
+            event.accept(callback);
+        }
+    }
+
+    private void call(String name, RemoteCall call) {
+        try {
+            call.run();
+        } catch (RemoteException e) {
+            Log.e(TAG, "远程调用失败: " + name + ", " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void addCallback(MusicPlayerService.PlayerCallback callback) {
+        if (!callbacks.contains(callback)) {
+            callbacks.add(callback);
+        }
+        if (!registered) {
+            registered = true;
+            call("registerCallback", () -> remote.registerCallback(remoteCallback));
+        }
+    }
+
+    @Override
+    public void removeCallback(MusicPlayerService.PlayerCallback callback) {
+        callbacks.remove(callback);
+        if (callbacks.isEmpty() && registered) {
+            registered = false;
+            call("unregisterCallback", () -> remote.unregisterCallback(remoteCallback));
+        }
+    }
+
+    @Override
+    public PlayerSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    @Override
+    public void play() {
+        call("play", remote::play);
+    }
+
+    @Override
+    public void pause() {
+        call("pause", remote::pause);
+    }
+
+    @Override
+    public void togglePlayPause() {
+        call("togglePlayPause", remote::togglePlayPause);
+    }
+
+    @Override
+    public void playNext() {
+        call("playNext", remote::playNext);
+    }
+
+    @Override
+    public void playPrevious() {
+        call("playPrevious", remote::playPrevious);
+    }
+
+    @Override
+    public void stop() {
+        call("stop", remote::stop);
+    }
+
+    @Override
+    public void seekTo(int position) {
+        call("seekTo", () -> remote.seekTo(position));
+    }
+
+    @Override
+    public void scrubTo(int position) {
+        call("scrubTo", () -> remote.scrubTo(position));
+    }
+
+    @Override
+    public void endScrub(int position) {
+        call("endScrub", () -> remote.endScrub(position));
+    }
+
+    @Override
+    public void setPlayMode(PlayMode mode) {
+        call("setPlayMode", () -> remote.setPlayMode(mode.ordinal()));
+    }
+
+    @Override
+    public void setCrossfadeDuration(int durationMs) {
+        call("setCrossfadeDuration", () -> remote.setCrossfadeDuration(durationMs));
+    }
+
+    @Override
+    public void setPowerSaverEnabled(boolean enabled) {
+        call("setPowerSaverEnabled", () -> remote.setPowerSaverEnabled(enabled));
+    }
+
+    @Override
+    public void calibrateOutputLatency(int observedOffsetMs) {
+        call("calibrateOutputLatency", () -> remote.calibrateOutputLatency(observedOffsetMs));
+    }
+
+    @Override
+    public void adjustOutputLatency(int deltaMs) {
+        call("adjustOutputLatency", () -> remote.adjustOutputLatency(deltaMs));
+    }
+
+    @Override
+    public int getOutputLatencyOffset() {
+        try {
+            return remote.getOutputLatencyOffset();
+        } catch (RemoteException e) {
+            Log.e(TAG, "获取输出延迟失败: " + e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    @Override
+    public void setPlaylist(List<Song> songs) {
+        // 只发送歌曲源，由播放进程逐块读取后一次替换；读取的是副本，调用方随后修改列表不受影响
+        List<Song> copy = songs != null ? new ArrayList<>(songs) : Collections.emptyList();
+        call("setPlaylist", () -> remote.setPlaylist(SongChunk.sourceOf(copy)));
+    }
+
+    @Override
+    public void addSong(Song song) {
+        call("addSong", () -> remote.addSong(SongChunk.of(song)));
+    }
+
+    @Override
+    public void addSongAndPlay(Song song) {
+        call("addSongAndPlay", () -> remote.addSongAndPlay(SongChunk.of(song)));
+    }
+
+    @Override
+    public void playSong(Song song) {
+        if (song == null) return;
+        call("playSong", () -> remote.playSong(SongChunk.of(song)));
+    }
+
+    @Override
+    public void playSongNext(Song song) {
+        call("playSongNext", () -> remote.playSongNext(SongChunk.of(song)));
+    }
+
+    @Override
+    public void playAtIndex(int index) {
+        call("playAtIndex", () -> remote.playAtIndex(index));
+    }
+
+    @Override
+    public void removeSongAtIndex(int position) {
+        call("removeSongAtIndex", () -> remote.removeSongAtIndex(position));
+    }
+
+    @Override
+    public void moveSong(int from, int to) {
+        call("moveSong", () -> remote.moveSong(from, to));
+    }
+
+    @Override
+    public void clearPlaylist() {
+        call("clearPlaylist", remote::clearPlaylist);
+    }
+}
@@ -0,0 +1,39 @@
+package com.mlinyun.mymusicplayer.service;
+
+import android.content.Intent;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 在独立的:player进程中运行的播放服务
+ * 播放逻辑与MusicPlayerService完全相同，只是作为单独的组件声明在独立进程中，
+ * 界面进程的GC停顿和崩溃不会打断播放。绑定时返回AIDL接口，而不是进程内的MusicBinder。
+ * 服务销毁后播放进程随即退出，播放器的持久化设置不会以过期的缓存留在进程中
+ */
+public class RemotePlayerService extends MusicPlayerService {
+
+    private RemotePlayerBinder remoteBinder;
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        if (remoteBinder == null) {
+            remoteBinder = new RemotePlayerBinder(this);
+        }
+        return remoteBinder;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (remoteBinder != null) {
+            remoteBinder.release();
+        }
+        super.onDestroy();
+        // 系统在onDestroy返回后等待SharedPreferences的异步写入完成，之后才处理这里投递的退出
+        new Handler(Looper.getMainLooper()).post(() -> Process.killProcess(Process.myPid()));
+    }
+}
@@ -0,0 +1,206 @@
+package com.mlinyun.mymusicplayer.service;
+
+import android.net.Uri;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.RemoteException;
+
+import com.mlinyun.mymusicplayer.model.Song;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 跨进程传输的一批歌曲
+ * 完整队列由接收方通过ISongSource按偏移逐块读取，每块按写入Parcel后的大小限制，
+ * 只占Binder事务缓冲区的一小部分；单首歌曲的命令和事件也用它携带。
+ * 歌曲按字段直接写入Parcel，不携带类名等额外信息
+ */
+public final class SongChunk implements Parcelable {
+
+    // 每块写入Parcel后的最大字节数，远小于进程约1MB的事务缓冲区
+    static final int MAX_CHUNK_BYTES = 64 * 1024;
+
+    // 块头部的偏移、总数和歌曲数
+    private static final int HEADER_BYTES = 3 * 4;
+
+    private final int offset;
+    private final int total;
+    private final List<Song> songs;
+
+    /**
+     * @param offset 本块第一首在完整列表中的位置
+     * @param total  完整列表的歌曲数
+     * @param songs  本块的歌曲
+     */
+    public SongChunk(int offset, int total, List<Song> songs) {
+        this.offset = offset;
+        this.total = total;
+        this.songs = songs;
+    }
+
+    /**
+     * 只包含一首歌曲的块，用于单首歌曲的命令和事件
+     */
+    public static SongChunk of(Song song) {
+        return new SongChunk(0, 1, Collections.singletonList(song));
+    }
+
+    /**
+     * 取列表中从offset开始的一块，写入Parcel后不超过MAX_CHUNK_BYTES；
+     * 单首超过上限的歌曲单独成块，offset到达末尾时得到空块
+     */
+    public static SongChunk chunkAt(List<Song> songs, int offset) {
+        int total = songs.size();
+        int start = Math.max(0, Math.min(offset, total));
+        int end = start;
+        int bytes = HEADER_BYTES;
+        while (end < total) {
+            int songBytes = sizeOf(songs.get(end));
+            if (end > start && bytes + songBytes > MAX_CHUNK_BYTES) {
+                break;
+            }
+            bytes += songBytes;
+            end++;
+        }
+        return new SongChunk(start, total, new ArrayList<>(songs.subList(start, end)));
+    }
+
+    /**
+     * 把列表包装为可跨进程逐块读取的歌曲源，列表在读取期间不能被修改
+     */
+    public static ISongSource.Stub sourceOf(List<Song> songs) {
+        return new ISongSource.Stub() {
+            @Override
+            public SongChunk getChunk(int offset) {
+                return chunkAt(songs, offset);
+            }
+        };
+    }
+
+    /**
+     * 从歌曲源逐块读取完整列表
+     *
+     * @throws RemoteException 对方进程退出或调用失败，此时不返回部分结果
+     */
+    public static List<Song> readAll(ISongSource source) throws RemoteException {
+        SongChunk chunk = source.getChunk(0);
+        List<Song> songs = new ArrayList<>(chunk.getTotal());
+        int total = chunk.getTotal();
+        while (true) {
+            songs.addAll(chunk.getSongs());
+            if (songs.size() >= total) {
+                return songs;
+            }
+            if (chunk.getSongs().isEmpty()) {
+                // 列表在读取期间被修改
+                throw new RemoteException("歌曲源提前结束: " + songs.size() + "/" + total);
+            }
+            chunk = source.getChunk(songs.size());
+        }
+    }
+
+    /**
+     * 计算一首歌曲按writeSong写入Parcel后的字节数，与Parcel的编码一致：
+     * int占4字节，long占8字节，字符串为4字节长度加UTF-16字符及结尾，按4字节对齐
+     */
+    static int sizeOf(Song song) {
+        if (song == null) {
+            return 4;
+        }
+        return 4 + sizeOf(song.getId()) + sizeOf(song.getTitle()) + sizeOf(song.getArtist())
+                + sizeOf(song.getAlbum()) + 8 + sizeOf(song.getPath()) + 8
+                + sizeOf(song.getAlbumArtUri() != null ? song.getAlbumArtUri().toString() : null) + 4;
+    }
+
+    private static int sizeOf(String value) {
+        if (value == null) {
+            return 4;
+        }
+        return 4 + (((value.length() + 1) * 2 + 3) & ~3);
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public List<Song> getSongs() {
+        return songs;
+    }
+
+    private SongChunk(Parcel in) {
+        offset = in.readInt();
+        total = in.readInt();
+        int count = in.readInt();
+        songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            songs.add(readSong(in));
+        }
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(offset);
+        dest.writeInt(total);
+        dest.writeInt(songs.size());
+        for (Song song : songs) {
+            writeSong(dest, song);
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<SongChunk> CREATOR = new Creator<SongChunk>() {
+        @Override
+        public SongChunk createFromParcel(Parcel in) {
+            return new SongChunk(in);
+        }
+
+        @Override
+        public SongChunk[] newArray(int size) {
+            return new SongChunk[size];
+        }
+    };
+
+    /**
+     * 写入一首歌曲，null写为单个标记
+     */
+    static void writeSong(Parcel dest, Song song) {
+        dest.writeInt(song != null ? 1 : 0);
+        if (song == null) {
+            return;
+        }
+        dest.writeString(song.getId());
+        dest.writeString(song.getTitle());
+        dest.writeString(song.getArtist());
+        dest.writeString(song.getAlbum());
+        dest.writeLong(song.getDuration());
+        dest.writeString(song.getPath());
+        dest.writeLong(song.getSize());
+        dest.writeString(song.getAlbumArtUri() != null ? song.getAlbumArtUri().toString() : null);
+        dest.writeInt(song.isSearchResult() ? 1 : 0);
+    }
+
+    static Song readSong(Parcel in) {
+        if (in.readInt() == 0) {
+            return null;
+        }
+        Song song = new Song(in.readString(), in.readString(), in.readString(), in.readString(),
+                in.readLong(), in.readString());
+        song.setSize(in.readLong());
+        String albumArt = in.readString();
+        if (albumArt != null) {
+            song.setAlbumArtUri(Uri.parse(albumArt));
+        }
+        song.setSearchResult(in.readInt() != 0);
+        return song;
+    }
+}
@@ -18,6 +18,7 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
@@ -39,6 +40,8 @@ import com.mlinyun.mymusicplayer.viewmodel.PlayerViewModel;
 public class PlaybackFragment extends Fragment implements PlaylistBottomSheetDialog.PlaylistDialogCallback {
     // 标签常量
     private static final String TAG = "PlaybackFragment";
+    // 每次调整歌词同步的步长(毫秒)
+    private static final int LYRICS_SYNC_STEP_MS = 100;
     // UI组件
     private ImageView ivAlbumArt;
     private TextView tvSongTitle;
@@ -184,6 +187,9 @@ public class PlaybackFragment extends Fragment implements PlaylistBottomSheetDia
                     if (duration != null) {
                         int position = progress * duration / 100;
                         tvCurrentTime.setText(viewModel.formatTime(position));
+                        // 拖动过程中立即显示目标位置，并以节流方式预览定位
+                        updateCurrentLyricText(position);
+                        viewModel.scrubTo(position);
                     }
                 }
             }
@@ -198,7 +204,7 @@ public class PlaybackFragment extends Fragment implements PlaylistBottomSheetDia
                 Integer duration = viewModel.getDuration().getValue();
                 if (duration != null) {
                     int position = seekBar.getProgress() * duration / 100;
-                    viewModel.seekTo(position);
+                    viewModel.endScrub(position);
                 }
                 isUserSeeking = false;
             }
@@ -221,6 +227,36 @@ public class PlaybackFragment extends Fragment implements PlaylistBottomSheetDia
         albumContainer.setOnClickListener(v -> {
             toggleLyricsView(true);
         });
+
+        // 长按当前歌词调整歌词与声音的同步
+        tvCurrentLyric.setOnLongClickListener(v -> {
+            showLyricsSyncDialog();
+            return true;
+        });
+    }
+
+    /**
+     * 显示歌词同步调整对话框
+     * 调整结果作为当前输出设备的延迟补偿保存，换用其他耳机或音箱时各自独立
+     */
+    private void showLyricsSyncDialog() {
+        String[] items = {
+                getString(R.string.lyrics_sync_delay, LYRICS_SYNC_STEP_MS),
+                getString(R.string.lyrics_sync_advance, LYRICS_SYNC_STEP_MS),
+                getString(R.string.lyrics_sync_reset)
+        };
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.lyrics_sync_title)
+                .setItems(items, (dialog, which) -> {
+                    if (which == 0) {
+                        viewModel.calibrateOutputLatency(LYRICS_SYNC_STEP_MS);
+                    } else if (which == 1) {
+                        viewModel.calibrateOutputLatency(-LYRICS_SYNC_STEP_MS);
+                    } else {
+                        viewModel.resetOutputLatency();
+                    }
+                })
+                .show();
     }
 
     /**
@@ -501,6 +537,10 @@ public class PlaybackFragment extends Fragment implements PlaylistBottomSheetDia
                 ibPlayMode.setImageResource(R.drawable.ic_shuffle);
                 break;
 
+            case SMART_SHUFFLE:
+                ibPlayMode.setImageResource(R.drawable.ic_shuffle_on);
+                break;
+
             case SINGLE_LOOP:
                 ibPlayMode.setImageResource(R.drawable.ic_repeat_one);
                 break;
@@ -612,7 +652,7 @@ public class PlaybackFragment extends Fragment implements PlaylistBottomSheetDia
 
     /**
      * 切换播放模式
-     * 在顺序播放、列表循环、随机播放和单曲循环之间切换
+     * 在顺序播放、列表循环、随机播放、智能随机和单曲循环之间切换
      */
     private void togglePlayMode() {
         // 调用ViewModel中的方法切换播放模式
@@ -634,6 +674,9 @@ public class PlaybackFragment extends Fragment implements PlaylistBottomSheetDia
                 case SHUFFLE:
                     modeMessage = getString(R.string.mode_shuffle);
                     break;
+                case SMART_SHUFFLE:
+                    modeMessage = getString(R.string.mode_smart_shuffle);
+                    break;
                 case SINGLE_LOOP:
                     modeMessage = getString(R.string.mode_single_loop);
                     break;
@@ -43,6 +43,7 @@ public class PlaybackMenuHelper {
                 currentSong.getAlbumArtUri()
         );
         playlistSong.setSearchResult(false);
+        playlistSong.setSize(currentSong.getSize());
         // 添加到播放列表
         boolean added = viewModel.addSong(playlistSong);
 
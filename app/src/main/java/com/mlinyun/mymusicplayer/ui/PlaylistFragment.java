@@ -7,6 +7,9 @@ import android.os.Bundle;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
@@ -22,7 +25,9 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
+import androidx.core.view.MenuProvider;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -93,6 +98,9 @@ public class PlaylistFragment extends Fragment implements SongAdapter.OnSongClic
         // 设置功能按钮
         setupActionButtons();
 
+        // 设置工具栏菜单
+        setupSettingsMenu();
+
         // 观察数据变化
         observeViewModel();
     }
@@ -124,6 +132,31 @@ public class PlaylistFragment extends Fragment implements SongAdapter.OnSongClic
         recyclerView.setHasFixedSize(true);
     }
 
+    /**
+     * 设置工具栏菜单，目前只有播放进程的开关
+     */
+    private void setupSettingsMenu() {
+        requireActivity().addMenuProvider(new MenuProvider() {
+            @Override
+            public void onCreateMenu(@NonNull Menu menu, @NonNull MenuInflater menuInflater) {
+                menuInflater.inflate(R.menu.menu_playlist, menu);
+                menu.findItem(R.id.action_separate_player_process).setChecked(viewModel.isSeparatePlayerProcess());
+            }
+
+            @Override
+            public boolean onMenuItemSelected(@NonNull MenuItem menuItem) {
+                if (menuItem.getItemId() == R.id.action_separate_player_process) {
+                    boolean enabled = !menuItem.isChecked();
+                    menuItem.setChecked(enabled);
+                    viewModel.setSeparatePlayerProcess(enabled);
+                    Toast.makeText(requireContext(), R.string.separate_player_process_changed, Toast.LENGTH_SHORT).show();
+                    return true;
+                }
+                return false;
+            }
+        }, getViewLifecycleOwner(), Lifecycle.State.RESUMED);
+    }
+
     /**
      * 设置歌曲列表适配器
      */
@@ -303,19 +336,8 @@ public class PlaylistFragment extends Fragment implements SongAdapter.OnSongClic
         });
         // 观察当前播放歌曲
         viewModel.getCurrentSong().observe(getViewLifecycleOwner(), song -> {
-            if (song != null) {
-                // 查找歌曲在适配器中的位置
-                for (int i = 0; i < adapter.getItemCount(); i++) {
-                    Song adapterSong = adapter.getSongAt(i);
-                    if (adapterSong != null && adapterSong.getId().equals(song.getId())) {
-                        adapter.setCurrentPlayingPosition(i);
-                        break;
-                    }
-                }
-            } else {
-                // 没有歌曲播放时，清除当前播放位置
-                adapter.setCurrentPlayingPosition(-1);
-            }
+            // 按歌曲ID高亮，列表仍在后台计算差异时也能对应到正确的条目；没有歌曲播放时清除高亮
+            adapter.setCurrentPlayingSong(song != null ? song.getId() : null);
         });
 
         // 观察扫描状态
@@ -395,6 +417,7 @@ public class PlaylistFragment extends Fragment implements SongAdapter.OnSongClic
         );
         // 确保设置为非搜索结果
         playlistSong.setSearchResult(false);
+        playlistSong.setSize(song.getSize());
 
         // 添加到播放列表并播放
         viewModel.addSongAndPlay(playlistSong);
@@ -20,10 +20,17 @@ import androidx.lifecycle.MutableLiveData;
 import com.mlinyun.mymusicplayer.model.Lyrics;
 import com.mlinyun.mymusicplayer.model.Song;
 import com.mlinyun.mymusicplayer.player.PlayMode;
+import com.mlinyun.mymusicplayer.player.PlayerSnapshot;
 import com.mlinyun.mymusicplayer.player.PlayerState;
+import com.mlinyun.mymusicplayer.player.QueueChange;
 import com.mlinyun.mymusicplayer.repository.LyricsRepository;
 import com.mlinyun.mymusicplayer.repository.SongRepository;
+import com.mlinyun.mymusicplayer.service.IPlayerService;
+import com.mlinyun.mymusicplayer.service.IRemotePlayerService;
 import com.mlinyun.mymusicplayer.service.MusicPlayerService;
+import com.mlinyun.mymusicplayer.service.PlayerHandover;
+import com.mlinyun.mymusicplayer.service.PlayerProcess;
+import com.mlinyun.mymusicplayer.service.RemotePlayerClient;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -41,10 +48,16 @@ public class PlayerViewModel extends AndroidViewModel {
 
     // 服务连接相关
     @SuppressLint("StaticFieldLeak")
-    private MusicPlayerService musicService;
+    private IPlayerService musicService;
     private boolean isServiceBound = false;
+    private boolean isCleared = false;
     private final MutableLiveData<Boolean> serviceConnected = new MutableLiveData<>(false);
 
+    // 从独立播放进程接管的队列，连接到进程内的服务后恢复
+    private List<Song> handoverQueue;
+    private int handoverIndex = -1;
+    private boolean handoverPlaying = false;
+
     // 播放状态相关
     private final MutableLiveData<PlayerState> playerState = new MutableLiveData<>(PlayerState.IDLE);
     private final MutableLiveData<Integer> playbackPosition = new MutableLiveData<>(0);
@@ -55,6 +68,12 @@ public class PlayerViewModel extends AndroidViewModel {
     private final MutableLiveData<PlayMode> playMode = new MutableLiveData<>(PlayMode.SEQUENCE);
     private final MutableLiveData<Lyrics> currentLyrics = new MutableLiveData<>();
 
+    // 播放列表的本地副本，按服务发出的队列变化事件增量更新
+    private final List<Song> queueSongs = new ArrayList<>();
+    private final List<Song> queueView = Collections.unmodifiableList(queueSongs);
+    private long queueVersion = -1;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     // 是否正在加载歌曲
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);    // 仓库
     private final LyricsRepository lyricsRepository;
@@ -87,16 +106,25 @@ public class PlayerViewModel extends AndroidViewModel {
     private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
-            MusicPlayerService.MusicBinder binder = (MusicPlayerService.MusicBinder) service;
-            musicService = binder.getService();
+            if (service instanceof MusicPlayerService.MusicBinder) {
+                musicService = ((MusicPlayerService.MusicBinder) service).getService();
+            } else {
+                // 播放服务在独立进程中运行，通过AIDL接口访问
+                musicService = new RemotePlayerClient(IRemotePlayerService.Stub.asInterface(service));
+            }
             isServiceBound = true;
             serviceConnected.setValue(true);
 
+            // 新连接的服务(包括重启后的播放进程)队列版本从头开始，本地副本需要重新同步
+            queueVersion = -1;
+
             // 注册回调
             registerServiceCallback();
 
             // 获取初始数据
             updateFromService();
+
+            restoreHandoverQueue();
         }
 
         @Override
@@ -122,7 +150,10 @@ public class PlayerViewModel extends AndroidViewModel {
         @Override
         public void onSongChanged(Song song) {
             currentSong.setValue(song);
-            duration.setValue(musicService.getDuration());
+            // 时长和索引取自同一份快照，彼此一致
+            PlayerSnapshot snapshot = musicService.getSnapshot();
+            duration.setValue(snapshot.getDuration());
+            currentSongIndex.setValue(snapshot.getCurrentIndex());
 
             // 当歌曲变化时，加载歌词
             if (song != null) {
@@ -131,9 +162,8 @@ public class PlayerViewModel extends AndroidViewModel {
         }
 
         @Override
-        public void onPlaylistChanged(List<Song> songs) {
-            playlist.setValue(songs);
-            currentSongIndex.setValue(musicService.getCurrentIndex());
+        public void onQueueChanged(QueueChange change) {
+            applyQueueChange(change);
         }
 
         @Override
@@ -146,6 +176,11 @@ public class PlayerViewModel extends AndroidViewModel {
         public void onDurationChanged(int duration) {
             PlayerViewModel.this.duration.setValue(duration);
         }
+
+        @Override
+        public void onBufferingChanged(boolean isBuffering) {
+            isLoading.setValue(isBuffering);
+        }
     };
 
     /**
@@ -169,8 +204,7 @@ public class PlayerViewModel extends AndroidViewModel {
      * 设置过滤和排序的观察者
      */
     private void setupFilteredSongs() {
-        // 添加playlist数据源
-        filteredSongs.addSource(playlist, songs -> applyFiltersAndSort());
+        // 播放列表的变化在applyQueueChange中增量合并，这里只观察搜索和排序条件
 
         // 添加搜索过滤数据源
         filteredSongs.addSource(searchFilter, filter -> applyFiltersAndSort());
@@ -181,15 +215,51 @@ public class PlayerViewModel extends AndroidViewModel {
 
     /**
      * 绑定音乐服务
+     * 设置改为进程内播放而上次启动的播放进程仍在运行时，先接管它的队列并等它退出
      */
     private void bindService() {
-        Intent intent = new Intent(getApplication(), MusicPlayerService.class);
+        Application application = getApplication();
+        if (!PlayerProcess.isSeparateProcessActive(application) && PlayerProcess.isPlayerProcessRunning(application)) {
+            PlayerHandover.start(application, (queue, currentIndex, wasPlaying) -> {
+                if (isCleared) {
+                    return;
+                }
+                handoverQueue = queue;
+                handoverIndex = currentIndex;
+                handoverPlaying = wasPlaying;
+                bindPlayerService();
+            });
+            return;
+        }
+        bindPlayerService();
+    }
+
+    private void bindPlayerService() {
+        Intent intent = new Intent(getApplication(), PlayerProcess.getServiceClass(getApplication()));
         getApplication().bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
 
         // 同时启动服务，确保后台播放
         getApplication().startService(intent);
     }
 
+    /**
+     * 把接管的队列交给进程内的服务，原来正在播放时从当前歌曲继续播放
+     */
+    private void restoreHandoverQueue() {
+        if (handoverQueue == null || musicService == null) {
+            return;
+        }
+        if (!handoverQueue.isEmpty()) {
+            musicService.setPlaylist(handoverQueue);
+            if (handoverPlaying && handoverIndex >= 0 && handoverIndex < handoverQueue.size()) {
+                musicService.playAtIndex(handoverIndex);
+            }
+        }
+        handoverQueue = null;
+        handoverIndex = -1;
+        handoverPlaying = false;
+    }
+
     /**
      * 注册服务回调
      */
@@ -227,17 +297,8 @@ public class PlayerViewModel extends AndroidViewModel {
     public void togglePlayPause() {
         if (musicService == null) return;
 
-        PlayerState state = musicService.getPlayerState();
-        if (state == PlayerState.PLAYING) {
-            musicService.pause();
-        } else {
-            // 如果当前有歌曲，则恢复播放，否则从头开始播放
-            if (musicService.getCurrentSong() != null) {
-                musicService.resume();
-            } else if (!musicService.getPlaylist().isEmpty()) {
-                musicService.playAtIndex(0);
-            }
-        }
+        // 由服务在命令线程上根据当时的状态决定播放还是暂停
+        musicService.togglePlayPause();
     }
 
     /**
@@ -267,6 +328,86 @@ public class PlayerViewModel extends AndroidViewModel {
         }
     }
 
+    /**
+     * 拖动进度条时的预览定位
+     */
+    public void scrubTo(int position) {
+        if (musicService != null) {
+            musicService.scrubTo(position);
+        }
+    }
+
+    /**
+     * 结束拖动，精确定位到最终位置
+     */
+    public void endScrub(int position) {
+        if (musicService != null) {
+            musicService.endScrub(position);
+        }
+        playbackPosition.setValue(position);
+    }
+
+    /**
+     * 校准当前输出设备的延迟补偿
+     * 用户觉得歌词比声音提前时传入正数，滞后时传入负数
+     *
+     * @param lyricsAheadMs 歌词相对声音提前的毫秒数
+     */
+    public void calibrateOutputLatency(int lyricsAheadMs) {
+        if (musicService != null) {
+            musicService.adjustOutputLatency(lyricsAheadMs);
+        }
+    }
+
+    /**
+     * 清除当前输出设备的延迟补偿
+     */
+    public void resetOutputLatency() {
+        if (musicService != null) {
+            musicService.calibrateOutputLatency(0);
+        }
+    }
+
+    /**
+     * 设置切歌时的淡入淡出时长
+     *
+     * @param durationMs 渐变时长(毫秒)，0表示关闭
+     */
+    public void setCrossfadeDuration(int durationMs) {
+        if (musicService != null) {
+            musicService.setCrossfadeDuration(durationMs);
+        }
+    }
+
+    /**
+     * 设置省电模式
+     *
+     * @param enabled 是否开启，开启后使用音频卸载并在屏幕关闭时停止进度更新
+     */
+    public void setPowerSaverEnabled(boolean enabled) {
+        if (musicService != null) {
+            musicService.setPowerSaverEnabled(enabled);
+        }
+    }
+
+    /**
+     * 是否已设置在独立进程中运行播放服务，设置在应用下次启动时生效
+     */
+    public boolean isSeparatePlayerProcess() {
+        return PlayerProcess.isSeparateProcessEnabled(getApplication());
+    }
+
+    /**
+     * 设置是否在独立进程中运行播放服务
+     * 独立进程中的播放不受界面进程GC停顿和崩溃的影响。
+     * 设置在应用下次启动时生效，运行中不切换进程，两个进程不会同时读写播放器的持久化设置
+     *
+     * @param enabled 是否开启
+     */
+    public void setSeparatePlayerProcess(boolean enabled) {
+        PlayerProcess.setSeparateProcessEnabled(getApplication(), enabled);
+    }
+
     /**
      * 播放指定位置的歌曲
      */
@@ -292,7 +433,7 @@ public class PlayerViewModel extends AndroidViewModel {
     public void togglePlayMode() {
         if (musicService == null) return;
 
-        PlayMode currentMode = musicService.getPlayMode();
+        PlayMode currentMode = musicService.getSnapshot().getPlayMode();
         PlayMode newMode;
 
         // 循环切换模式
@@ -304,6 +445,9 @@ public class PlayerViewModel extends AndroidViewModel {
                 newMode = PlayMode.SHUFFLE;
                 break;
             case SHUFFLE:
+                newMode = PlayMode.SMART_SHUFFLE;
+                break;
+            case SMART_SHUFFLE:
                 newMode = PlayMode.SINGLE_LOOP;
                 break;
             case SINGLE_LOOP:
@@ -322,31 +466,9 @@ public class PlayerViewModel extends AndroidViewModel {
      */
     public void playSong(Song song) {
         if (musicService != null && song != null) {
-            // 查找歌曲在播放列表中的位置
-            List<Song> currentPlaylist = musicService.getPlaylist();
-            int songIndex = -1;
-
-            for (int i = 0; i < currentPlaylist.size(); i++) {
-                if (currentPlaylist.get(i).getId().equals(song.getId())) {
-                    songIndex = i;
-                    break;
-                }
-            }
-
-            // 如果歌曲在播放列表中，直接播放该位置
-            if (songIndex != -1) {
-                musicService.playAtIndex(songIndex);
-            }
-            // 否则，对于非搜索结果的歌曲添加到播放列表并播放，而搜索结果仅播放不添加到列表
-            else {
-                if (song.isSearchResult()) {
-                    // 搜索结果仅播放不添加到播放列表
-                    musicService.playSong(song);
-                } else {
-                    // 非搜索结果添加到播放列表末尾，并播放
-                    musicService.addSongAndPlay(song);
-                }
-            }
+            // 服务在命令线程上查找歌曲：在播放列表中时直接播放该位置，
+            // 否则搜索结果仅播放不添加到列表，其他歌曲添加到播放列表末尾并播放
+            musicService.playSong(song);
         }
     }
 
@@ -356,21 +478,9 @@ public class PlayerViewModel extends AndroidViewModel {
      * @param index 要移除的歌曲索引
      */
     public void removeSongAtIndex(int index) {
-        if (musicService != null) {
-            List<Song> currentPlaylist = musicService.getPlaylist();
-            if (index >= 0 && index < currentPlaylist.size()) {
-                // 在后台线程执行操作
-                new Thread(() -> {
-                    // 调用服务方法移除歌曲
-                    musicService.removeSongAtIndex(index);
-
-                    // 在主线程更新UI
-                    new Handler(Looper.getMainLooper()).post(() -> {
-                        playlist.setValue(musicService.getPlaylist());
-                        currentSongIndex.setValue(musicService.getCurrentIndex());
-                    });
-                }).start();
-            }
+        if (musicService != null && index >= 0 && index < queueSongs.size()) {
+            // 提交到服务的命令队列后立即返回，播放列表通过队列变化事件更新
+            musicService.removeSongAtIndex(index);
         }
     }
 
@@ -379,18 +489,9 @@ public class PlayerViewModel extends AndroidViewModel {
      */
     public void clearPlaylist() {
         if (musicService != null) {
-            // 在后台线程执行操作
-            new Thread(() -> {
-                // 调用服务方法清空播放列表
-                musicService.clearPlaylist();
-
-                // 在主线程更新UI
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    playlist.setValue(new ArrayList<>());
-                    currentSongIndex.setValue(-1);
-                    currentSong.setValue(null);
-                });
-            }).start();
+            // 提交到服务的命令队列后立即返回，播放列表通过队列变化事件更新
+            musicService.clearPlaylist();
+            currentSong.setValue(null);
         }
     }
 
@@ -400,6 +501,7 @@ public class PlayerViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        isCleared = true;
 
         // 解除服务绑定
         if (isServiceBound) {
@@ -504,10 +606,7 @@ public class PlayerViewModel extends AndroidViewModel {
      * 应用过滤和排序
      */
     private void applyFiltersAndSort() {
-        List<Song> allSongs = playlist.getValue();
-        if (allSongs == null) {
-            allSongs = new ArrayList<>();
-        }
+        List<Song> allSongs = queueSongs;
 
         List<Song> results = new ArrayList<>();
         String query = searchFilter.getValue();
@@ -551,39 +650,166 @@ public class PlayerViewModel extends AndroidViewModel {
         }
 
         // 应用排序
-        SortMethod method = sortMethod.getValue();
-        if (method != null) {
-            switch (method) {
-                case TITLE_ASC:
-                    Collections.sort(results, (s1, s2) -> s1.getTitle().compareToIgnoreCase(s2.getTitle()));
-                    break;
-                case TITLE_DESC:
-                    Collections.sort(results, (s1, s2) -> s2.getTitle().compareToIgnoreCase(s1.getTitle()));
-                    break;
-                case ARTIST_ASC:
-                    Collections.sort(results, (s1, s2) -> s1.getArtist().compareToIgnoreCase(s2.getArtist()));
-                    break;
-                case ARTIST_DESC:
-                    Collections.sort(results, (s1, s2) -> s2.getArtist().compareToIgnoreCase(s1.getArtist()));
-                    break;
-                case ALBUM_ASC:
-                    Collections.sort(results, (s1, s2) -> s1.getAlbum().compareToIgnoreCase(s2.getAlbum()));
-                    break;
-                case ALBUM_DESC:
-                    Collections.sort(results, (s1, s2) -> s2.getAlbum().compareToIgnoreCase(s1.getAlbum()));
-                    break;
-                case DURATION_ASC:
-                    Collections.sort(results, Comparator.comparingLong(Song::getDuration));
-                    break;
-                case DURATION_DESC:
-                    Collections.sort(results, (s1, s2) -> Long.compare(s2.getDuration(), s1.getDuration()));
-                    break;
-            }
+        Comparator<Song> comparator = comparatorFor(sortMethod.getValue());
+        if (comparator != null) {
+            Collections.sort(results, comparator);
         }
 
         filteredSongs.setValue(results);
     }
 
+    /**
+     * 获取排序方法对应的比较器
+     *
+     * @return 比较器，不排序时返回null
+     */
+    private static Comparator<Song> comparatorFor(SortMethod method) {
+        if (method == null) {
+            return null;
+        }
+        switch (method) {
+            case TITLE_ASC:
+                return (s1, s2) -> s1.getTitle().compareToIgnoreCase(s2.getTitle());
+            case TITLE_DESC:
+                return (s1, s2) -> s2.getTitle().compareToIgnoreCase(s1.getTitle());
+            case ARTIST_ASC:
+                return (s1, s2) -> s1.getArtist().compareToIgnoreCase(s2.getArtist());
+            case ARTIST_DESC:
+                return (s1, s2) -> s2.getArtist().compareToIgnoreCase(s1.getArtist());
+            case ALBUM_ASC:
+                return (s1, s2) -> s1.getAlbum().compareToIgnoreCase(s2.getAlbum());
+            case ALBUM_DESC:
+                return (s1, s2) -> s2.getAlbum().compareToIgnoreCase(s1.getAlbum());
+            case DURATION_ASC:
+                return Comparator.comparingLong(Song::getDuration);
+            case DURATION_DESC:
+                return (s1, s2) -> Long.compare(s2.getDuration(), s1.getDuration());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 应用服务发出的队列变化
+     * 版本连续时直接在本地副本上增量修改；收到过期事件时忽略，版本出现缺口时从服务取快照重新同步
+     *
+     * @param change 队列变化
+     */
+    private void applyQueueChange(QueueChange change) {
+        if (change.getType() == QueueChange.Type.RESET) {
+            if (change.getVersion() < queueVersion) {
+                return;
+            }
+        } else if (change.getVersion() <= queueVersion) {
+            return;
+        } else if (change.getVersion() != queueVersion + 1) {
+            Log.w(TAG, "播放列表版本不连续(本地" + queueVersion + "，收到" + change.getVersion() + ")，重新同步");
+            if (musicService != null) {
+                syncQueue(musicService.getSnapshot());
+            }
+            return;
+        }
+
+        try {
+            change.applyTo(queueSongs);
+        } catch (IndexOutOfBoundsException e) {
+            Log.e(TAG, "应用播放列表变化失败: " + change, e);
+            if (musicService != null) {
+                queueVersion = -1;
+                syncQueue(musicService.getSnapshot());
+            }
+            return;
+        }
+        queueVersion = change.getVersion();
+
+        playlist.setValue(queueView);
+        currentSongIndex.setValue(change.getCurrentIndex());
+        updateFilteredSongs(change);
+    }
+
+    /**
+     * 从服务发布的快照重新同步本地队列副本
+     * 快照的队列版本不低于已送达的事件，之后仍在排队的旧事件会按版本号被忽略
+     */
+    private void syncQueue(PlayerSnapshot snapshot) {
+        if (snapshot.getQueueVersion() < queueVersion) {
+            return;
+        }
+        queueSongs.clear();
+        queueSongs.addAll(snapshot.getQueue());
+        queueVersion = snapshot.getQueueVersion();
+
+        playlist.setValue(queueView);
+        currentSongIndex.setValue(snapshot.getCurrentIndex());
+        applyFiltersAndSort();
+    }
+
+    /**
+     * 在播放列表中显示不来自服务队列的歌曲(如扫描结果)
+     * 本地版本号被作废，服务队列下一次变化时会从快照重新同步
+     */
+    private void showLocalSongs(List<Song> songs) {
+        queueSongs.clear();
+        queueSongs.addAll(songs);
+        queueVersion = -1;
+        playlist.setValue(queueView);
+        applyFiltersAndSort();
+    }
+
+    /**
+     * 按队列变化增量更新过滤后的列表
+     * 非搜索模式下结果就是排好序的播放列表：插入的歌曲按排序位置插入，移除的歌曲按ID删除，
+     * 移动不影响排序后的顺序；搜索模式和整体替换时重新过滤
+     */
+    private void updateFilteredSongs(QueueChange change) {
+        String query = searchFilter.getValue();
+        List<Song> current = filteredSongs.getValue();
+        Comparator<Song> comparator = comparatorFor(sortMethod.getValue());
+        if (change.getType() == QueueChange.Type.RESET || (query != null && !query.isEmpty())
+                || current == null || comparator == null) {
+            applyFiltersAndSort();
+            return;
+        }
+
+        switch (change.getType()) {
+            case INSERTED: {
+                List<Song> results = new ArrayList<>(current);
+                for (Song song : change.getSongs()) {
+                    song.setSearchResult(false);
+                    int position = Collections.binarySearch(results, song, comparator);
+                    // 相等的元素插到它们之后，与稳定排序的结果一致
+                    if (position < 0) {
+                        position = -position - 1;
+                    } else {
+                        while (position < results.size() && comparator.compare(results.get(position), song) == 0) {
+                            position++;
+                        }
+                    }
+                    results.add(position, song);
+                }
+                filteredSongs.setValue(results);
+                break;
+            }
+            case REMOVED: {
+                Set<String> removedIds = new HashSet<>();
+                for (Song song : change.getSongs()) {
+                    removedIds.add(song.getId());
+                }
+                List<Song> results = new ArrayList<>(current.size());
+                for (Song song : current) {
+                    if (!removedIds.contains(song.getId())) {
+                        results.add(song);
+                    }
+                }
+                filteredSongs.setValue(results);
+                break;
+            }
+            case MOVED:
+            default:
+                break;
+        }
+    }
+
     /**
      * 扫描音乐文件
      */
@@ -594,7 +820,7 @@ public class PlayerViewModel extends AndroidViewModel {
         new Thread(() -> {
             try {
                 List<Song> songs = songRepository.scanMediaStore();
-                playlist.postValue(songs);
+                mainHandler.post(() -> showLocalSongs(songs));
 
                 // 更新扫描结果消息
                 String message = getApplication().getString(com.mlinyun.mymusicplayer.R.string.found_songs, songs.size());
@@ -616,7 +842,7 @@ public class PlayerViewModel extends AndroidViewModel {
         if (songRepository != null) {
             List<Song> songs = songRepository.getCachedSongs();
             if (songs != null && !songs.isEmpty()) {
-                playlist.setValue(songs);
+                showLocalSongs(songs);
             }
         }
     }
@@ -664,9 +890,29 @@ public class PlayerViewModel extends AndroidViewModel {
     public void addSongAndPlay(Song song) {
         if (musicService != null && song != null) {
             musicService.addSongAndPlay(song);
-            // 手动更新播放列表数据和当前播放索引
-            playlist.postValue(musicService.getPlaylist());
-            currentSongIndex.postValue(musicService.getCurrentIndex());
+        }
+    }
+
+    /**
+     * 把歌曲安排在当前歌曲之后播放
+     *
+     * @param song 要下一首播放的歌曲
+     */
+    public void playSongNext(Song song) {
+        if (musicService != null && song != null) {
+            musicService.playSongNext(song);
+        }
+    }
+
+    /**
+     * 拖动排序：移动播放列表中的歌曲
+     *
+     * @param from 原位置
+     * @param to   新位置
+     */
+    public void moveSong(int from, int to) {
+        if (musicService != null) {
+            musicService.moveSong(from, to);
         }
     }
 
@@ -678,22 +924,21 @@ public class PlayerViewModel extends AndroidViewModel {
      */
     public boolean addSong(Song song) {
         if (musicService != null && song != null) {
-            // 先检查歌曲是否已经在播放列表中
-            boolean songExists = false;
-            List<Song> currentPlaylist = musicService.getPlaylist();
-
-            for (Song existingSong : currentPlaylist) {
-                if (existingSong.getId().equals(song.getId())) {
-                    songExists = true;
-                    break;
-                }
+            // 如果歌曲不在播放列表中，则添加；按本地副本判断，不读取服务线程上的队列
+            if (!isInPlaylist(song)) {
+                musicService.addSong(song);
+                return true;
             }
+        }
+        return false;
+    }
 
-            // 如果歌曲不在播放列表中，则添加
-            if (!songExists) {
-                musicService.addSong(song);
-                // 手动更新播放列表数据，确保所有观察者接收到更新
-                playlist.postValue(musicService.getPlaylist());
+    /**
+     * 歌曲是否在本地的播放列表副本中
+     */
+    private boolean isInPlaylist(Song song) {
+        for (Song existing : queueSongs) {
+            if (existing.getId() != null && existing.getId().equals(song.getId())) {
                 return true;
             }
         }
@@ -728,12 +973,12 @@ public class PlayerViewModel extends AndroidViewModel {
     }
 
     /**
-     * 获取MusicPlayerService实例
+     * 获取播放服务接口
      * 此方法主要用于测试和调试，正常情况下UI层不应直接访问Service
      *
-     * @return MusicPlayerService实例，如果未绑定则返回null
+     * @return 进程内的MusicPlayerService或独立进程服务的代理，如果未绑定则返回null
      */
-    public MusicPlayerService getMusicService() {
+    public IPlayerService getMusicService() {
         return musicService;
     }
 
@@ -743,33 +988,19 @@ public class PlayerViewModel extends AndroidViewModel {
      */
     public void refreshAllData() {
         if (musicService != null) {
-            // 在后台线程执行数据获取
-            new Thread(() -> {
-                // 获取最新数据
-                final PlayerState state = musicService.getPlayerState();
-                final int position = musicService.getCurrentPosition();
-                final int dur = musicService.getDuration();
-                final Song song = musicService.getCurrentSong();
-                final List<Song> songs = musicService.getPlaylist();
-                final int index = musicService.getCurrentIndex();
-                final PlayMode mode = musicService.getPlayMode();
-
-                // 在主线程更新UI
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    playerState.setValue(state);
-                    playbackPosition.setValue(position);
-                    duration.setValue(dur);
-                    currentSong.setValue(song);
-                    playlist.setValue(songs);
-                    currentSongIndex.setValue(index);
-                    playMode.setValue(mode);
-
-                    // 加载当前歌曲的歌词
-                    if (song != null) {
-                        loadLyrics(song);
-                    }
-                });
-            }).start();
+            // 读取服务最近发布的快照，各项状态来自同一时刻，不需要后台线程
+            PlayerSnapshot snapshot = musicService.getSnapshot();
+            syncQueue(snapshot);
+            playerState.setValue(snapshot.getState());
+            playbackPosition.setValue(snapshot.getPosition());
+            duration.setValue(snapshot.getDuration());
+            currentSong.setValue(snapshot.getCurrentSong());
+            playMode.setValue(snapshot.getPlayMode());
+
+            // 加载当前歌曲的歌词
+            if (snapshot.getCurrentSong() != null) {
+                loadLyrics(snapshot.getCurrentSong());
+            }
         }
     }
 }